@@ -0,0 +1,90 @@
+package com.example.state_machine.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows latency, after the gradient algorithm of Netflix' concurrency-limits:
+ * a long-term average of request latency is the baseline; while recent latency stays near it the limit
+ * grows by a small queue allowance, and as latency climbs above it the limit shrinks in proportion.
+ * <pre>
+ *   gradient = clamp(tolerance * longRtt / rtt, 0.5, 1)
+ *   limit    = (1 - smoothing) * limit + smoothing * (limit * gradient + sqrt(limit))
+ * </pre>
+ * The limit only grows while at least half of it is in use, so a quiet period does not inflate it.
+ */
+final class AdaptiveLimit {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private volatile double limit;
+    private double longRtt; // guarded by this; 0 until the first sample
+    private long samples;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Need 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @return whether the request may proceed; if so, {@link #release} must follow
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire}.
+     *
+     * @param rttNanos how long it took
+     */
+    void release(long rttNanos) {
+        int inflightBefore = inflight.getAndDecrement();
+        sample(rttNanos, inflightBefore);
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inflight() {
+        return inflight.get();
+    }
+
+    private synchronized void sample(long rttNanos, int inflightBefore) {
+        double rtt = Math.max(rttNanos, 1);
+        samples++;
+        if (longRtt == 0) {
+            longRtt = rtt;
+            return;
+        }
+        double window = Math.min(samples, LONG_WINDOW);
+        longRtt += (rtt - longRtt) / window;
+        if (longRtt > 2 * rtt) {
+            longRtt = (longRtt + rtt) / 2; // latency dropped for good: let the baseline follow faster
+        }
+        if (inflightBefore < limit / 2) {
+            return; // app-limited: this sample says nothing about how much more we could take
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, (1 - SMOOTHING) * limit + SMOOTHING * target));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.state_machine.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adaptive admission control in front of {@code ProcessController}: each endpoint class has its own
+ * {@link AdaptiveLimit}, and a request over its class' limit is answered {@code 503} with
+ * {@code Retry-After} right away instead of queueing for a Tomcat thread and a Mongo connection.
+ * <p>
+ * Metrics, tagged {@code endpoint=read|write|advance}: {@code process.admission.limit},
+ * {@code process.admission.inflight} and {@code process.admission.rejected}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10) // after the HTTP observation filter, before forwarding
+@ConditionalOnProperty(name = "process.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    enum EndpointClass {
+        /** {@code GET /process/{id}}, {@code GET /process/{id}/variables/{key}} */
+        READ,
+        /** client-driven writes: {@code /start}, {@code /conversion/start}, {@code /{id}/event}, {@code /{id}/async-result}, {@code PATCH /{id}/variables} */
+        WRITE,
+        /** server-driven {@code /{id}/advance} */
+        ADVANCE
+    }
+
+    private static final Pattern PROCESS_PATH = Pattern.compile("^/process/([^/]+)(?:/([^/]+))?(?:/[^/]+)?$");
+
+    private final Map<EndpointClass, AdaptiveLimit> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+    private final String retryAfter;
+
+    public AdmissionControlFilter(MeterRegistry meters,
+                                  @Value("${process.admission.initial-limit:20}") int initialLimit,
+                                  @Value("${process.admission.min-limit:4}") int minLimit,
+                                  @Value("${process.admission.max-limit:200}") int maxLimit,
+                                  @Value("${process.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.retryAfter = Integer.toString(retryAfterSeconds);
+        for (EndpointClass endpoint : EndpointClass.values()) {
+            AdaptiveLimit limit = new AdaptiveLimit(initialLimit, minLimit, maxLimit);
+            String tag = endpoint.name().toLowerCase(Locale.ROOT);
+            limits.put(endpoint, limit);
+            Gauge.builder("process.admission.limit", limit, AdaptiveLimit::limit)
+                    .tag("endpoint", tag).description("Current concurrency limit").register(meters);
+            Gauge.builder("process.admission.inflight", limit, AdaptiveLimit::inflight)
+                    .tag("endpoint", tag).description("Admitted requests in progress").register(meters);
+            rejections.put(endpoint, Counter.builder("process.admission.rejected")
+                    .tag("endpoint", tag).description("Requests shed with 503").register(meters));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return classify(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpoint = classify(request);
+        AdaptiveLimit limit = limits.get(endpoint);
+        if (!limit.tryAcquire()) {
+            rejections.get(endpoint).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            response.setContentType("text/plain");
+            response.getWriter().write("Too many concurrent requests, retry later");
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limit.release(System.nanoTime() - started);
+        }
+    }
+
+    AdaptiveLimit limit(EndpointClass endpoint) {
+        return limits.get(endpoint);
+    }
+
+    /**
+     * @return the endpoint class, or {@code null} for requests that are not limited (bulk start, streams, ...)
+     */
+    static EndpointClass classify(HttpServletRequest request) {
+        Matcher m = PROCESS_PATH.matcher(request.getRequestURI());
+        if (!m.matches()) {
+            return null;
+        }
+        String first = m.group(1);
+        String action = m.group(2);
+        if ("GET".equals(request.getMethod())) {
+            return action == null || "variables".equals(action) ? EndpointClass.READ : null;
+        }
+        if ("PATCH".equals(request.getMethod())) {
+            return "variables".equals(action) ? EndpointClass.WRITE : null;
+        }
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        if (action == null) {
+            return "start".equals(first) ? EndpointClass.WRITE : null;
+        }
+        return switch (action) {
+            case "event", "async-result", "owners" -> EndpointClass.WRITE;
+            case "advance" -> EndpointClass.ADVANCE;
+            case "start" -> "conversion".equals(first) ? EndpointClass.WRITE : null;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.state_machine.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link LeaseTable} for the {@code memory} profile. It only spans the nodes of one JVM.
+ */
+@Component
+@Profile("memory")
+@ConditionalOnProperty(name = "process.cluster.enabled", havingValue = "true")
+class InMemoryLeaseTable implements LeaseTable {
+
+    private record Lease(String owner, Instant expiresAt) {
+    }
+
+    private final Map<String, Member> members = new HashMap<>();
+    private final Map<String, Instant> heartbeats = new HashMap<>();
+    private final Map<Integer, Lease> leases = new HashMap<>();
+    private final Map<Integer, Long> epochs = new HashMap<>();
+
+    @Override
+    public synchronized void heartbeat(Member member, Instant now) {
+        members.put(member.nodeId(), member);
+        heartbeats.put(member.nodeId(), now);
+    }
+
+    @Override
+    public synchronized List<Member> liveMembers(Instant since) {
+        return members.values().stream()
+                .filter(m -> heartbeats.get(m.nodeId()).isAfter(since))
+                .sorted(Comparator.comparing(Member::nodeId))
+                .toList();
+    }
+
+    @Override
+    public synchronized void leave(String nodeId) {
+        members.remove(nodeId);
+        heartbeats.remove(nodeId);
+    }
+
+    @Override
+    public synchronized boolean acquire(int partition, String nodeId, Instant now, Instant expiresAt) {
+        Lease lease = leases.get(partition);
+        if (lease != null && !lease.owner().equals(nodeId) && lease.expiresAt().isAfter(now)) {
+            return false;
+        }
+        leases.put(partition, new Lease(nodeId, expiresAt));
+        return true;
+    }
+
+    @Override
+    public synchronized void release(int partition, String nodeId) {
+        leases.computeIfPresent(partition, (p, lease) -> lease.owner().equals(nodeId) ? null : lease);
+    }
+
+    @Override
+    public synchronized Map<Integer, String> owners(Instant now) {
+        Map<Integer, String> owners = new HashMap<>();
+        leases.forEach((partition, lease) -> {
+            if (lease.expiresAt().isAfter(now)) {
+                owners.put(partition, lease.owner());
+            }
+        });
+        return owners;
+    }
+
+    @Override
+    public synchronized void bumpEpochs(Collection<Integer> partitions) {
+        partitions.forEach(p -> epochs.merge(p, 1L, Long::sum));
+    }
+
+    @Override
+    public synchronized Map<Integer, Long> epochs() {
+        return Map.copyOf(epochs);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.state_machine.cluster;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cluster membership and partition leases shared by every node. {@link MongoLeaseTable} is the default;
+ * the {@code memory} profile uses {@link InMemoryLeaseTable}, which only spans one JVM.
+ */
+public interface LeaseTable {
+
+    /**
+     * A node and the base URL other nodes forward its requests to.
+     */
+    record Member(String nodeId, String url) {
+    }
+
+    /**
+     * Registers the node or refreshes its heartbeat.
+     */
+    void heartbeat(Member member, Instant now);
+
+    /**
+     * @return members with a heartbeat after {@code since}, ordered by node id
+     */
+    List<Member> liveMembers(Instant since);
+
+    void leave(String nodeId);
+
+    /**
+     * Takes or renews the lease of a partition. Succeeds when the partition is unleased, already leased
+     * to {@code nodeId}, or its lease has expired.
+     */
+    boolean acquire(int partition, String nodeId, Instant now, Instant expiresAt);
+
+    /**
+     * Gives up the lease, if {@code nodeId} still holds it.
+     */
+    void release(int partition, String nodeId);
+
+    /**
+     * @return node id by partition, for leases that have not expired at {@code now}
+     */
+    Map<Integer, String> owners(Instant now);
+
+    /**
+     * Bumps the epoch of each partition, telling its owner to drop what it cached for it.
+     */
+    void bumpEpochs(Collection<Integer> partitions);
+
+    /**
+     * @return epoch by partition; partitions never bumped are missing
+     */
+    Map<Integer, Long> epochs();
+}
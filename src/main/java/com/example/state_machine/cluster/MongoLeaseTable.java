@@ -0,0 +1,106 @@
+package com.example.state_machine.cluster;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * {@link LeaseTable} in two small collections: {@code cluster_members} ({@code _id} = node id, url,
+ * heartbeatAt) and {@code partition_leases} ({@code _id} = partition, owner, expiresAt). A lease changes
+ * hands through a conditional upsert, so two nodes never hold the same partition at once. Partition
+ * epochs live in {@code partition_epochs} ({@code _id} = partition, epoch).
+ */
+@Component
+@Profile("!memory")
+@ConditionalOnProperty(name = "process.cluster.enabled", havingValue = "true")
+@RequiredArgsConstructor
+class MongoLeaseTable implements LeaseTable {
+
+    static final String MEMBERS = "cluster_members";
+    static final String LEASES = "partition_leases";
+    static final String EPOCHS = "partition_epochs";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void heartbeat(Member member, Instant now) {
+        mongoTemplate.upsert(Query.query(where("_id").is(member.nodeId())),
+                new Update().set("url", member.url()).set("heartbeatAt", Date.from(now)), MEMBERS);
+    }
+
+    @Override
+    public List<Member> liveMembers(Instant since) {
+        Query query = Query.query(where("heartbeatAt").gt(Date.from(since))).with(Sort.by("_id"));
+        return mongoTemplate.find(query, Document.class, MEMBERS).stream()
+                .map(d -> new Member(d.getString("_id"), d.getString("url")))
+                .toList();
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        mongoTemplate.remove(Query.query(where("_id").is(nodeId)), MEMBERS);
+    }
+
+    @Override
+    public boolean acquire(int partition, String nodeId, Instant now, Instant expiresAt) {
+        Query free = Query.query(where("_id").is(partition)
+                .orOperator(where("owner").is(nodeId), where("expiresAt").lte(Date.from(now))));
+        try {
+            mongoTemplate.upsert(free, new Update().set("owner", nodeId).set("expiresAt", Date.from(expiresAt)), LEASES);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false; // held by another node: the upsert tried to insert a second document for it
+        }
+    }
+
+    @Override
+    public void release(int partition, String nodeId) {
+        mongoTemplate.remove(Query.query(where("_id").is(partition).and("owner").is(nodeId)), LEASES);
+    }
+
+    @Override
+    public Map<Integer, String> owners(Instant now) {
+        Map<Integer, String> owners = new HashMap<>();
+        for (Document lease : mongoTemplate.find(Query.query(where("expiresAt").gt(Date.from(now))), Document.class, LEASES)) {
+            owners.put(lease.getInteger("_id"), lease.getString("owner"));
+        }
+        return owners;
+    }
+
+    @Override
+    public void bumpEpochs(Collection<Integer> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        BulkOperations bump = mongoTemplate.bulkOps(BulkMode.UNORDERED, EPOCHS);
+        partitions.forEach(p -> bump.upsert(Query.query(where("_id").is(p)), new Update().inc("epoch", 1L)));
+        bump.execute();
+    }
+
+    @Override
+    public Map<Integer, Long> epochs() {
+        Map<Integer, Long> epochs = new HashMap<>();
+        for (Document epoch : mongoTemplate.findAll(Document.class, EPOCHS)) {
+            epochs.put(epoch.getInteger("_id"), ((Number) epoch.get("epoch")).longValue());
+        }
+        return epochs;
+    }
+}
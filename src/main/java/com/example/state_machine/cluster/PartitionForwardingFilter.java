@@ -0,0 +1,138 @@
+package com.example.state_machine.cluster;
+
+import com.example.state_machine.cluster.LeaseTable.Member;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends requests for a process ({@code /process/{id}/...}) to the node owning its partition, so all
+ * reads and writes of a process happen on one node. The owner's response is relayed as is.
+ * <p>
+ * {@code GET /process/{id}/stream} is redirected (307) instead, so a long-lived stream does not tie up
+ * a connection through this node. Forwarded requests carry {@value #FORWARDED_BY} and are always served
+ * where they land, so a stale ownership view cannot bounce a request around. The header counts only on
+ * requests from another live member's address; anyone else sending it is routed like any other client. Every response served here
+ * names the serving node in {@value #SERVED_BY}.
+ * <p>
+ * Forwarding goes through Boot's {@link RestClient.Builder}, which propagates the trace context.
+ */
+@Component
+@ConditionalOnProperty(name = "process.cluster.enabled", havingValue = "true")
+@Slf4j
+public class PartitionForwardingFilter extends OncePerRequestFilter {
+
+    static final String FORWARDED_BY = "X-Forwarded-By-Node";
+    static final String SERVED_BY = "X-Served-By-Node";
+
+    private static final Pattern PROCESS_PATH = Pattern.compile("^/process/([^/]+)(/.*)?$");
+    private static final Set<String> NOT_PROCESS_IDS = Set.of("start", "bulk", "conversion");
+    private static final Set<String> HOP_BY_HOP = Set.of("connection", "keep-alive", "transfer-encoding", "te",
+            "upgrade", "proxy-authorization", "proxy-authenticate", "trailer", "host", "content-length");
+
+    private final PartitionManager partitions;
+    private final RestClient restClient;
+
+    public PartitionForwardingFilter(PartitionManager partitions, RestClient.Builder restClientBuilder,
+                                     @Value("${process.cluster.forward-timeout:10s}") Duration timeout) {
+        this.partitions = partitions;
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build());
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return processId(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String processId = processId(request);
+        String forwardedBy = request.getHeader(FORWARDED_BY);
+        Optional<Member> owner = forwardedBy != null && partitions.isPeer(forwardedBy, request.getRemoteAddr())
+                ? Optional.empty()
+                : partitions.remoteOwner(processId);
+        if (owner.isEmpty()) {
+            response.setHeader(SERVED_BY, partitions.nodeId());
+            chain.doFilter(request, response);
+            return;
+        }
+        String target = owner.get().url() + request.getRequestURI()
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        if (request.getRequestURI().endsWith("/stream")) {
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION, target);
+            return;
+        }
+        forward(request, response, owner.get(), URI.create(target));
+    }
+
+    private void forward(HttpServletRequest request, HttpServletResponse response, Member owner, URI target)
+            throws IOException {
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        try {
+            RestClient.RequestBodySpec spec = restClient.method(HttpMethod.valueOf(request.getMethod()))
+                    .uri(target)
+                    .headers(headers -> {
+                        for (String name : Collections.list(request.getHeaderNames())) {
+                            if (!HOP_BY_HOP.contains(name.toLowerCase())) {
+                                headers.put(name, Collections.list(request.getHeaders(name)));
+                            }
+                        }
+                        headers.set(FORWARDED_BY, partitions.nodeId());
+                    });
+            if (body.length > 0) {
+                spec.body(body);
+            }
+            spec.exchange((req, res) -> {
+                response.setStatus(res.getStatusCode().value());
+                res.getHeaders().forEach((name, values) -> {
+                    if (!HOP_BY_HOP.contains(name.toLowerCase())) {
+                        values.forEach(value -> response.addHeader(name, value));
+                    }
+                });
+                StreamUtils.copy(res.getBody(), response.getOutputStream());
+                return null;
+            });
+        } catch (ResourceAccessException e) {
+            log.warn("Forwarding to partition owner {} failed: {}", owner.nodeId(), e.getMessage());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType("text/plain");
+            response.getWriter().write("Owner of the process is unreachable: " + owner.nodeId());
+        }
+    }
+
+    private static String processId(HttpServletRequest request) {
+        Matcher m = PROCESS_PATH.matcher(request.getRequestURI());
+        return m.matches() && !NOT_PROCESS_IDS.contains(m.group(1)) ? m.group(1) : null;
+    }
+}
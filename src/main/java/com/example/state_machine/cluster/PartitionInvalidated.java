@@ -0,0 +1,8 @@
+package com.example.state_machine.cluster;
+
+/**
+ * Application event: a node changed processes of this partition behind its owner's back (a migration, the
+ * archiver), so whatever the owner cached for it is stale.
+ */
+public record PartitionInvalidated(int partition) {
+}
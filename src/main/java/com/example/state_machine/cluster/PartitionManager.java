@@ -0,0 +1,319 @@
+package com.example.state_machine.cluster;
+
+import com.example.state_machine.cluster.LeaseTable.Member;
+import com.example.state_machine.model.ProcessInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Assigns processes to {@code process.cluster.partitions} partitions by id hash and leases each
+ * partition to one node through the {@link LeaseTable}.
+ * <p>
+ * Every {@code process.cluster.heartbeat} the node refreshes its membership, computes the wanted owner of
+ * every partition by rendezvous hashing over the live members, renews or takes the leases it should hold
+ * and hands back the ones that moved to another node. A join or leave therefore moves only the
+ * partitions the new/gone node wins/held. A node stops treating a partition as its own when its lease
+ * could have expired ({@code process.cluster.lease-ttl} after the last renewal), even if it missed the
+ * renewal itself; this assumes clocks are in sync well within the TTL.
+ * <p>
+ * A node changing processes of partitions it does not own ({@link #invalidate}) bumps their epochs in the
+ * lease table; each owner compares them with every heartbeat and publishes {@link PartitionInvalidated}
+ * for the ones that moved.
+ */
+@Component
+@ConditionalOnProperty(name = "process.cluster.enabled", havingValue = "true")
+@Slf4j
+public class PartitionManager implements DisposableBean {
+
+    private final LeaseTable leases;
+    private final ApplicationEventPublisher events;
+    private final int partitions;
+    private final Duration leaseTtl;
+    private final Duration heartbeat;
+    private final String nodeId;
+    private final String advertisedHost;
+    private final Clock clock;
+
+    private final Set<Integer> owned = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Long> seenEpochs = new ConcurrentHashMap<>();
+    private volatile Instant ownedUntil = Instant.MIN;
+    private volatile Member[] owners;
+    private volatile Map<String, Member> members = Map.of();
+    private volatile Member self;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public PartitionManager(LeaseTable leases, ApplicationEventPublisher events,
+                            @Value("${process.cluster.partitions:64}") int partitions,
+                            @Value("${process.cluster.lease-ttl:10s}") Duration leaseTtl,
+                            @Value("${process.cluster.heartbeat:3s}") Duration heartbeat,
+                            @Value("${process.cluster.node-id:}") String nodeId,
+                            @Value("${process.cluster.advertised-host:}") String advertisedHost) {
+        this(leases, events, partitions, leaseTtl, heartbeat, nodeId, advertisedHost, Clock.systemUTC());
+    }
+
+    PartitionManager(LeaseTable leases, ApplicationEventPublisher events, int partitions, Duration leaseTtl,
+                     Duration heartbeat, String nodeId, String advertisedHost, Clock clock) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("process.cluster.partitions must be positive");
+        }
+        if (heartbeat.compareTo(leaseTtl) >= 0) {
+            throw new IllegalArgumentException("process.cluster.heartbeat must be shorter than process.cluster.lease-ttl");
+        }
+        this.leases = leases;
+        this.events = events;
+        this.partitions = partitions;
+        this.leaseTtl = leaseTtl;
+        this.heartbeat = heartbeat;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.advertisedHost = advertisedHost;
+        this.clock = clock;
+        this.owners = new Member[partitions];
+    }
+
+    /**
+     * Joins the cluster once the port other nodes forward to is known.
+     */
+    @EventListener
+    public void onWebServerInitialized(WebServerInitializedEvent event) {
+        if (event.getApplicationContext().getServerNamespace() == null) { // not the management server
+            join("http://" + host() + ":" + event.getWebServer().getPort());
+        }
+    }
+
+    synchronized void join(String url) {
+        if (scheduler != null) {
+            return;
+        }
+        register(url);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "partition-leases");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (RuntimeException e) {
+                log.warn("Partition lease renewal failed: {}", e.toString());
+            }
+        }, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Joined the cluster as {} at {}", nodeId, url);
+    }
+
+    synchronized void register(String url) {
+        self = new Member(nodeId, url);
+        rebalance();
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Children land on their parent's partition, so the node counting a parent's children down is the
+     * one caching the parent.
+     */
+    public int partitionOf(String processId) {
+        int separator = processId.indexOf(ProcessInstance.CHILD_ID_SEPARATOR);
+        String key = separator > 0 ? processId.substring(0, separator) : processId;
+        return Math.floorMod(key.hashCode(), partitions);
+    }
+
+    /**
+     * @return whether this node holds a lease on the process' partition that cannot have expired yet
+     */
+    public boolean owns(String processId) {
+        return owned.contains(partitionOf(processId)) && clock.instant().isBefore(ownedUntil);
+    }
+
+    /**
+     * @return the node the process' requests go to; empty when this node owns it or the partition is
+     * between owners, in which case it is served locally
+     */
+    public Optional<Member> remoteOwner(String processId) {
+        if (owns(processId)) {
+            return Optional.empty();
+        }
+        Member owner = owners[partitionOf(processId)];
+        return owner == null || owner.nodeId().equals(nodeId) ? Optional.empty() : Optional.of(owner);
+    }
+
+    /**
+     * @return whether this node runs the cluster-wide background jobs: it holds the lease on partition 0
+     * that cannot have expired yet, so at most one node does at a time
+     */
+    public boolean isLeader() {
+        return owned.contains(0) && clock.instant().isBefore(ownedUntil);
+    }
+
+    /**
+     * Tells requests forwarded by another node from requests claiming to be: {@code nodeId} must be a live
+     * member other than this node and {@code remoteAddress} an address its advertised host resolves to.
+     */
+    public boolean isPeer(String nodeId, String remoteAddress) {
+        Member member = members.get(nodeId);
+        if (member == null || nodeId.equals(this.nodeId) || remoteAddress == null) {
+            return false;
+        }
+        try {
+            String host = URI.create(member.url()).getHost();
+            InetAddress remote = InetAddress.getByName(remoteAddress); // an IP literal, no lookup
+            return host != null && Arrays.asList(InetAddress.getAllByName(host)).contains(remote);
+        } catch (UnknownHostException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public Set<Integer> ownedPartitions() {
+        return Set.copyOf(owned);
+    }
+
+    /**
+     * Tells the owners of the processes' partitions, this node included, to drop their cached copies.
+     * Remote owners see it with their next heartbeat.
+     */
+    public void invalidate(Collection<String> processIds) {
+        invalidatePartitions(processIds.stream().map(this::partitionOf).collect(Collectors.toSet()));
+    }
+
+    public void invalidateAll() {
+        invalidatePartitions(IntStream.range(0, partitions).boxed().collect(Collectors.toSet()));
+    }
+
+    private void invalidatePartitions(Set<Integer> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        leases.bumpEpochs(changed);
+        changed.stream().filter(owned::contains).forEach(p -> events.publishEvent(new PartitionInvalidated(p)));
+    }
+
+    synchronized void rebalance() {
+        Instant now = clock.instant();
+        Instant expiresAt = now.plus(leaseTtl);
+        leases.heartbeat(self, now);
+        List<Member> members = leases.liveMembers(now.minus(leaseTtl));
+        Map<String, Member> byId = members.stream().collect(Collectors.toMap(Member::nodeId, Function.identity()));
+        Map<Integer, String> current = leases.owners(now);
+        Map<Integer, Long> epochs = leases.epochs();
+
+        List<Integer> acquired = new ArrayList<>();
+        List<Integer> released = new ArrayList<>();
+        Member[] table = new Member[partitions];
+        for (int p = 0; p < partitions; p++) {
+            String holder = current.get(p);
+            if (nodeId.equals(assignee(p, members))) {
+                if (holder == null || holder.equals(nodeId)) {
+                    holder = leases.acquire(p, nodeId, now, expiresAt) ? nodeId : null;
+                } // else: wait for the previous owner to hand it over, or for its lease to expire
+            } else if (nodeId.equals(holder)) {
+                leases.release(p, nodeId);
+                holder = null;
+            }
+            if (nodeId.equals(holder)) {
+                if (owned.add(p)) {
+                    acquired.add(p);
+                }
+                Long seen = seenEpochs.put(p, epochs.getOrDefault(p, 0L));
+                if (seen != null && seen.longValue() != epochs.getOrDefault(p, 0L)) {
+                    events.publishEvent(new PartitionInvalidated(p));
+                }
+            } else if (owned.remove(p)) {
+                released.add(p);
+                seenEpochs.remove(p);
+                events.publishEvent(new PartitionReleased(p));
+            }
+            table[p] = holder == null ? null : byId.get(holder);
+        }
+        owners = table;
+        this.members = byId;
+        ownedUntil = expiresAt;
+        if (!acquired.isEmpty() || !released.isEmpty()) {
+            log.info("Partitions rebalanced: acquired={}, released={}, owned={}, members={}",
+                    acquired, released, owned.size(), members.size());
+        }
+    }
+
+    /**
+     * Rendezvous (highest random weight) hashing: the member with the highest score for the partition wins.
+     */
+    static String assignee(int partition, List<Member> members) {
+        String best = null;
+        long bestScore = Long.MIN_VALUE;
+        for (Member member : members) {
+            long score = mix(mix(member.nodeId().hashCode()) + partition);
+            if (best == null || score > bestScore) {
+                best = member.nodeId();
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static long mix(long z) { // SplitMix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private String host() {
+        if (!advertisedHost.isBlank()) {
+            return advertisedHost;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Cannot determine the host to advertise; set process.cluster.advertised-host", e);
+        }
+    }
+
+    /**
+     * Hands every partition back right away, so the other nodes do not wait for the leases to expire.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (self == null) {
+            return;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (Integer p : owned) {
+            leases.release(p, nodeId);
+            events.publishEvent(new PartitionReleased(p));
+        }
+        owned.clear();
+        leases.leave(nodeId);
+        log.info("Left the cluster as {}", nodeId);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.state_machine.cluster;
+
+/**
+ * Application event: this node no longer owns the partition, so whatever it cached for it is stale.
+ */
+public record PartitionReleased(int partition) {
+}
@@ -0,0 +1,21 @@
+package com.example.state_machine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * Background jobs ({@code @Async}) run on Spring Boot's {@code applicationTaskExecutor}, which picks up
+ * the task decorator below: the submitting thread's trace context travels with the task, so a job's
+ * spans join the request that started it.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    @Bean
+    public ContextPropagatingTaskDecorator contextPropagatingTaskDecorator() {
+        return new ContextPropagatingTaskDecorator();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.state_machine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Stores {@link LocalDate}s as midnight UTC, the way {@code VariableType.DATE} reads them back. Spring
+ * Data's default uses the JVM's zone, so nodes in different zones would write and query dates a day apart.
+ * <p>
+ * There is no reading converter: dates are read back as {@link Date}s, and only variables their flow
+ * declares {@code DATE} are turned into {@link LocalDate}s ({@code VariableSchema#restore}).
+ */
+@Configuration
+@Profile("!memory")
+public class MongoConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(LocalDateToDate.INSTANCE));
+    }
+
+    @WritingConverter
+    enum LocalDateToDate implements Converter<LocalDate, Date> {
+        INSTANCE;
+
+        @Override
+        public Date convert(LocalDate source) {
+            return Date.from(source.atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+    }
+}
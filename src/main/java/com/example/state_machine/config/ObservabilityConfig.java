@@ -0,0 +1,23 @@
+package com.example.state_machine.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.observability.ContextProviderFactory;
+import org.springframework.data.mongodb.observability.MongoObservationCommandListener;
+
+/**
+ * Observations Spring Boot does not register on its own: every Mongo command becomes a child span
+ * of the request (or {@code process.*} stage) that issued it.
+ */
+@Configuration
+public class ObservabilityConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoObservation(ObservationRegistry observations) {
+        return settings -> settings
+                .contextProvider(ContextProviderFactory.create(observations))
+                .addCommandListener(new MongoObservationCommandListener(observations));
+    }
+}
@@ -1,123 +1,69 @@
 package com.example.state_machine.config;
 
+import com.example.state_machine.flow.FlowDefinition;
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+import com.example.state_machine.flow.FlowWarmup;
+import com.example.state_machine.logging.LogRateLimiter;
 import com.example.state_machine.model.ProcessEvent;
 import com.example.state_machine.model.ProcessState;
 import com.example.state_machine.model.ProcessType;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.statemachine.StateContext;
 import org.springframework.statemachine.StateMachine;
 import org.springframework.statemachine.StateMachineContext;
 import org.springframework.statemachine.StateMachinePersist;
-import org.springframework.statemachine.config.EnableStateMachineFactory;
-import org.springframework.statemachine.config.StateMachineConfigurerAdapter;
-import org.springframework.statemachine.config.builders.StateMachineStateConfigurer;
+import org.springframework.statemachine.config.StateMachineBuilder;
+import org.springframework.statemachine.config.StateMachineFactory;
 import org.springframework.statemachine.config.builders.StateMachineTransitionConfigurer;
 import org.springframework.statemachine.guard.Guard;
 import org.springframework.statemachine.listener.StateMachineListenerAdapter;
 import org.springframework.statemachine.transition.Transition;
 
-import java.util.EnumSet;
+import java.util.Map;
 
 @Configuration
-@EnableStateMachineFactory
 @Slf4j
-public class StateMachineConfig extends StateMachineConfigurerAdapter<ProcessState, ProcessEvent> {
+public class StateMachineConfig {
 
     public static final String EXT_TYPE = "processType";
 
-    @Override
-    public void configure(StateMachineStateConfigurer<ProcessState, ProcessEvent> states) throws Exception {
-        states.withStates()
-                .initial(ProcessState.STARTED)
-                .states(EnumSet.allOf(ProcessState.class));
-    }
-
-    @Override
-    public void configure(StateMachineTransitionConfigurer<ProcessState, ProcessEvent> transitions) throws Exception {
-        registerSingleOwnerFlow(transitions);
-        registerMultiOwnerFlow(transitions);
-        registerMinorFlow(transitions);
-        registerMinorToRegularFlow(transitions);
-    }
+    /** Transition log lines per second; the rest are counted and reported with the next one. */
+    @Value("${process.logging.transitions-per-second:50}")
+    private int transitionsPerSecond = 50;
 
-    // ---------- SINGLE OWNER: happy path ----------
-    private void registerSingleOwnerFlow(StateMachineTransitionConfigurer<ProcessState, ProcessEvent> t) throws Exception {
-        t.withExternal()
-                .source(ProcessState.STARTED).target(ProcessState.KYC_IN_PROGRESS)
-                .event(ProcessEvent.START_FLOW).guard(guardType(ProcessType.SINGLE_OWNER))
-                .and().withExternal()
-                .source(ProcessState.KYC_IN_PROGRESS).target(ProcessState.WAITING_FOR_BIOMETRY)
-                .event(ProcessEvent.KYC_VERIFIED).guard(guardType(ProcessType.SINGLE_OWNER))
-                .and().withExternal()
-                .source(ProcessState.WAITING_FOR_BIOMETRY).target(ProcessState.BIOMETRY_VERIFIED)
-                .event(ProcessEvent.BIOMETRY_SUCCESS).guard(guardType(ProcessType.SINGLE_OWNER))
-                .and().withExternal()
-                .source(ProcessState.BIOMETRY_VERIFIED).target(ProcessState.ACCOUNT_CREATED)
-                .event(ProcessEvent.CREATE_ACCOUNT).guard(guardType(ProcessType.SINGLE_OWNER));
-    }
+    /**
+     * Builds a state machine factory for one flow definition. Every transition is guarded by
+     * the flow's process type, optionally combined with a named guard from the definition.
+     *
+     * @param definition the validated flow definition
+     * @param guards     resolved named guards, keyed by transition
+     */
+    public StateMachineFactory<ProcessState, ProcessEvent> createFactory(
+            FlowDefinition definition,
+            Map<TransitionDefinition, Guard<ProcessState, ProcessEvent>> guards) {
+        try {
+            StateMachineBuilder.Builder<ProcessState, ProcessEvent> builder = StateMachineBuilder.builder();
+            builder.configureConfiguration().withConfiguration()
+                    .listener(stateMachineListener());
+            builder.configureStates().withStates()
+                    .initial(definition.initial())
+                    .states(definition.states());
 
-    // ---------- MULTI OWNER ----------
-    private void registerMultiOwnerFlow(StateMachineTransitionConfigurer<ProcessState, ProcessEvent> t) throws Exception {
-        t.withExternal()
-                .source(ProcessState.STARTED).target(ProcessState.FILL_PERSONAL_DETAILS)
-                .event(ProcessEvent.START_FLOW).guard(guardType(ProcessType.MULTI_OWNER))
-                .and().withExternal()
-                .source(ProcessState.FILL_PERSONAL_DETAILS).target(ProcessState.ANSWER_ACCOUNT_QUESTIONS)
-                .event(ProcessEvent.SUBMIT_PERSONAL).guard(guardType(ProcessType.MULTI_OWNER))
-                .and().withExternal()
-                .source(ProcessState.ANSWER_ACCOUNT_QUESTIONS).target(ProcessState.KYC_IN_PROGRESS)
-                .event(ProcessEvent.SUBMIT_ANSWERS).guard(guardType(ProcessType.MULTI_OWNER))
-                .and().withExternal()
-                .source(ProcessState.KYC_IN_PROGRESS).target(ProcessState.WAITING_FOR_BIOMETRY)
-                .event(ProcessEvent.KYC_VERIFIED).guard(guardType(ProcessType.MULTI_OWNER))
-                .and().withExternal()
-                .source(ProcessState.WAITING_FOR_BIOMETRY).target(ProcessState.BIOMETRY_VERIFIED)
-                .event(ProcessEvent.BIOMETRY_SUCCESS).guard(guardType(ProcessType.MULTI_OWNER))
-                .and().withExternal()
-                .source(ProcessState.BIOMETRY_VERIFIED).target(ProcessState.WAITING_FOR_ALL_OWNERS)
-                .event(ProcessEvent.ADD_OWNER).guard(guardType(ProcessType.MULTI_OWNER))
-                .and().withExternal()
-                .source(ProcessState.WAITING_FOR_ALL_OWNERS).target(ProcessState.ACCOUNT_CREATED)
-                .event(ProcessEvent.CONFIRM_ALL_OWNERS).guard(guardType(ProcessType.MULTI_OWNER));
-    }
-
-    // ---------- MINOR ----------
-    private void registerMinorFlow(StateMachineTransitionConfigurer<ProcessState, ProcessEvent> t) throws Exception {
-        t.withExternal()
-                .source(ProcessState.STARTED).target(ProcessState.FILL_PERSONAL_DETAILS)
-                .event(ProcessEvent.START_FLOW).guard(guardType(ProcessType.MINOR))
-                .and().withExternal()
-                .source(ProcessState.FILL_PERSONAL_DETAILS).target(ProcessState.ANSWER_ACCOUNT_QUESTIONS)
-                .event(ProcessEvent.SUBMIT_PERSONAL).guard(guardType(ProcessType.MINOR))
-                .and().withExternal()
-                .source(ProcessState.ANSWER_ACCOUNT_QUESTIONS).target(ProcessState.KYC_IN_PROGRESS)
-                .event(ProcessEvent.SUBMIT_ANSWERS).guard(guardType(ProcessType.MINOR))
-                .and().withExternal()
-                .source(ProcessState.KYC_IN_PROGRESS).target(ProcessState.WAITING_FOR_BIOMETRY)
-                .event(ProcessEvent.KYC_VERIFIED).guard(guardType(ProcessType.MINOR))
-                .and().withExternal()
-                .source(ProcessState.WAITING_FOR_BIOMETRY).target(ProcessState.BIOMETRY_VERIFIED)
-                .event(ProcessEvent.BIOMETRY_SUCCESS).guard(guardType(ProcessType.MINOR))
-                .and().withExternal()
-                .source(ProcessState.BIOMETRY_VERIFIED).target(ProcessState.WAITING_FOR_PARENT_CONSENT)
-                .event(ProcessEvent.REQUEST_PARENT_CONSENT).guard(guardType(ProcessType.MINOR))
-                .and().withExternal()
-                .source(ProcessState.WAITING_FOR_PARENT_CONSENT).target(ProcessState.ACCOUNT_CREATED_LIMITED)
-                .event(ProcessEvent.PARENT_APPROVED).guard(guardType(ProcessType.MINOR))
-                .and().withExternal()
-                .source(ProcessState.ACCOUNT_CREATED_LIMITED).target(ProcessState.MINOR_ACCOUNT_IDENTIFIED)
-                .event(ProcessEvent.CREATE_ACCOUNT).guard(guardType(ProcessType.MINOR));
-    }
-
-    // ---------- MINOR -> REGULAR ----------
-    private void registerMinorToRegularFlow(StateMachineTransitionConfigurer<ProcessState, ProcessEvent> t) throws Exception {
-        t.withExternal()
-                .source(ProcessState.MINOR_ACCOUNT_IDENTIFIED).target(ProcessState.WAITING_FOR_CONVERSION_CONFIRMATION)
-                .event(ProcessEvent.CONFIRM_CONVERSION).guard(guardType(ProcessType.MINOR_TO_REGULAR))
-                .and().withExternal()
-                .source(ProcessState.WAITING_FOR_CONVERSION_CONFIRMATION).target(ProcessState.ACCOUNT_CONVERTED_TO_REGULAR)
-                .event(ProcessEvent.COMPLETE_CONVERSION).guard(guardType(ProcessType.MINOR_TO_REGULAR));
+            StateMachineTransitionConfigurer<ProcessState, ProcessEvent> t = builder.configureTransitions();
+            Guard<ProcessState, ProcessEvent> typeGuard = guardType(definition.type());
+            for (TransitionDefinition td : definition.transitions()) {
+                t.withExternal()
+                        .source(td.source()).target(td.target())
+                        .event(td.event()).guard(and(typeGuard, guards.get(td)));
+            }
+            return builder.createFactory();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot build state machine for " + definition.type()
+                    + " v" + definition.version(), e);
+        }
     }
 
     // ---------- Guards ----------
@@ -128,23 +74,45 @@ public class StateMachineConfig extends StateMachineConfigurerAdapter<ProcessSta
         };
     }
 
+    private static Guard<ProcessState, ProcessEvent> and(Guard<ProcessState, ProcessEvent> first,
+                                                         Guard<ProcessState, ProcessEvent> second) {
+        if (second == null) {
+            return first;
+        }
+        return ctx -> first.evaluate(ctx) && second.evaluate(ctx);
+    }
+
     // ---------- Persist & Listener ----------
     @Bean
     public StateMachinePersist<ProcessState, ProcessEvent, String> stateMachinePersist() {
         return new StateMachinePersist<>() {
-            @Override public void write(StateMachineContext<ProcessState, ProcessEvent> c, String s) { log.info("Persist {}", s); }
+            @Override public void write(StateMachineContext<ProcessState, ProcessEvent> c, String s) { log.trace("Persist {}", s); }
             @Override public StateMachineContext<ProcessState, ProcessEvent> read(String contextObj) { return null; }
         };
     }
 
     @Bean
     public StateMachineListenerAdapter<ProcessState, ProcessEvent> stateMachineListener() {
+        LogRateLimiter transitionLog = new LogRateLimiter(transitionsPerSecond);
         return new StateMachineListenerAdapter<>() {
             @Override
-            public void transition(Transition<ProcessState, ProcessEvent> tr) {
-                if (tr.getSource()!=null && tr.getTarget()!=null) {
+            public void stateContext(StateContext<ProcessState, ProcessEvent> ctx) {
+                // level first: with INFO off nothing below is evaluated
+                if (!log.isInfoEnabled() || ctx.getStage() != StateContext.Stage.TRANSITION) {
+                    return;
+                }
+                Transition<ProcessState, ProcessEvent> tr = ctx.getTransition();
+                if (tr == null || tr.getSource() == null || tr.getTarget() == null
+                        || FlowWarmup.MACHINE_ID.equals(ctx.getStateMachine().getId())) {
+                    return;
+                }
+                long dropped = transitionLog.tryAcquire();
+                if (dropped == 0) {
                     log.info("Transition: {} -> {} on {}", tr.getSource().getId(), tr.getTarget().getId(),
-                            tr.getTrigger()!=null ? tr.getTrigger().getEvent() : null);
+                            tr.getTrigger() != null ? tr.getTrigger().getEvent() : null);
+                } else if (dropped > 0) {
+                    log.info("Transition: {} -> {} on {} ({} more suppressed)", tr.getSource().getId(), tr.getTarget().getId(),
+                            tr.getTrigger() != null ? tr.getTrigger().getEvent() : null, dropped);
                 }
             }
             @Override
@@ -0,0 +1,46 @@
+package com.example.state_machine.controller;
+
+import com.example.state_machine.service.MajorityConversionJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/majority}: checkpoint and last result of the majority conversion job.
+ * {@code POST /actuator/majority} (optionally {@code {"dryRun": true}}): runs it now in the background.
+ */
+@Component
+@Endpoint(id = "majority")
+@ConditionalOnProperty(name = "process.majority.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class MajorityConversionEndpoint {
+
+    private final MajorityConversionJob job;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("running", job.isRunning());
+        job.checkpoint().ifPresent(day -> status.put("checkpoint", day));
+        if (job.lastResult() != null) {
+            status.put("last", job.lastResult());
+        }
+        return status;
+    }
+
+    @WriteOperation
+    public Map<String, Object> run(@Nullable Boolean dryRun) {
+        if (job.isRunning()) {
+            return Map.of("status", "RUNNING");
+        }
+        job.runAsync(Boolean.TRUE.equals(dryRun));
+        return Map.of("status", "STARTED");
+    }
+}
@@ -3,15 +3,29 @@ package com.example.state_machine.controller;
 import com.example.state_machine.controller.dto.*;
 import com.example.state_machine.model.ProcessEvent;
 import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.service.BulkStartService;
 import com.example.state_machine.service.FlowService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * REST controller for managing process instances and triggering state machine events.
@@ -24,6 +38,12 @@ import java.util.Map;
 public class ProcessController {
 
     private final FlowService flowService;
+    private final BulkStartService bulkStartService;
+    private final ProcessUpdateBroadcaster broadcaster;
+
+    static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
+    private static final ProcessView STREAM_VIEW = ProcessView.of(List.of("id", "state", "screenCode", "updatedAt"), null);
 
     // --- SERVER-DRIVEN ---
     // Starts a process — server decides initial state and flow
@@ -43,18 +63,103 @@ public class ProcessController {
         return ResponseEntity.ok(ProcessInstanceDto.fromEntity(instance));
     }
 
+    // --- SERVER-DRIVEN ---
+    // Starts many processes from an NDJSON stream — migrations and campaigns
+    /**
+     * Starts one process per NDJSON line ({@code {"clientId", "type", "minorAccountId", "initialData"}}).
+     * The response streams one NDJSON line per item, {@code {"line", "id"}} or {@code {"line", "error"}}.
+     *
+     * @param body     the NDJSON request body.
+     * @param response the response the results are streamed to.
+     */
+    @PostMapping(value = "/bulk/start", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void bulkStart(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        bulkStartService.startAll(body, response.getOutputStream());
+    }
+
     // --- SERVER-DRIVEN ---
     // Fetches process instance info — no state change
     /**
      * Retrieves a process instance by its ID.
+     * Responses carry an {@code ETag}; a matching {@code If-None-Match} is answered with 304. Either way
+     * the process (or the selected part of it) is read once and the tag computed from that copy.
      *
-     * @param id the process instance ID.
-     * @return the process with current state, screen code, and variables.
+     * @param id        the process instance ID.
+     * @param fields    optional DTO fields to return (e.g. {@code state,screenCode}); all when absent.
+     * @param variables optional variable keys to return; all when absent.
+     * @return the process with current state, screen code, and variables (or the selected subset).
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ProcessInstanceDto> get(@PathVariable String id) {
-        ProcessInstance instance = flowService.getProcess(id);
-        return ResponseEntity.ok(ProcessInstanceDto.fromEntity(instance));
+    public ResponseEntity<ProcessInstanceDto> get(
+            @PathVariable String id,
+            @RequestParam(required = false) Set<String> fields,
+            @RequestParam(required = false) Set<String> variables,
+            ServletWebRequest request) {
+        ProcessView view = ProcessView.of(fields, variables);
+        ProcessInstance instance = view.isFull()
+                ? flowService.getProcess(id)
+                : flowService.getProcess(id, view.entityFields());
+        String etag = view.etag(instance);
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(view.toDto(instance));
+    }
+
+    // --- SERVER-DRIVEN ---
+    // Pushes state changes instead of having the client poll GET /process/{id}
+    /**
+     * Subscribes to the process' state changes as Server-Sent Events. The current state is sent first,
+     * then one {@code state} event ({@code {"id", "state", "screenCode", "updatedAt"}}) per transition.
+     *
+     * @param id the process instance ID.
+     * @return the event stream; it ends after {@code process.stream.timeout} and clients reconnect.
+     */
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathVariable String id) {
+        return broadcaster.subscribe(id, () -> STREAM_VIEW.toDto(flowService.getProcess(id, STREAM_VIEW.entityFields())));
+    }
+
+    // --- SERVER-DRIVEN ---
+    // Downloads one variable — large BLOB variables stream from GridFS
+    /**
+     * Streams the raw content of a single variable (e.g. a consent document).
+     *
+     * @param id  the process instance ID.
+     * @param key the variable key.
+     * @return the variable content as UTF-8 text.
+     */
+    @GetMapping("/{id}/variables/{key}")
+    public ResponseEntity<Resource> variable(@PathVariable String id, @PathVariable String key) {
+        Resource content = flowService.openVariable(id, key);
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(content);
+    }
+
+    // --- RAW (CLIENT-DRIVEN) ---
+    // Client edits variables without moving the process — one conditional update, usually without a read
+    /**
+     * Applies a JSON Merge Patch to the process variables: {@code null} removes a key, other values replace
+     * (or, for {@code OBJECT} variables, merge into) the stored ones.
+     *
+     * @param id    the process instance ID.
+     * @param patch the merge patch, keyed by variable.
+     * @param state optional state the process must still be in; otherwise 409.
+     * @return 204 with the new {@code ETag} of the full process.
+     */
+    @PatchMapping(value = "/{id}/variables", consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Void> patchVariables(@PathVariable String id,
+                                               @RequestBody Map<String, Object> patch,
+                                               @RequestParam(required = false) ProcessState state) {
+        ProcessInstance patched = flowService.patchVariables(id, patch, state);
+        return ResponseEntity.noContent()
+                .eTag(ProcessView.of(null, null).etag(patched))
+                .build();
     }
 
     // --- RAW (CLIENT-DRIVEN) ---
@@ -123,6 +228,32 @@ public class ProcessController {
         return ResponseEntity.ok(ProcessInstanceDto.fromEntity(instance));
     }
 
+    // --- SERVER-DRIVEN ---
+    // Starts the further owners of a MULTI_OWNER process, each in its own CO_OWNER process
+    /**
+     * Starts one CO_OWNER process per owner. The MULTI_OWNER process must be in WAITING_FOR_ALL_OWNERS;
+     * it advances by itself once all its owners finished.
+     *
+     * @param id  the MULTI_OWNER process.
+     * @param req the owners, with optional initial data each.
+     * @return the started owner processes.
+     */
+    @PostMapping("/{id}/owners")
+    public ResponseEntity<List<ProcessInstanceDto>> addOwners(@PathVariable String id,
+                                                              @Valid @RequestBody AddOwnersRequest req) {
+        Map<String, Map<String, Object>> owners = new LinkedHashMap<>();
+        for (AddOwnersRequest.Owner owner : req.getOwners()) {
+            Map<String, Object> data = owner.getInitialData() != null ? owner.getInitialData() : Map.of();
+            if (owners.put(owner.getClientId(), data) != null) {
+                throw new IllegalArgumentException("Duplicate owner: " + owner.getClientId());
+            }
+        }
+        List<ProcessInstanceDto> started = flowService.addOwners(id, owners).stream()
+                .map(ProcessInstanceDto::fromEntity)
+                .toList();
+        return ResponseEntity.ok(started);
+    }
+
     // --- SERVER-DRIVEN ---
     // Advances to the next state automatically if server conditions are met
     @PostMapping("/{id}/advance")
@@ -0,0 +1,133 @@
+package com.example.state_machine.controller;
+
+import com.example.state_machine.controller.dto.ProcessInstanceDto;
+import com.example.state_machine.service.ProcessStateChanged;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fans out {@link ProcessStateChanged} events to the SSE subscribers of {@code GET /process/{id}/stream}
+ * on this node. An idle subscription is an {@link SseEmitter} on a released servlet async context — no
+ * thread is held — plus a heartbeat comment every {@code process.stream.heartbeat} that drops dead clients.
+ * <p>
+ * Without change streams each node delivers the transitions it made itself. With
+ * {@code process.stream.change-streams=true} every node delivers from the Mongo change stream instead,
+ * which also carries the transitions made on other nodes.
+ */
+@Component
+@Slf4j
+public class ProcessUpdateBroadcaster implements DisposableBean {
+
+    static final String EVENT_NAME = "state";
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final boolean changeStreams;
+    private final ScheduledExecutorService heartbeats;
+
+    public ProcessUpdateBroadcaster(@Value("${process.stream.timeout:30m}") Duration timeout,
+                                    @Value("${process.stream.heartbeat:25s}") Duration heartbeat,
+                                    @Value("${process.stream.change-streams:false}") boolean changeStreams) {
+        this.timeoutMillis = timeout.toMillis();
+        this.changeStreams = changeStreams;
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "process-stream-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a subscriber, then sends it the current state, so no transition between the two is missed.
+     *
+     * @param current loads the current state; exceptions (e.g. process not found) propagate
+     */
+    public SseEmitter subscribe(String processId, Supplier<ProcessInstanceDto> current) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        subscribers.computeIfAbsent(processId, id -> ConcurrentHashMap.newKeySet()).add(emitter);
+        emitter.onCompletion(() -> unsubscribe(processId, emitter));
+        emitter.onTimeout(() -> unsubscribe(processId, emitter));
+        emitter.onError(e -> unsubscribe(processId, emitter));
+        try {
+            send(processId, emitter, current.get());
+        } catch (RuntimeException e) {
+            unsubscribe(processId, emitter);
+            throw e;
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onStateChanged(ProcessStateChanged event) {
+        if (event.fromChangeStream() != changeStreams) {
+            return; // delivered through the other path
+        }
+        Set<SseEmitter> emitters = subscribers.get(event.id());
+        if (emitters == null) {
+            return;
+        }
+        ProcessInstanceDto update = ProcessInstanceDto.builder()
+                .id(event.id())
+                .state(event.state())
+                .screenCode(event.state().getScreenCode())
+                .updatedAt(event.updatedAt())
+                .build();
+        for (SseEmitter emitter : emitters) {
+            send(event.id(), emitter, update);
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void send(String processId, SseEmitter emitter, ProcessInstanceDto update) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(update, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            unsubscribe(processId, emitter); // client gone or emitter already completed
+        }
+    }
+
+    private void unsubscribe(String processId, SseEmitter emitter) {
+        subscribers.computeIfPresent(processId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private void heartbeat() {
+        subscribers.forEach((processId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment(""));
+                } catch (IOException | IllegalStateException e) {
+                    unsubscribe(processId, emitter);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        heartbeats.shutdownNow();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+}
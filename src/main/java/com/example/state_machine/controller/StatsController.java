@@ -0,0 +1,42 @@
+package com.example.state_machine.controller;
+
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.service.ProcessStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Process counters for dashboards. Answers from the maintained counters, never from the processes.
+ */
+@RestController
+@RequestMapping("/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private static final Duration DEFAULT_WINDOW = Duration.ofHours(24);
+
+    private final ProcessStats stats;
+
+    /**
+     * {@code GET /stats/funnel?type=SINGLE_OWNER&since=...&until=...&from=KYC_IN_PROGRESS&to=WAITING_FOR_BIOMETRY}:
+     * occupancy per state, transitions in the window (default: the last 24 hours) and, with
+     * {@code from} and {@code to}, how many processes dropped between the two steps.
+     */
+    @GetMapping("/funnel")
+    public ProcessStats.Funnel funnel(@RequestParam ProcessType type,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant since,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant until,
+                                      @RequestParam(required = false) ProcessState from,
+                                      @RequestParam(required = false) ProcessState to) {
+        Instant end = until != null ? until : Instant.now();
+        return stats.funnel(type, since != null ? since : end.minus(DEFAULT_WINDOW), end, from, to);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.state_machine.controller;
+
+import com.example.state_machine.service.ProcessStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code POST /actuator/stats}: recounts the state occupancy counters from the processes in the background.
+ */
+@Component
+@Endpoint(id = "stats")
+@RequiredArgsConstructor
+public class StatsEndpoint {
+
+    private final ProcessStats stats;
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        stats.rebuildAsync();
+        return Map.of("status", "STARTED");
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.state_machine.controller.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AddOwnersRequest {
+
+    @NotEmpty
+    private List<@Valid Owner> owners;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Owner {
+        @NotBlank
+        private String clientId;
+        /**
+         * Optional variables the owner's process starts with.
+         */
+        private Map<String, Object> initialData;
+    }
+}
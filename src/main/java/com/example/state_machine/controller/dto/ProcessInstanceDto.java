@@ -2,6 +2,7 @@ package com.example.state_machine.controller.dto;
 
 
 import com.example.state_machine.model.ProcessState;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 import java.time.Instant;
@@ -11,6 +12,7 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ProcessInstanceDto {
 
     private String id;
@@ -18,6 +20,8 @@ public class ProcessInstanceDto {
     private ProcessState state;
     private String screenCode; // <-- added
     private Map<String, Object> variables;
+    private String parentId;
+    private Integer pendingChildren;
     private Instant createdAt;
     private Instant updatedAt;
 
@@ -28,6 +32,8 @@ public class ProcessInstanceDto {
                 .state(entity.getState())
                 .screenCode(entity.getState().getScreenCode()) // <-- mapping from enum
                 .variables(entity.getVariables())
+                .parentId(entity.getParentId())
+                .pendingChildren(entity.getPendingChildren())
                 .createdAt(entity.getCreatedAt())
                 .updatedAt(entity.getUpdatedAt())
                 .build();
@@ -0,0 +1,121 @@
+package com.example.state_machine.controller.dto;
+
+import com.example.state_machine.model.ProcessInstance;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Client-selected representation of a process for {@code GET /process/{id}}:
+ * {@code ?fields=state,screenCode} picks DTO fields, {@code ?variables=key1,key2} picks variable keys.
+ * The selection is translated into a Mongo projection so unselected data is never read.
+ */
+public final class ProcessView {
+
+    public static final Set<String> FIELDS =
+            Set.of("id", "clientId", "state", "screenCode", "variables", "parentId", "pendingChildren",
+                    "createdAt", "updatedAt");
+
+    /** Entity properties the ETag is computed from. */
+    public static final List<String> ETAG_FIELDS = List.of("state", "updatedAt", "revision");
+
+    private static final ProcessView FULL = new ProcessView(null, null);
+
+    private final Set<String> fields;       // null = every field
+    private final Set<String> variableKeys; // null = every variable
+
+    private ProcessView(Set<String> fields, Set<String> variableKeys) {
+        this.fields = fields;
+        this.variableKeys = variableKeys;
+    }
+
+    /**
+     * @throws IllegalArgumentException on unknown fields or variable keys that are not plain names.
+     */
+    public static ProcessView of(Collection<String> fields, Collection<String> variableKeys) {
+        if (fields == null && variableKeys == null) {
+            return FULL;
+        }
+        Set<String> f = null;
+        if (fields != null) {
+            f = new TreeSet<>(fields);
+            for (String field : f) {
+                if (!FIELDS.contains(field)) {
+                    throw new IllegalArgumentException("Unknown field: " + field + " (allowed: " + new TreeSet<>(FIELDS) + ")");
+                }
+            }
+            if (variableKeys != null) {
+                f.add("variables"); // a variable filter implies the variables field
+            }
+        }
+        Set<String> v = null;
+        if (variableKeys != null) {
+            v = new TreeSet<>(variableKeys);
+            for (String key : v) {
+                if (key.isBlank() || key.contains(".") || key.startsWith("$")) {
+                    throw new IllegalArgumentException("Invalid variable key: " + key);
+                }
+            }
+        }
+        return new ProcessView(f, v);
+    }
+
+    public boolean isFull() {
+        return fields == null && variableKeys == null;
+    }
+
+    /**
+     * @return entity properties to project; always includes what the ETag needs.
+     */
+    public List<String> entityFields() {
+        Set<String> paths = new LinkedHashSet<>(ETAG_FIELDS);
+        for (String field : fields != null ? fields : FIELDS) {
+            switch (field) {
+                case "id", "screenCode" -> { } // _id is always returned, screenCode derives from state
+                case "variables" -> {
+                    if (variableKeys == null) {
+                        paths.add("variables");
+                    } else {
+                        variableKeys.forEach(k -> paths.add("variables." + k));
+                    }
+                }
+                default -> paths.add(field);
+            }
+        }
+        return List.copyOf(paths);
+    }
+
+    public ProcessInstanceDto toDto(ProcessInstance entity) {
+        if (isFull()) {
+            return ProcessInstanceDto.fromEntity(entity);
+        }
+        ProcessInstanceDto.ProcessInstanceDtoBuilder dto = ProcessInstanceDto.builder();
+        if (selected("id")) dto.id(entity.getId());
+        if (selected("clientId")) dto.clientId(entity.getClientId());
+        if (selected("state")) dto.state(entity.getState());
+        if (selected("screenCode") && entity.getState() != null) dto.screenCode(entity.getState().getScreenCode());
+        if (selected("variables")) dto.variables(entity.getVariables() != null ? entity.getVariables() : Map.of());
+        if (selected("parentId")) dto.parentId(entity.getParentId());
+        if (selected("pendingChildren")) dto.pendingChildren(entity.getPendingChildren());
+        if (selected("createdAt")) dto.createdAt(entity.getCreatedAt());
+        if (selected("updatedAt")) dto.updatedAt(entity.getUpdatedAt());
+        return dto.build();
+    }
+
+    /**
+     * Every write bumps the process' {@code revision}, so (id, revision) identifies one revision of it even
+     * when two writes share a millisecond of {@code updatedAt}; the selection is mixed in because each view
+     * is a different representation.
+     */
+    public String etag(ProcessInstance entity) {
+        String revision = entity.getId() + '|' + (entity.getRevision() != null ? entity.getRevision() : 0) + '|'
+                + entity.getState() + '|' + (entity.getUpdatedAt() != null ? entity.getUpdatedAt().toEpochMilli() : 0)
+                + '|' + fields + '|' + variableKeys;
+        return '"' + DigestUtils.md5DigestAsHex(revision.getBytes(StandardCharsets.UTF_8)) + '"';
+    }
+
+    private boolean selected(String field) {
+        return fields == null || fields.contains(field);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.config.StateMachineConfig;
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.service.advance.Precondition;
+import org.springframework.statemachine.ExtendedState;
+import org.springframework.statemachine.StateMachine;
+import org.springframework.statemachine.config.StateMachineFactory;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A {@link FlowDefinition} compiled into lookup tables and a state machine factory.
+ * Instances are immutable and shared between request threads.
+ */
+public class CompiledFlow {
+
+    private final FlowDefinition definition;
+    private final Map<ProcessState, ProcessEvent> nextEvents;
+    private final Map<ProcessState, ProcessState> backTargets;
+    private final Map<ProcessState, Map<ProcessEvent, List<Precondition>>> preconditions;
+    private final List<String> warnings;
+    private final VariableSchema variables;
+    private final Set<String> extendedStateKeys; // null = every variable
+    private final StateMachineFactory<ProcessState, ProcessEvent> stateMachineFactory;
+
+    CompiledFlow(FlowDefinition definition,
+                 Map<ProcessState, ProcessEvent> nextEvents,
+                 Map<ProcessState, Map<ProcessEvent, List<Precondition>>> preconditions,
+                 List<String> warnings,
+                 Set<String> extendedStateKeys,
+                 StateMachineFactory<ProcessState, ProcessEvent> stateMachineFactory) {
+        this.definition = definition;
+        this.nextEvents = nextEvents;
+        this.backTargets = new EnumMap<>(ProcessState.class);
+        for (FlowDefinition.TransitionDefinition t : definition.transitions()) {
+            if (t.event() == ProcessEvent.BACK) {
+                backTargets.put(t.source(), t.target());
+            }
+        }
+        this.preconditions = preconditions;
+        this.warnings = warnings;
+        this.variables = new VariableSchema(definition.variables());
+        this.extendedStateKeys = extendedStateKeys;
+        this.stateMachineFactory = stateMachineFactory;
+    }
+
+    public FlowDefinition getDefinition() {
+        return definition;
+    }
+
+    public ProcessType getType() {
+        return definition.type();
+    }
+
+    public int getVersion() {
+        return definition.version();
+    }
+
+    public ProcessState getInitial() {
+        return definition.initial();
+    }
+
+    /**
+     * @return whether a process of this flow is finished in the given state.
+     */
+    public boolean isTerminal(ProcessState state) {
+        return definition.terminal().contains(state);
+    }
+
+    /**
+     * @return non-fatal findings of the {@link FlowAnalyzer} for this flow.
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * @return the schema incoming variables are validated and converted with.
+     */
+    public VariableSchema getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the event {@code /advance} fires from the given state, if any.
+     */
+    public Optional<ProcessEvent> nextEvent(ProcessState state) {
+        return Optional.ofNullable(nextEvents.get(state));
+    }
+
+    /**
+     * @return the state {@code BACK} returns to from the given state, if the flow allows going back there.
+     */
+    public Optional<ProcessState> backTarget(ProcessState state) {
+        return Optional.ofNullable(backTargets.get(state));
+    }
+
+    /**
+     * @return preconditions bound to the transition leaving {@code state} on {@code event}.
+     */
+    public List<Precondition> preconditions(ProcessState state, ProcessEvent event) {
+        Map<ProcessEvent, List<Precondition>> byEvent = preconditions.get(state);
+        if (byEvent == null) {
+            return List.of();
+        }
+        return byEvent.getOrDefault(event, List.of());
+    }
+
+    /**
+     * Prepares the extended state for firing an event: the process type, which the type guard of every
+     * transition reads, plus only the variables declared by the flow's guards ({@link ExtendedStateKeys}),
+     * taken from {@code data} first and then from the stored {@code variables}, restored by the flow's
+     * {@link VariableSchema}.
+     */
+    public void hydrate(ExtendedState extendedState, Map<String, Object> variables, Map<String, Object> data) {
+        Map<Object, Object> ext = extendedState.getVariables();
+        ext.clear();
+        ext.put(StateMachineConfig.EXT_TYPE, getType());
+        if (extendedStateKeys == null) {
+            if (variables != null) variables.forEach((key, value) -> ext.put(key, this.variables.restore(key, value)));
+            if (data != null) ext.putAll(data);
+            return;
+        }
+        for (String key : extendedStateKeys) {
+            Object value = data != null ? data.get(key) : null;
+            if (value == null && variables != null) {
+                value = this.variables.restore(key, variables.get(key));
+            }
+            if (value != null) {
+                ext.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Builds a fresh (not started) state machine for this flow.
+     */
+    public StateMachine<ProcessState, ProcessEvent> getStateMachine(String machineId) {
+        return stateMachineFactory.getStateMachine(machineId);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.state_machine.flow;
+
+import java.util.Set;
+
+/**
+ * Implemented by guards bound in flow definitions that read process variables from the state
+ * machine's extended state. Only the declared keys (plus the process type) are copied into the
+ * extended state before an event is fired; a bound guard that does not implement this interface
+ * makes its flow fall back to copying every variable.
+ */
+public interface ExtendedStateKeys {
+
+    Set<String> extendedStateKeys();
+}
@@ -0,0 +1,101 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.service.advance.Precondition;
+import lombok.RequiredArgsConstructor;
+import org.springframework.statemachine.guard.Guard;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Static checks on a flow's transition graph, run before a definition is compiled:
+ * <ul>
+ *     <li>every state is reachable from the initial state;</li>
+ *     <li>terminal states have no outgoing transitions, other states have at least one (no dead ends);</li>
+ *     <li>every non-terminal state has a {@code next} step, so {@code /advance} never gets stuck;</li>
+ *     <li>guard and precondition bindings name existing beans that support the transition.</li>
+ * </ul>
+ * A precondition that supports a transition it is not bound to is reported as a warning.
+ */
+@Component
+@RequiredArgsConstructor
+public class FlowAnalyzer {
+
+    private final Map<String, Precondition> preconditionBeans;
+    private final Map<String, Guard<ProcessState, ProcessEvent>> guardBeans;
+
+    public record Report(FlowDefinition definition, List<String> errors, List<String> warnings) {
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+
+    public Report analyze(FlowDefinition def) {
+        List<String> errors = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+
+        Map<ProcessState, List<TransitionDefinition>> outgoing = new EnumMap<>(ProcessState.class);
+        for (TransitionDefinition t : def.transitions()) {
+            outgoing.computeIfAbsent(t.source(), s -> new ArrayList<>()).add(t);
+        }
+
+        Set<ProcessState> reachable = reachableFrom(def.initial(), outgoing);
+        for (ProcessState state : def.states()) {
+            List<TransitionDefinition> out = outgoing.getOrDefault(state, List.of());
+            if (!reachable.contains(state)) {
+                errors.add("state " + state + " is unreachable from " + def.initial());
+            }
+            if (def.terminal().contains(state)) {
+                if (!out.isEmpty()) {
+                    errors.add("terminal state " + state + " has outgoing transitions");
+                }
+            } else if (out.isEmpty()) {
+                errors.add("state " + state + " is a dead end (not terminal, no outgoing transition)");
+            } else if (out.stream().noneMatch(TransitionDefinition::next)) {
+                errors.add("state " + state + " has no next step for /advance");
+            }
+        }
+
+        for (TransitionDefinition t : def.transitions()) {
+            checkBindings(def, t, errors, warnings);
+        }
+        return new Report(def, List.copyOf(errors), List.copyOf(warnings));
+    }
+
+    private void checkBindings(FlowDefinition def, TransitionDefinition t, List<String> errors, List<String> warnings) {
+        String where = t.source() + " -[" + t.event() + "]-> " + t.target();
+        if (t.guard() != null && !guardBeans.containsKey(t.guard())) {
+            errors.add(where + ": unknown guard '" + t.guard() + "'");
+        }
+        for (String name : t.preconditions()) {
+            Precondition p = preconditionBeans.get(name);
+            if (p == null) {
+                errors.add(where + ": unknown precondition '" + name + "'");
+            } else if (!p.supports(def.type(), t.source(), t.event())) {
+                errors.add(where + ": precondition '" + name + "' does not support this transition");
+            }
+        }
+        preconditionBeans.forEach((name, p) -> {
+            if (p.supports(def.type(), t.source(), t.event()) && !t.preconditions().contains(name)) {
+                warnings.add(where + ": precondition '" + name + "' supports this transition but is not bound");
+            }
+        });
+    }
+
+    private static Set<ProcessState> reachableFrom(ProcessState initial,
+                                                   Map<ProcessState, List<TransitionDefinition>> outgoing) {
+        Set<ProcessState> seen = EnumSet.of(initial);
+        Deque<ProcessState> queue = new ArrayDeque<>(seen);
+        while (!queue.isEmpty()) {
+            for (TransitionDefinition t : outgoing.getOrDefault(queue.poll(), List.of())) {
+                if (seen.add(t.target())) {
+                    queue.add(t.target());
+                }
+            }
+        }
+        return seen;
+    }
+}
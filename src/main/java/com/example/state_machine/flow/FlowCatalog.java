@@ -0,0 +1,81 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.model.ProcessType;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of all compiled flows, several versions per type. A new catalog is
+ * built on every reload and swapped in atomically by {@link FlowRegistry}.
+ * Lookups by (type, version) are a plain array access.
+ */
+public final class FlowCatalog {
+
+    /** Version assumed for processes persisted before {@code flowVersion} existed. */
+    public static final int LEGACY_VERSION = 1;
+
+    private final Map<ProcessType, CompiledFlow[]> byVersion;
+    private final Map<ProcessType, CompiledFlow> latest;
+
+    FlowCatalog(Collection<CompiledFlow> flows) {
+        Map<ProcessType, CompiledFlow[]> versions = new EnumMap<>(ProcessType.class);
+        Map<ProcessType, CompiledFlow> newest = new EnumMap<>(ProcessType.class);
+        for (CompiledFlow flow : flows) {
+            CompiledFlow current = newest.get(flow.getType());
+            if (current == null || current.getVersion() < flow.getVersion()) {
+                newest.put(flow.getType(), flow);
+            }
+        }
+        for (CompiledFlow flow : flows) {
+            CompiledFlow[] slots = versions.computeIfAbsent(flow.getType(),
+                    t -> new CompiledFlow[newest.get(t).getVersion() + 1]);
+            slots[flow.getVersion()] = flow;
+        }
+        this.byVersion = Collections.unmodifiableMap(versions);
+        this.latest = Collections.unmodifiableMap(newest);
+    }
+
+    /**
+     * @return the newest version of the type's flow, used for new processes.
+     * @throws IllegalStateException if no flow is defined for the type.
+     */
+    public CompiledFlow flow(ProcessType type) {
+        CompiledFlow flow = latest.get(type);
+        if (flow == null) {
+            throw new IllegalStateException("No flow defined for type " + type);
+        }
+        return flow;
+    }
+
+    /**
+     * @param version flow version stamped on the process; {@code null} means {@link #LEGACY_VERSION}.
+     * @throws IllegalStateException if that version is not loaded.
+     */
+    public CompiledFlow flow(ProcessType type, Integer version) {
+        int v = version != null ? version : LEGACY_VERSION;
+        CompiledFlow[] slots = byVersion.get(type);
+        CompiledFlow flow = (slots != null && v > 0 && v < slots.length) ? slots[v] : null;
+        if (flow == null) {
+            throw new IllegalStateException("No flow version " + v + " defined for type " + type);
+        }
+        return flow;
+    }
+
+    /**
+     * @return the newest version of every type.
+     */
+    public Collection<CompiledFlow> flows() {
+        return latest.values();
+    }
+
+    /**
+     * @return every loaded version of the type, oldest first.
+     */
+    public List<CompiledFlow> versions(ProcessType type) {
+        CompiledFlow[] slots = byVersion.get(type);
+        if (slots == null) {
+            return List.of();
+        }
+        return Arrays.stream(slots).filter(Objects::nonNull).toList();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.config.StateMachineConfig;
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.service.advance.Precondition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.statemachine.guard.Guard;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Turns validated {@link FlowDefinition}s into {@link CompiledFlow}s: runs the {@link FlowAnalyzer},
+ * resolves guard and precondition bean names and builds one state machine factory per flow.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FlowCompiler {
+
+    private final StateMachineConfig stateMachineConfig;
+    private final FlowAnalyzer analyzer;
+    private final Map<String, Precondition> preconditionBeans;
+    private final Map<String, Guard<ProcessState, ProcessEvent>> guardBeans;
+
+    /**
+     * @throws IllegalStateException listing every analysis error if any definition is inconsistent.
+     */
+    public FlowCatalog compile(List<FlowDefinition> definitions) {
+        List<FlowAnalyzer.Report> reports = definitions.stream().map(analyzer::analyze).toList();
+
+        List<String> errors = new ArrayList<>();
+        for (FlowAnalyzer.Report report : reports) {
+            String flow = report.definition().type() + " v" + report.definition().version();
+            report.errors().forEach(e -> errors.add(flow + ": " + e));
+            report.warnings().forEach(w -> log.warn("Flow {}: {}", flow, w));
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Flow analysis failed:\n  " + String.join("\n  ", errors));
+        }
+
+        List<CompiledFlow> flows = new ArrayList<>(reports.size());
+        for (FlowAnalyzer.Report report : reports) {
+            flows.add(compile(report));
+        }
+        return new FlowCatalog(flows);
+    }
+
+    private CompiledFlow compile(FlowAnalyzer.Report report) {
+        FlowDefinition def = report.definition();
+        Map<ProcessState, ProcessEvent> nextEvents = new EnumMap<>(ProcessState.class);
+        Map<ProcessState, Map<ProcessEvent, List<Precondition>>> preconditions = new EnumMap<>(ProcessState.class);
+        Map<TransitionDefinition, Guard<ProcessState, ProcessEvent>> guards = new HashMap<>();
+        Set<String> stateKeys = new HashSet<>(); // becomes null (= every variable) for undeclared guards
+
+        for (TransitionDefinition t : def.transitions()) {
+            if (t.next()) {
+                nextEvents.put(t.source(), t.event());
+            }
+            if (!t.preconditions().isEmpty()) {
+                preconditions.computeIfAbsent(t.source(), s -> new EnumMap<>(ProcessEvent.class))
+                        .put(t.event(), t.preconditions().stream().map(preconditionBeans::get).toList());
+            }
+            if (t.guard() != null) {
+                Guard<ProcessState, ProcessEvent> guard = guardBeans.get(t.guard());
+                guards.put(t, guard);
+                if (guard instanceof ExtendedStateKeys declared) {
+                    if (stateKeys != null) stateKeys.addAll(declared.extendedStateKeys());
+                } else {
+                    stateKeys = null;
+                }
+            }
+        }
+
+        return new CompiledFlow(
+                def,
+                Collections.unmodifiableMap(nextEvents),
+                Collections.unmodifiableMap(preconditions),
+                report.warnings(),
+                stateKeys != null ? Set.copyOf(stateKeys) : null,
+                stateMachineConfig.createFactory(def, guards)
+        );
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Declarative description of one flow, as read from {@code flows/*.yml}.
+ *
+ * @param type        process type the flow belongs to
+ * @param version     definition version (starts at 1)
+ * @param initial     state a new process of this type starts in
+ * @param terminal    states in which a process of this flow is finished
+ * @param transitions allowed transitions of the flow
+ * @param variables   declared process variables by key (see {@link VariableSchema})
+ */
+public record FlowDefinition(ProcessType type,
+                             int version,
+                             ProcessState initial,
+                             Set<ProcessState> terminal,
+                             List<TransitionDefinition> transitions,
+                             Map<String, VariableDefinition> variables) {
+
+    public FlowDefinition {
+        terminal = terminal == null ? Set.of() : Set.copyOf(terminal);
+        transitions = transitions == null ? List.of() : List.copyOf(transitions);
+        variables = variables == null ? Map.of() : Map.copyOf(variables);
+    }
+
+    /**
+     * @return the initial state plus every state a transition leaves or enters.
+     */
+    public Set<ProcessState> states() {
+        EnumSet<ProcessState> states = EnumSet.noneOf(ProcessState.class);
+        if (initial != null) {
+            states.add(initial);
+        }
+        states.addAll(terminal);
+        for (TransitionDefinition t : transitions) {
+            states.add(t.source());
+            states.add(t.target());
+        }
+        return states;
+    }
+
+    /**
+     * @param source        state the transition leaves
+     * @param target        state the transition enters
+     * @param event         event triggering the transition
+     * @param next          whether {@code /advance} fires this event from {@code source}
+     * @param guard         optional name of an additional {@code Guard} bean
+     * @param preconditions names of the {@code Precondition} beans checked before {@code /advance}
+     */
+    public record TransitionDefinition(ProcessState source,
+                                       ProcessState target,
+                                       ProcessEvent event,
+                                       boolean next,
+                                       String guard,
+                                       List<String> preconditions) {
+
+        public TransitionDefinition {
+            preconditions = preconditions == null ? List.of() : List.copyOf(preconditions);
+        }
+    }
+
+    /**
+     * @param type    canonical type the value is converted to on write
+     * @param maxSize optional limit on string characters or object/list entries
+     */
+    public record VariableDefinition(VariableType type, Integer maxSize) {
+    }
+}
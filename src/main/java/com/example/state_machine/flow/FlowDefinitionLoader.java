@@ -0,0 +1,141 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Reads and validates flow definitions from {@code flows.location}
+ * (by default every {@code flows/*.yml} on the classpath; several patterns are separated by commas).
+ */
+@Component
+@Slf4j
+@ImportRuntimeHints(FlowRuntimeHints.class)
+public class FlowDefinitionLoader {
+
+    private final ObjectMapper yaml = new ObjectMapper(new YAMLFactory());
+    private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+    private final String location;
+
+    public FlowDefinitionLoader(@Value("${flows.location:classpath*:flows/*.yml}") String location) {
+        this.location = location;
+    }
+
+    /**
+     * Loads every definition under the configured location.
+     *
+     * @return validated definitions, at least one version per {@link ProcessType}.
+     * @throws IllegalStateException if a definition cannot be read or is invalid.
+     */
+    public List<FlowDefinition> loadAll() {
+        List<Resource> resources = new ArrayList<>();
+        for (String pattern : StringUtils.commaDelimitedListToStringArray(location)) {
+            try {
+                resources.addAll(List.of(resolver.getResources(pattern.trim())));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot list flow definitions at " + pattern, e);
+            }
+        }
+
+        List<FlowDefinition> definitions = new ArrayList<>();
+        for (Resource resource : resources) {
+            definitions.add(load(resource));
+        }
+
+        checkVersions(definitions);
+        log.info("Loaded {} flow definitions from {}", definitions.size(), location);
+        return List.copyOf(definitions);
+    }
+
+    /**
+     * Every type needs at least one definition and each (type, version) pair must be unique.
+     */
+    static void checkVersions(List<FlowDefinition> definitions) {
+        Set<String> seen = new HashSet<>();
+        EnumSet<ProcessType> missing = EnumSet.allOf(ProcessType.class);
+        for (FlowDefinition def : definitions) {
+            if (!seen.add(def.type() + " v" + def.version())) {
+                throw new IllegalStateException("Duplicate flow definition for " + def.type() + " v" + def.version());
+            }
+            missing.remove(def.type());
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("No flow definition for types " + missing);
+        }
+    }
+
+    /**
+     * Parses and validates a single definition.
+     */
+    public FlowDefinition load(Resource resource) {
+        FlowDefinition def;
+        try (InputStream in = resource.getInputStream()) {
+            def = yaml.readValue(in, FlowDefinition.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read flow definition " + resource.getDescription(), e);
+        }
+
+        List<String> errors = validate(def);
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Invalid flow definition " + resource.getDescription() + ": " + errors);
+        }
+        return def;
+    }
+
+    static List<String> validate(FlowDefinition def) {
+        List<String> errors = new ArrayList<>();
+        if (def.type() == null) errors.add("type is required");
+        if (def.version() < 1) errors.add("version must be >= 1");
+        if (def.initial() == null) errors.add("initial is required");
+        if (def.transitions().isEmpty()) errors.add("at least one transition is required");
+
+        Set<String> seen = new HashSet<>();
+        Map<ProcessState, ProcessEvent> nextBySource = new EnumMap<>(ProcessState.class);
+        for (TransitionDefinition t : def.transitions()) {
+            if (t.source() == null || t.target() == null || t.event() == null) {
+                errors.add("transition " + t + " must have source, target and event");
+                continue;
+            }
+            if (!seen.add(t.source() + "/" + t.event())) {
+                errors.add("duplicate transition " + t.source() + " on " + t.event());
+            }
+            if (t.next()) {
+                ProcessEvent previous = nextBySource.putIfAbsent(t.source(), t.event());
+                if (previous != null) {
+                    errors.add("state " + t.source() + " has more than one next step (" + previous + ", " + t.event() + ")");
+                }
+            }
+        }
+
+        def.variables().forEach((key, v) -> {
+            if (key.contains(".") || key.startsWith("$")) {
+                errors.add("variable '" + key + "' must not contain '.' or start with '$'");
+            }
+            if (v == null || v.type() == null) {
+                errors.add("variable '" + key + "' must have a type");
+            } else if (v.maxSize() != null && v.maxSize() < 1) {
+                errors.add("variable '" + key + "' maxSize must be >= 1");
+            }
+        });
+
+        if (def.initial() != null && def.transitions().stream().noneMatch(t -> t.source() == def.initial())) {
+            errors.add("initial state " + def.initial() + " has no outgoing transition");
+        }
+        return errors;
+    }
+}
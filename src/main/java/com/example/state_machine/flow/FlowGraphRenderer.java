@@ -0,0 +1,51 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+
+/**
+ * Renders a compiled flow as a PlantUML state diagram (same toolchain as {@code attach/*.puml})
+ * or as a Graphviz DOT digraph. Next steps are drawn bold, bound preconditions are listed on the
+ * edge and analyzer warnings are emitted as comments.
+ */
+public final class FlowGraphRenderer {
+
+    private FlowGraphRenderer() {
+    }
+
+    public static String plantUml(CompiledFlow flow) {
+        FlowDefinition def = flow.getDefinition();
+        StringBuilder sb = new StringBuilder("@startuml\n")
+                .append("title ").append(def.type()).append(" v").append(def.version()).append("\n\n");
+        flow.getWarnings().forEach(w -> sb.append("' warning: ").append(w).append('\n'));
+
+        sb.append("[*] --> ").append(def.initial()).append('\n');
+        for (TransitionDefinition t : def.transitions()) {
+            sb.append(t.source()).append(t.next() ? " -[bold]-> " : " --> ").append(t.target())
+                    .append(" : ").append(label(t)).append('\n');
+        }
+        def.terminal().stream().sorted().forEach(s -> sb.append(s).append(" --> [*]\n"));
+        return sb.append("@enduml\n").toString();
+    }
+
+    public static String dot(CompiledFlow flow) {
+        FlowDefinition def = flow.getDefinition();
+        StringBuilder sb = new StringBuilder("digraph \"")
+                .append(def.type()).append(" v").append(def.version()).append("\" {\n")
+                .append("  rankdir=LR;\n");
+        flow.getWarnings().forEach(w -> sb.append("  // warning: ").append(w).append('\n'));
+
+        sb.append("  \"").append(def.initial()).append("\" [shape=box, style=rounded];\n");
+        def.terminal().stream().sorted()
+                .forEach(s -> sb.append("  \"").append(s).append("\" [shape=doublecircle];\n"));
+        for (TransitionDefinition t : def.transitions()) {
+            sb.append("  \"").append(t.source()).append("\" -> \"").append(t.target())
+                    .append("\" [label=\"").append(label(t)).append('"')
+                    .append(t.next() ? ", style=bold" : "").append("];\n");
+        }
+        return sb.append("}\n").toString();
+    }
+
+    private static String label(TransitionDefinition t) {
+        return t.preconditions().isEmpty() ? t.event().name() : t.event() + " " + t.preconditions();
+    }
+}
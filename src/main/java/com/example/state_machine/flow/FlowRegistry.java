@@ -0,0 +1,56 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.model.ProcessType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link FlowCatalog}. Definitions are compiled once at startup (failing
+ * fast on invalid ones); {@link #reload()} compiles a new catalog and swaps it in atomically,
+ * so readers never lock and never see a half-built catalog. Old versions stay resident as long
+ * as their definition files are kept, so in-flight processes keep running on them.
+ */
+@Component
+@Slf4j
+public class FlowRegistry {
+
+    private final FlowDefinitionLoader loader;
+    private final FlowCompiler compiler;
+    private final AtomicReference<FlowCatalog> catalog = new AtomicReference<>();
+
+    public FlowRegistry(FlowDefinitionLoader loader, FlowCompiler compiler) {
+        this.loader = loader;
+        this.compiler = compiler;
+        this.catalog.set(compiler.compile(loader.loadAll()));
+    }
+
+    public FlowCatalog current() {
+        return catalog.get();
+    }
+
+    /**
+     * @return the newest flow of the type, used for new processes.
+     */
+    public CompiledFlow flow(ProcessType type) {
+        return catalog.get().flow(type);
+    }
+
+    /**
+     * @return the flow version an existing process was started on.
+     */
+    public CompiledFlow flow(ProcessType type, Integer version) {
+        return catalog.get().flow(type, version);
+    }
+
+    /**
+     * Re-reads and recompiles all definitions. On any error the current catalog stays active.
+     */
+    public synchronized FlowCatalog reload() {
+        FlowCatalog next = compiler.compile(loader.loadAll());
+        catalog.set(next);
+        log.info("Flow definitions reloaded");
+        return next;
+    }
+}
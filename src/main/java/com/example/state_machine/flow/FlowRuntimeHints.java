@@ -0,0 +1,25 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+import com.example.state_machine.flow.FlowDefinition.VariableDefinition;
+import com.example.state_machine.service.BulkStartService;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Native-image hints for what AOT processing cannot infer: the bundled {@code flows/*.yml} files and
+ * the records Jackson binds outside of controller signatures (YAML flow definitions, NDJSON bulk lines).
+ */
+class FlowRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources().registerPattern("flows/*.yml");
+        for (Class<?> type : new Class<?>[]{FlowDefinition.class, TransitionDefinition.class, VariableDefinition.class,
+                BulkStartService.Item.class, BulkStartService.Result.class}) {
+            hints.reflection().registerType(type, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.DECLARED_FIELDS);
+        }
+    }
+}
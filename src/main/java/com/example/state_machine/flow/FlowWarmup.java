@@ -0,0 +1,77 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.statemachine.StateMachine;
+import org.springframework.statemachine.support.DefaultStateMachineContext;
+
+import java.util.Map;
+
+/**
+ * Builds and exercises every compiled machine once before the instance takes traffic: every transition of
+ * every loaded flow version is fired on a throw-away machine, the way {@code FlowService} fires events,
+ * so the first requests do not pay for class loading and lazy initialisation. This is far too few events
+ * to get the code JIT-compiled; {@code flows.warmup.iterations} repeats the round. Spring Boot reports
+ * readiness ({@code /actuator/health/readiness}) only after application runners have completed, so the
+ * probe turns green once warm-up is done.
+ */
+@Component
+@Slf4j
+public class FlowWarmup implements ApplicationRunner {
+
+    /** Id of warm-up machines; the transition listener does not log them. */
+    public static final String MACHINE_ID = "flow-warmup";
+
+    private final FlowRegistry registry;
+    private final int iterations;
+
+    public FlowWarmup(FlowRegistry registry, @Value("${flows.warmup.iterations:1}") int iterations) {
+        this.registry = registry;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (iterations <= 0) {
+            return;
+        }
+        long started = System.nanoTime();
+        FlowCatalog catalog = registry.current();
+        int fired = 0;
+        int accepted = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (ProcessType type : ProcessType.values()) {
+                for (CompiledFlow flow : catalog.versions(type)) {
+                    for (TransitionDefinition t : flow.getDefinition().transitions()) {
+                        fired++;
+                        if (fire(flow, t)) {
+                            accepted++;
+                        }
+                    }
+                }
+            }
+        }
+        log.info("Flow warm-up done in {} ms: {} events fired, {} accepted",
+                (System.nanoTime() - started) / 1_000_000, fired, accepted);
+    }
+
+    private static boolean fire(CompiledFlow flow, TransitionDefinition t) {
+        StateMachine<ProcessState, ProcessEvent> sm = flow.getStateMachine(MACHINE_ID);
+        sm.stop();
+        sm.getStateMachineAccessor().doWithAllRegions(access ->
+                // the context id becomes the machine id after the reset, which keeps warm-up out of the transition log
+                access.resetStateMachine(new DefaultStateMachineContext<>(t.source(), null, null, null, null, MACHINE_ID)));
+        flow.hydrate(sm.getExtendedState(), Map.of(), Map.of());
+        sm.start();
+        boolean accepted = sm.sendEvent(t.event());
+        sm.stop();
+        return accepted;
+    }
+}
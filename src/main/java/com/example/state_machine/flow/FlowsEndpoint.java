@@ -0,0 +1,64 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.service.FlowMigrationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code /actuator/flows}: lists the loaded flow versions, renders flow graphs, hot-reloads
+ * definitions and starts background migrations ({@code POST /actuator/flows/{type}} with {@code {"from":1,"to":2}}).
+ */
+@Component
+@Endpoint(id = "flows")
+@RequiredArgsConstructor
+public class FlowsEndpoint {
+
+    private final FlowRegistry registry;
+    private final FlowMigrationService migrations;
+
+    @ReadOperation
+    public Map<String, List<Integer>> versions() {
+        return describe(registry.current());
+    }
+
+    /**
+     * {@code GET /actuator/flows/{type}?format=dot|plantuml&version=N}: the flow's transition graph.
+     */
+    @ReadOperation(produces = "text/plain")
+    public String graph(@Selector ProcessType type, @Nullable String format, @Nullable Integer version) {
+        CompiledFlow flow = version != null ? registry.flow(type, version) : registry.flow(type);
+        return "dot".equalsIgnoreCase(format) ? FlowGraphRenderer.dot(flow) : FlowGraphRenderer.plantUml(flow);
+    }
+
+    @WriteOperation
+    public Map<String, List<Integer>> reload() {
+        return describe(registry.reload());
+    }
+
+    @WriteOperation
+    public Map<String, Object> migrate(@Selector ProcessType type, int from, int to) {
+        // fail fast on unknown versions before handing off to the background job
+        registry.flow(type, from);
+        registry.flow(type, to);
+        migrations.migrateAsync(type, from, to);
+        return Map.of("type", type, "from", from, "to", to, "status", "STARTED");
+    }
+
+    private static Map<String, List<Integer>> describe(FlowCatalog catalog) {
+        Map<String, List<Integer>> versions = new TreeMap<>();
+        for (ProcessType type : ProcessType.values()) {
+            versions.put(type.name(), catalog.versions(type).stream().map(CompiledFlow::getVersion).toList());
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.flow.FlowDefinition.VariableDefinition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled {@code variables:} section of a flow. Incoming variables are validated and converted
+ * to their canonical types once, when they are written, so preconditions and guards can read
+ * typed values straight from the process.
+ * <p>
+ * Keys the schema does not declare are kept as sent, within {@link #DEFAULT_MAX_SIZE}.
+ */
+public final class VariableSchema {
+
+    /** Size limit (string characters, object/list entries) for undeclared keys and declarations without one. */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    public static final VariableSchema EMPTY = new VariableSchema(Map.of());
+
+    private final Map<String, VariableDefinition> definitions;
+
+    public VariableSchema(Map<String, VariableDefinition> definitions) {
+        this.definitions = Map.copyOf(definitions);
+    }
+
+    public Map<String, VariableDefinition> getDefinitions() {
+        return definitions;
+    }
+
+    public boolean isObject(String key) {
+        VariableDefinition def = definitions.get(key);
+        return def != null && def.type() == VariableType.OBJECT;
+    }
+
+    public boolean isBlob(String key) {
+        VariableDefinition def = definitions.get(key);
+        return def != null && def.type() == VariableType.BLOB;
+    }
+
+    /**
+     * @return a stored value the way it was canonicalised. MongoDB reads a {@code DATE} variable back as a
+     * {@link java.util.Date}; only keys declared {@code DATE} turn it into a {@link java.time.LocalDate} again,
+     * other values are returned as stored.
+     */
+    public Object restore(String key, Object stored) {
+        VariableDefinition def = definitions.get(key);
+        if (stored == null || def == null || def.type() != VariableType.DATE) {
+            return stored;
+        }
+        Object converted = def.type().convert(stored);
+        return converted != null ? converted : stored;
+    }
+
+    /**
+     * @return a new mutable map holding the canonical form of {@code variables}.
+     * @throws IllegalArgumentException listing every key that does not match its declaration.
+     */
+    public Map<String, Object> canonicalize(Map<String, Object> variables) {
+        Map<String, Object> canonical = new HashMap<>();
+        if (variables == null || variables.isEmpty()) {
+            return canonical;
+        }
+        List<String> errors = new ArrayList<>();
+        variables.forEach((key, value) -> {
+            VariableDefinition def = definitions.get(key);
+            Object converted = value;
+            if (value != null && def != null) {
+                converted = def.type().convert(value);
+                if (converted == null) {
+                    errors.add(key + ": expected " + def.type() + " but was '" + value + "'");
+                    return;
+                }
+            }
+            int maxSize = def == null ? DEFAULT_MAX_SIZE
+                    : def.maxSize() != null ? def.maxSize() : def.type().defaultMaxSize();
+            if (VariableType.sizeOf(converted) > maxSize) {
+                errors.add(key + ": size exceeds " + maxSize);
+                return;
+            }
+            canonical.put(key, converted);
+        });
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Invalid variables: " + String.join("; ", errors));
+        }
+        return canonical;
+    }
+}
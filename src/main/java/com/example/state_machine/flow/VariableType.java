@@ -0,0 +1,165 @@
+package com.example.state_machine.flow;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Types a process variable can be declared with. Each type converts the loosely typed JSON value
+ * once, at write time, into one canonical Java type that maps onto a native BSON type
+ * (int32, int64, double, boolean, date, string, document, array).
+ */
+public enum VariableType {
+
+    STRING {
+        @Override
+        Object convert(Object value) {
+            return value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                    ? value.toString() : null;
+        }
+    },
+    INT {
+        @Override
+        Object convert(Object value) {
+            Long l = toLong(value);
+            return l != null && l == l.intValue() ? Integer.valueOf(l.intValue()) : null;
+        }
+    },
+    LONG {
+        @Override
+        Object convert(Object value) {
+            return toLong(value);
+        }
+    },
+    DOUBLE {
+        @Override
+        Object convert(Object value) {
+            if (value instanceof Number n) {
+                return n.doubleValue();
+            }
+            if (value instanceof String s) {
+                try {
+                    return Double.valueOf(s.trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    },
+    BOOLEAN {
+        @Override
+        Object convert(Object value) {
+            if (value instanceof Boolean) {
+                return value;
+            }
+            if (value instanceof String s) {
+                if ("true".equalsIgnoreCase(s.trim())) return Boolean.TRUE;
+                if ("false".equalsIgnoreCase(s.trim())) return Boolean.FALSE;
+            }
+            return null;
+        }
+    },
+    /** ISO-8601 calendar date ({@code 1990-01-01}); Mongo hands it back as {@link Date}. */
+    DATE {
+        @Override
+        Object convert(Object value) {
+            if (value instanceof LocalDate) {
+                return value;
+            }
+            if (value instanceof Date d) {
+                return d.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+            }
+            if (value instanceof String s) {
+                try {
+                    return LocalDate.parse(s.trim());
+                } catch (DateTimeParseException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    },
+    /**
+     * Large text content (documents, scans as base64, raw vendor responses). Values above
+     * {@code variables.blob.threshold} are moved out of the process document into GridFS.
+     */
+    BLOB {
+        @Override
+        Object convert(Object value) {
+            return value instanceof CharSequence ? value.toString() : null;
+        }
+
+        @Override
+        int defaultMaxSize() {
+            return 16 * 1024 * 1024;
+        }
+    },
+    OBJECT {
+        @Override
+        Object convert(Object value) {
+            return value instanceof Map ? value : null;
+        }
+    },
+    LIST {
+        @Override
+        Object convert(Object value) {
+            if (value instanceof List) {
+                return value;
+            }
+            return value instanceof Collection<?> c ? List.copyOf(c) : null;
+        }
+    };
+
+    /**
+     * @return the canonical representation of {@code value}, or {@code null} if it cannot be converted.
+     */
+    abstract Object convert(Object value);
+
+    /**
+     * Limit applied when a declaration has no {@code maxSize}.
+     */
+    int defaultMaxSize() {
+        return VariableSchema.DEFAULT_MAX_SIZE;
+    }
+
+    /**
+     * Size used for limits: characters of a string, entries of an object or list, 0 otherwise.
+     */
+    static int sizeOf(Object value) {
+        if (value instanceof CharSequence s) return s.length();
+        if (value instanceof Map<?, ?> m) return m.size();
+        if (value instanceof Collection<?> c) return c.size();
+        return 0;
+    }
+
+    private static Long toLong(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigInteger b) {
+            return b.bitLength() < 64 ? b.longValue() : null;
+        }
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            try {
+                return new BigDecimal(value.toString()).longValueExact();
+            } catch (ArithmeticException | NumberFormatException e) {
+                return null;
+            }
+        }
+        if (value instanceof String s) {
+            try {
+                return Long.valueOf(s.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.state_machine.logging;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Caps one high-frequency log message at {@code permitsPerSecond}. Callers ask before logging;
+ * the first message let through after a suppressed stretch gets the number of messages dropped,
+ * so nothing disappears silently:
+ * <pre>{@code
+ * long dropped = limiter.tryAcquire();
+ * if (dropped >= 0 && log.isWarnEnabled()) {
+ *     log.warn("... ({} similar suppressed)", ..., dropped);
+ * }
+ * }</pre>
+ * Acquiring allocates nothing.
+ */
+public final class LogRateLimiter {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final int permitsPerSecond;
+    private final LongSupplier nanoClock;
+    private long windowStart = Long.MIN_VALUE;
+    private int used;
+    private long suppressed;
+
+    public LogRateLimiter(int permitsPerSecond) {
+        this(permitsPerSecond, System::nanoTime);
+    }
+
+    LogRateLimiter(int permitsPerSecond, LongSupplier nanoClock) {
+        if (permitsPerSecond < 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be >= 0");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return {@code -1} if the message must be dropped, otherwise the number of messages dropped
+     *         since the last one let through
+     */
+    public synchronized long tryAcquire() {
+        long now = nanoClock.getAsLong();
+        if (windowStart == Long.MIN_VALUE || now - windowStart >= SECOND) {
+            windowStart = now;
+            used = 0;
+        }
+        if (used >= permitsPerSecond) {
+            suppressed++;
+            return -1;
+        }
+        used++;
+        long dropped = suppressed;
+        suppressed = 0;
+        return dropped;
+    }
+}
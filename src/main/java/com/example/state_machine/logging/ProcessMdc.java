@@ -0,0 +1,55 @@
+package com.example.state_machine.logging;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import org.slf4j.MDC;
+
+/**
+ * Puts the process a thread is working on into the MDC ({@code processId}, {@code processType},
+ * {@code state}), so every log line written meanwhile — including the state machine's — carries it as a
+ * structured field. Use with try-with-resources; closing restores the keys as they were before, so work
+ * on another process nested in it (a parent joined from its child's event) logs as that process.
+ */
+public final class ProcessMdc implements AutoCloseable {
+
+    public static final String PROCESS_ID = "processId";
+    public static final String PROCESS_TYPE = "processType";
+    public static final String STATE = "state";
+
+    private final String previousId;
+    private final String previousType;
+    private final String previousState;
+
+    private ProcessMdc() {
+        previousId = MDC.get(PROCESS_ID);
+        previousType = MDC.get(PROCESS_TYPE);
+        previousState = MDC.get(STATE);
+    }
+
+    public static ProcessMdc open(ProcessInstance instance) {
+        ProcessMdc mdc = new ProcessMdc();
+        MDC.put(PROCESS_ID, instance.getId());
+        MDC.put(PROCESS_TYPE, instance.getType() != null ? instance.getType().name() : null);
+        state(instance.getState());
+        return mdc;
+    }
+
+    public static void state(ProcessState state) {
+        MDC.put(STATE, state != null ? state.name() : null);
+    }
+
+    @Override
+    public void close() {
+        restore(PROCESS_ID, previousId);
+        restore(PROCESS_TYPE, previousType);
+        restore(STATE, previousState);
+    }
+
+    private static void restore(String key, String value) {
+        if (value != null) {
+            MDC.put(key, value);
+        } else {
+            MDC.remove(key);
+        }
+    }
+}
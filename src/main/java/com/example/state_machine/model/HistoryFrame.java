@@ -0,0 +1,16 @@
+package com.example.state_machine.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entry of a process' BACK history: the state a step left and how to undo the variable changes the
+ * step made. Only the keys the step touched are kept, so every snapshot shares all other variables with
+ * the current ones and going back costs as much as the step changed.
+ *
+ * @param state    state the step left, restored by {@code BACK}
+ * @param previous values the step overwrote
+ * @param added    keys the step introduced, removed again by {@code BACK}
+ */
+public record HistoryFrame(ProcessState state, Map<String, Object> previous, List<String> added) {
+}
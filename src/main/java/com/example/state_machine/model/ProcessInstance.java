@@ -10,14 +10,19 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 @Document(collection = "process_instances")
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProcessInstance {
+
+    /** Child ids are the parent's id, this separator and a suffix; partitioning hashes only the parent's part. */
+    public static final char CHILD_ID_SEPARATOR = '-';
+
     @Id
     private String id;
 
@@ -30,11 +35,60 @@ public class ProcessInstance {
     @NotNull
     private ProcessState state;
 
+    /**
+     * Version of the flow definition this process runs on, stamped at start.
+     * {@code null} for processes created before flows were versioned (treated as version 1).
+     */
+    private Integer flowVersion;
+
     @Builder.Default
     private Map<String, Object> variables = Map.of();
 
+    /**
+     * Steps {@code BACK} can undo, most recent last, at most {@code process.history.depth} of them.
+     * Replaced rather than modified on every step, so copies of a process may share it.
+     */
+    private List<HistoryFrame> history;
+
+    /**
+     * The process this one was started for as a child ({@code CO_OWNER} processes of a MULTI_OWNER one).
+     */
+    private String parentId;
+
+    /**
+     * Children started and not finished yet. Only ever changed by atomic increments
+     * ({@code ProcessStore.addPendingChildren}); the process joins its children when it drops to 0.
+     */
+    private Integer pendingChildren;
+
+    /**
+     * {@code true} while a process started by its client is not finished, {@code null} otherwise. A partial
+     * unique index on (clientId, type, activeScope) covers only these, so a client has at most one active
+     * process per type and scope. Processes started before the flag existed, and children, are never active.
+     */
+    private Boolean active;
+
+    /**
+     * What the process is about when a client may run several of its type at a time: the minor account of a
+     * conversion. {@code null} otherwise.
+     */
+    private String activeScope;
+
+    /**
+     * Counts the changes of the stored process: every write bumps it, so it names one revision of the process
+     * (the ETag of {@code GET /process/{id}} is built from it). {@code null} until the first change.
+     */
+    private Long revision;
+
     @Builder.Default
     private Instant createdAt = Instant.now();
 
     private Instant updatedAt;
+
+    /**
+     * @return the revision after one more change of a process on {@code revision}
+     */
+    public static long nextRevision(Long revision) {
+        return revision != null ? revision + 1 : 1;
+    }
 }
@@ -4,5 +4,7 @@ public enum ProcessType {
     SINGLE_OWNER,
     MULTI_OWNER,
     MINOR,
-    MINOR_TO_REGULAR
+    MINOR_TO_REGULAR,
+    /** One further owner of a MULTI_OWNER process, run as its child. */
+    CO_OWNER
 }
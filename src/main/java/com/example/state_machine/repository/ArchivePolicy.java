@@ -0,0 +1,37 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which processes {@link ProcessStore#archive} moves out of the hot store.
+ *
+ * @param terminal        terminal states by process type
+ * @param terminalBefore  terminal processes last updated before this are archived
+ * @param abandonedBefore unfinished processes last updated before this are archived; {@code null} keeps them
+ */
+public record ArchivePolicy(Map<ProcessType, Set<ProcessState>> terminal,
+                            Instant terminalBefore,
+                            @Nullable Instant abandonedBefore) {
+
+    public ArchivePolicy {
+        terminal = Map.copyOf(terminal);
+    }
+
+    public boolean matches(ProcessInstance instance) {
+        Instant updatedAt = instance.getUpdatedAt();
+        if (updatedAt == null || instance.getType() == null) {
+            return false;
+        }
+        if (terminal.getOrDefault(instance.getType(), Set.of()).contains(instance.getState())) {
+            return updatedAt.isBefore(terminalBefore);
+        }
+        return abandonedBefore != null && updatedAt.isBefore(abandonedBefore);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.state_machine.repository;
+
+import java.util.Optional;
+
+/**
+ * Storage SPI for the progress of background jobs: one opaque value per job, so a job interrupted by a
+ * crash or redeploy resumes where it got to instead of starting over.
+ */
+public interface CheckpointStore {
+
+    Optional<String> get(String job);
+
+    void put(String job, String value);
+}
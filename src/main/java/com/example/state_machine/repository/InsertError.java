@@ -0,0 +1,16 @@
+package com.example.state_machine.repository;
+
+/**
+ * Why {@link ProcessStore#insertAll} did not insert a process.
+ */
+public record InsertError(Reason reason, String message) {
+
+    public enum Reason {
+        /** A process with the same id exists. */
+        DUPLICATE_ID,
+        /** The client already has an active process of the type. */
+        ACTIVE_EXISTS,
+        /** Anything else, including other unique keys. */
+        OTHER
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.state_machine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Default {@link CheckpointStore}: the {@code job_checkpoints} collection, {@code _id} = job name.
+ */
+@Repository
+@Profile("!memory")
+@RequiredArgsConstructor
+class MongoCheckpointStore implements CheckpointStore {
+
+    static final String COLLECTION = "job_checkpoints";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<String> get(String job) {
+        return Optional.ofNullable(mongoTemplate.findById(job, Document.class, COLLECTION))
+                .map(d -> d.getString("value"));
+    }
+
+    @Override
+    public void put(String job, String value) {
+        mongoTemplate.upsert(Query.query(where("_id").is(job)),
+                new Update().set("value", value).set("updatedAt", new Date()), COLLECTION);
+    }
+}
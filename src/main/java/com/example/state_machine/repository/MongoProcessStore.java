@@ -0,0 +1,376 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.flow.FlowCatalog;
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Default {@link ProcessStore}: the {@code process_instances} collection, archived processes in
+ * {@code process_archive}.
+ */
+@Repository
+@Profile("!memory")
+@Qualifier(ProcessStore.BACKEND)
+@RequiredArgsConstructor
+@Slf4j
+class MongoProcessStore implements ProcessStore {
+
+    static final String ARCHIVE_COLLECTION = "process_archive";
+    static final String ACTIVE_INDEX = "active_client_type_scope";
+    private static final String LEGACY_ACTIVE_INDEX = "active_client_type";
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final ProcessInstanceRepository repository;
+    private final MongoTemplate mongoTemplate;
+    private final Set<String> indexes = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public ProcessInstance save(ProcessInstance instance) {
+        return repository.save(instance);
+    }
+
+    @Override
+    public boolean replace(ProcessInstance instance, @Nullable Integer flowVersion, @Nullable Instant updatedAt) {
+        Long loaded = instance.getRevision();
+        Query query = new Query(where("_id").is(instance.getId()).and("flowVersion").is(flowVersion)
+                .and("updatedAt").is(updatedAt).and("revision").is(loaded));
+        instance.setRevision(ProcessInstance.nextRevision(loaded));
+        boolean replaced = mongoTemplate.replace(query, instance).getMatchedCount() > 0;
+        if (!replaced) {
+            instance.setRevision(loaded);
+        }
+        return replaced;
+    }
+
+    @Override
+    public Optional<ProcessInstance> findById(String id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Optional<ProcessInstance> findProjectedById(String id, Collection<String> fields) {
+        return repository.findProjectedById(id, fields);
+    }
+
+    @Override
+    public Map<Integer, InsertError> insertAll(List<ProcessInstance> instances) {
+        Map<Integer, InsertError> errors = new HashMap<>();
+        if (instances.isEmpty()) {
+            return errors;
+        }
+        ensureActiveIndex(); // also holds bulk inserts to one active process per client, type and scope
+        try {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, ProcessInstance.class)
+                    .insert(instances)
+                    .execute();
+        } catch (BulkOperationException e) {
+            // unordered: everything but the reported indexes was written
+            for (BulkWriteError error : e.getErrors()) {
+                errors.put(error.getIndex(), new InsertError(reason(error), error.getMessage()));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Tells the violated unique index by the name the server reports ({@code ... index: <name> dup key: ...}).
+     */
+    private static InsertError.Reason reason(BulkWriteError error) {
+        if (error.getCode() != DUPLICATE_KEY) {
+            return InsertError.Reason.OTHER;
+        }
+        if (error.getMessage().contains("index: _id_ ")) {
+            return InsertError.Reason.DUPLICATE_ID;
+        }
+        return error.getMessage().contains("index: " + ACTIVE_INDEX + " ") ? InsertError.Reason.ACTIVE_EXISTS : InsertError.Reason.OTHER;
+    }
+
+    @Override
+    public ProcessInstance insertOrGetActive(ProcessInstance instance) {
+        Assert.isTrue(Boolean.TRUE.equals(instance.getActive()) && instance.getId() != null, "an active process with an id is required");
+        ensureActiveIndex();
+
+        // upsert on the active process: the query fields are copied into the new document, the rest is set on insert
+        Query query = new Query(where("clientId").is(instance.getClientId()).and("type").is(instance.getType())
+                .and("activeScope").is(instance.getActiveScope()).and("active").is(true));
+        Document document = new Document();
+        mongoTemplate.getConverter().write(instance, document);
+        Update update = new Update();
+        document.forEach((field, value) -> {
+            if (!query.getQueryObject().containsKey(field)) {
+                update.setOnInsert(field, value);
+            }
+        });
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        try {
+            return mongoTemplate.findAndModify(query, update, options, ProcessInstance.class);
+        } catch (DuplicateKeyException e) {
+            // a concurrent start inserted first: the upsert now finds its process
+            return mongoTemplate.findAndModify(query, update, options, ProcessInstance.class);
+        }
+    }
+
+    @Override
+    public Optional<ProcessInstance> patchVariables(String id, VariablesPatch patch) {
+        List<Criteria> flows = new ArrayList<>();
+        patch.flows().forEach((type, versions) -> versions.forEach(version -> flows.add(onVersion(type, version))));
+        if (flows.isEmpty()) {
+            return Optional.empty();
+        }
+        Criteria criteria = where("_id").is(id);
+        if (patch.expectedState() != null) {
+            criteria = criteria.and("state").is(patch.expectedState());
+        }
+        Query query = new Query(criteria.andOperator(new Criteria().orOperator(flows)));
+        query.fields().include("type", "flowVersion", "state", "revision");
+        patch.keys().forEach(key -> query.fields().include("variables." + key));
+
+        Update update = new Update().set("updatedAt", patch.updatedAt()).inc("revision", 1);
+        patch.set().forEach((path, value) -> update.set("variables." + path, value));
+        patch.unset().forEach(path -> update.unset("variables." + path));
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(false), ProcessInstance.class));
+    }
+
+    @Override
+    public Optional<ProcessInstance> addPendingChildren(String id, @Nullable ProcessState requiredState, int delta) {
+        Criteria criteria = where("_id").is(id);
+        if (requiredState != null) {
+            criteria = criteria.and("state").is(requiredState);
+        }
+        Query query = new Query(criteria);
+        query.fields().include("type", "state", "pendingChildren");
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, new Update().inc("pendingChildren", delta).set("updatedAt", Instant.now()).inc("revision", 1),
+                FindAndModifyOptions.options().returnNew(true), ProcessInstance.class));
+    }
+
+    @Override
+    public long migrateFlowVersion(ProcessType type, int from, int to, Set<ProcessState> states, int batchSize) {
+        ensureFlowVersionIndex();
+        Criteria compatible = onVersion(type, from).and("state").in(states);
+        long migrated = 0;
+        while (true) {
+            Query batch = new Query(compatible).limit(batchSize);
+            batch.fields().include("_id");
+            List<String> ids = mongoTemplate.find(batch, ProcessInstance.class).stream()
+                    .map(ProcessInstance::getId)
+                    .toList();
+            if (ids.isEmpty()) {
+                return migrated;
+            }
+            // re-check version and state so a process that moved on meanwhile is left alone
+            Query update = new Query(onVersion(type, from).and("_id").in(ids).and("state").in(states));
+            // a new updatedAt and revision, so conditional reads and the archiver's delete fence see the change
+            migrated += mongoTemplate.updateMulti(update, Update.update("flowVersion", to).set("updatedAt", Instant.now())
+                            .inc("revision", 1),
+                            ProcessInstance.class)
+                    .getModifiedCount();
+            log.debug("Migrated batch of {} {} processes v{} -> v{}", ids.size(), type, from, to);
+        }
+    }
+
+    @Override
+    public long countOnFlowVersion(ProcessType type, int version) {
+        ensureFlowVersionIndex();
+        return mongoTemplate.count(new Query(onVersion(type, version)), ProcessInstance.class);
+    }
+
+    @Override
+    public List<String> archive(ArchivePolicy policy, int batchSize) {
+        if (policy.terminal().isEmpty()) {
+            return List.of();
+        }
+        ensureIndex(mongoTemplate.getCollectionName(ProcessInstance.class), new Index()
+                .on("type", Sort.Direction.ASC)
+                .on("state", Sort.Direction.ASC)
+                .on("updatedAt", Sort.Direction.ASC)
+                .named("type_state_updatedAt"));
+        List<ProcessInstance> batch = mongoTemplate.find(new Query(archivable(policy)).limit(batchSize), ProcessInstance.class);
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+        // copy first (upserts, so a rerun after a crash is harmless), then delete what did not change meanwhile
+        BulkOperations copy = mongoTemplate.bulkOps(BulkMode.UNORDERED, ProcessInstance.class, ARCHIVE_COLLECTION);
+        batch.forEach(p -> copy.replaceOne(new Query(where("_id").is(p.getId())), p, FindAndReplaceOptions.options().upsert()));
+        copy.execute();
+        BulkOperations delete = mongoTemplate.bulkOps(BulkMode.UNORDERED, ProcessInstance.class);
+        batch.forEach(p -> delete.remove(new Query(where("_id").is(p.getId()).and("updatedAt").is(p.getUpdatedAt()))));
+        int deleted = delete.execute().getDeletedCount();
+
+        List<String> ids = batch.stream().map(ProcessInstance::getId).toList();
+        if (deleted == batch.size()) {
+            return ids;
+        }
+        Query stillHot = new Query(where("_id").in(ids));
+        stillHot.fields().include("_id");
+        Set<String> changed = mongoTemplate.find(stillHot, ProcessInstance.class).stream()
+                .map(ProcessInstance::getId)
+                .collect(Collectors.toSet());
+        mongoTemplate.remove(new Query(where("_id").in(changed)), ARCHIVE_COLLECTION);
+        return ids.stream().filter(id -> !changed.contains(id)).toList();
+    }
+
+    @Override
+    public Optional<ProcessInstance> findArchivedById(String id, @Nullable Collection<String> fields) {
+        Query query = new Query(where("_id").is(id));
+        if (fields != null) {
+            fields.forEach(query.fields()::include);
+        }
+        return Optional.ofNullable(mongoTemplate.findOne(query, ProcessInstance.class, ARCHIVE_COLLECTION));
+    }
+
+    @Override
+    public Set<String> findArchivedIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        Query query = new Query(where("_id").in(ids));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, ProcessInstance.class, ARCHIVE_COLLECTION).stream()
+                .map(ProcessInstance::getId)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<ProcessInstance> findByDateVariable(ProcessType type, ProcessState state, String variable, LocalDate date,
+                                                    boolean archived, @Nullable String afterId, int limit) {
+        String collection = archived ? ARCHIVE_COLLECTION : mongoTemplate.getCollectionName(ProcessInstance.class);
+        String path = "variables." + variable;
+        ensureIndex(collection, new Index()
+                .on("type", Sort.Direction.ASC)
+                .on("state", Sort.Direction.ASC)
+                .on(path, Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .partial(PartialIndexFilter.of(where(path).exists(true)))
+                .named("type_state_" + variable + "_id"));
+
+        Criteria criteria = where("type").is(type).and("state").is(state).and(path).is(date);
+        if (afterId != null) {
+            criteria = criteria.and("_id").gt(afterId);
+        }
+        Query query = new Query(criteria).with(Sort.by("_id")).limit(limit);
+        query.fields().include("clientId", path);
+        return mongoTemplate.find(query, ProcessInstance.class, collection);
+    }
+
+    /**
+     * At most one active process per client, type and scope. Replaces the index without the scope, which
+     * allowed a guardian only one conversion at a time.
+     */
+    private void ensureActiveIndex() {
+        String collection = mongoTemplate.getCollectionName(ProcessInstance.class);
+        if (!indexes.contains(collection + '/' + ACTIVE_INDEX)) {
+            IndexOperations indexOps = mongoTemplate.indexOps(collection);
+            if (indexOps.getIndexInfo().stream().anyMatch(info -> LEGACY_ACTIVE_INDEX.equals(info.getName()))) {
+                indexOps.dropIndex(LEGACY_ACTIVE_INDEX);
+            }
+        }
+        ensureIndex(collection, new Index()
+                .on("clientId", Sort.Direction.ASC)
+                .on("type", Sort.Direction.ASC)
+                .on("activeScope", Sort.Direction.ASC)
+                .unique()
+                .partial(PartialIndexFilter.of(where("active").is(true)))
+                .named(ACTIVE_INDEX));
+    }
+
+    /**
+     * Serves the migration batches and counts: each batch is an index range, not a collection scan.
+     */
+    private void ensureFlowVersionIndex() {
+        ensureIndex(mongoTemplate.getCollectionName(ProcessInstance.class), new Index()
+                .on("type", Sort.Direction.ASC)
+                .on("flowVersion", Sort.Direction.ASC)
+                .on("state", Sort.Direction.ASC)
+                .named("type_flowVersion_state"));
+    }
+
+    /**
+     * Creates an index on first use rather than at startup, so the application starts without Mongo reachable.
+     */
+    private void ensureIndex(String collection, Index index) {
+        String key = collection + '/' + index.getIndexOptions().getString("name");
+        if (indexes.add(key)) {
+            try {
+                mongoTemplate.indexOps(collection).createIndex(index);
+            } catch (RuntimeException e) {
+                indexes.remove(key);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public Map<ProcessType, Map<ProcessState, Long>> countByState() {
+        Aggregation byState = Aggregation.newAggregation(Aggregation.group("type", "state").count().as("count"));
+        Map<ProcessType, Map<ProcessState, Long>> counts = new EnumMap<>(ProcessType.class);
+        for (String collection : List.of(mongoTemplate.getCollectionName(ProcessInstance.class), ARCHIVE_COLLECTION)) {
+            for (Document group : mongoTemplate.aggregate(byState, collection, Document.class)) {
+                Document key = group.get("_id", Document.class);
+                counts.computeIfAbsent(ProcessType.valueOf(key.getString("type")), t -> new EnumMap<>(ProcessState.class))
+                        .merge(ProcessState.valueOf(key.getString("state")), ((Number) group.get("count")).longValue(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static Criteria archivable(ArchivePolicy policy) {
+        List<Criteria> rules = new ArrayList<>();
+        policy.terminal().forEach((type, states) -> {
+            rules.add(where("type").is(type).and("state").in(states).and("updatedAt").lt(policy.terminalBefore()));
+            if (policy.abandonedBefore() != null) {
+                rules.add(where("type").is(type).and("state").nin(states).and("updatedAt").lt(policy.abandonedBefore()));
+            }
+        });
+        return new Criteria().orOperator(rules);
+    }
+
+    private static Criteria onVersion(ProcessType type, int version) {
+        Criteria c = where("type").is(type);
+        if (version == FlowCatalog.LEGACY_VERSION) {
+            // processes created before versioning carry no flowVersion
+            return c.orOperator(where("flowVersion").is(version), where("flowVersion").is(null));
+        }
+        return c.and("flowVersion").is(version);
+    }
+}
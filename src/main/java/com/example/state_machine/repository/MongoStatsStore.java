@@ -0,0 +1,121 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Default {@link StatsStore}: {@code process_state_counts} ({@code _id} = {@code TYPE:STATE}) and
+ * {@code process_transition_counts} ({@code _id} = {@code TYPE:hour:FROM:TO}, the hour zero-padded so a
+ * type's buckets are an {@code _id} range). Counters change through {@code $inc} upserts, and a recount
+ * through one replace per counter.
+ */
+@Repository
+@Profile("!memory")
+@RequiredArgsConstructor
+class MongoStatsStore implements StatsStore {
+
+    static final String STATE_COUNTS = "process_state_counts";
+    static final String TRANSITION_COUNTS = "process_transition_counts";
+    private static final String STARTED = "-";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void increment(Map<StateKey, Long> occupancy, Map<TransitionKey, Long> transitions) {
+        if (!occupancy.isEmpty()) {
+            BulkOperations states = mongoTemplate.bulkOps(BulkMode.UNORDERED, STATE_COUNTS);
+            occupancy.forEach((key, delta) -> states.upsert(byId(stateId(key)), new Update()
+                    .inc("count", delta)
+                    .setOnInsert("type", key.type().name())
+                    .setOnInsert("state", key.state().name())));
+            states.execute();
+        }
+        if (!transitions.isEmpty()) {
+            BulkOperations counts = mongoTemplate.bulkOps(BulkMode.UNORDERED, TRANSITION_COUNTS);
+            transitions.forEach((key, delta) -> counts.upsert(byId(transitionId(key)), new Update()
+                    .inc("count", delta)
+                    .setOnInsert("type", key.type().name())
+                    .setOnInsert("from", key.from() != null ? key.from().name() : null)
+                    .setOnInsert("to", key.to().name())
+                    .setOnInsert("bucket", Date.from(key.bucket()))));
+            counts.execute();
+        }
+    }
+
+    @Override
+    public Map<ProcessState, Long> occupancy(ProcessType type) {
+        Map<ProcessState, Long> counts = new EnumMap<>(ProcessState.class);
+        for (Document d : mongoTemplate.find(Query.query(where("type").is(type.name())), Document.class, STATE_COUNTS)) {
+            counts.put(ProcessState.valueOf(d.getString("state")), number(d));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<TransitionKey, Long> transitions(ProcessType type, Instant since, Instant until) {
+        Query range = Query.query(where("_id").gte(type.name() + ":" + hour(since)).lt(type.name() + ":" + hour(until)));
+        Map<TransitionKey, Long> counts = new HashMap<>();
+        for (Document d : mongoTemplate.find(range, Document.class, TRANSITION_COUNTS)) {
+            String from = d.getString("from");
+            counts.put(new TransitionKey(type, from != null ? ProcessState.valueOf(from) : null,
+                    ProcessState.valueOf(d.getString("to")), d.getDate("bucket").toInstant()), number(d));
+        }
+        return counts;
+    }
+
+    @Override
+    public void replaceOccupancy(Map<StateKey, Long> counts) {
+        // one replace per counter, so no reader or concurrent flush sees the collection emptied
+        if (!counts.isEmpty()) {
+            BulkOperations states = mongoTemplate.bulkOps(BulkMode.UNORDERED, STATE_COUNTS);
+            counts.forEach((key, count) -> states.replaceOne(byId(stateId(key)), new Document("_id", stateId(key))
+                    .append("type", key.type().name())
+                    .append("state", key.state().name())
+                    .append("count", count), FindAndReplaceOptions.options().upsert()));
+            states.execute();
+        }
+        List<String> ids = counts.keySet().stream().map(MongoStatsStore::stateId).toList();
+        mongoTemplate.remove(Query.query(where("_id").nin(ids)), STATE_COUNTS);
+    }
+
+    private static Query byId(String id) {
+        return Query.query(where("_id").is(id));
+    }
+
+    static String stateId(StateKey key) {
+        return key.type() + ":" + key.state();
+    }
+
+    static String transitionId(TransitionKey key) {
+        return key.type() + ":" + hour(key.bucket()) + ":" + (key.from() != null ? key.from() : STARTED) + ":" + key.to();
+    }
+
+    /** Hours since the epoch, zero-padded so ids sort by time. */
+    private static String hour(Instant instant) {
+        return String.format("%010d", instant.truncatedTo(ChronoUnit.HOURS).getEpochSecond() / 3600);
+    }
+
+    private static long number(Document d) {
+        return ((Number) d.get("count")).longValue();
+    }
+}
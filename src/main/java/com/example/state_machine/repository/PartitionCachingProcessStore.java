@@ -0,0 +1,203 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.cluster.PartitionInvalidated;
+import com.example.state_machine.cluster.PartitionManager;
+import com.example.state_machine.cluster.PartitionReleased;
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * With partition ownership on, the owning node is the only one reading and writing a process, so its
+ * copy is authoritative: {@link #findById} is answered from memory for processes of owned partitions
+ * and only misses go to the backend. A partition's entries are dropped when its lease is lost
+ * ({@link PartitionReleased}) or when another node changed its processes ({@link PartitionInvalidated}:
+ * migrations and archiving here invalidate the partitions they touched); each partition keeps its most
+ * recently used {@code process.cluster.cache-size / process.cluster.partitions} processes. It decorates
+ * whichever {@link ProcessStore#BACKEND} the profile provides.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "process.cluster.enabled", havingValue = "true")
+class PartitionCachingProcessStore implements ProcessStore {
+
+    private final ProcessStore delegate;
+    private final PartitionManager partitions;
+    private final int perPartition;
+    private final Map<Integer, Map<String, ProcessInstance>> cache = new ConcurrentHashMap<>();
+
+    PartitionCachingProcessStore(@Qualifier(ProcessStore.BACKEND) ProcessStore delegate, PartitionManager partitions,
+                                 @Value("${process.cluster.cache-size:100000}") int cacheSize,
+                                 @Value("${process.cluster.partitions:64}") int partitionCount) {
+        this.delegate = delegate;
+        this.partitions = partitions;
+        this.perPartition = Math.max(1, cacheSize / partitionCount);
+    }
+
+    @Override
+    public ProcessInstance save(ProcessInstance instance) {
+        ProcessInstance saved = delegate.save(instance);
+        if (partitions.owns(saved.getId())) {
+            partition(saved.getId()).put(saved.getId(), copy(saved));
+        }
+        return saved;
+    }
+
+    /**
+     * The backend decides, whether or not the process is cached here: a patch, a migration or the archiver
+     * on another node may have changed it behind this node's back. A process it did not replace is
+     * evicted, so the next access reloads it.
+     */
+    @Override
+    public boolean replace(ProcessInstance instance, Integer flowVersion, Instant updatedAt) {
+        boolean replaced = delegate.replace(instance, flowVersion, updatedAt);
+        if (replaced && partitions.owns(instance.getId())) {
+            partition(instance.getId()).put(instance.getId(), copy(instance));
+        } else {
+            evict(instance.getId());
+        }
+        return replaced;
+    }
+
+    @Override
+    public Optional<ProcessInstance> findById(String id) {
+        if (!partitions.owns(id)) {
+            return delegate.findById(id);
+        }
+        Map<String, ProcessInstance> entries = partition(id);
+        ProcessInstance cached = entries.get(id);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        Optional<ProcessInstance> loaded = delegate.findById(id);
+        loaded.ifPresent(instance -> entries.put(id, copy(instance)));
+        return loaded;
+    }
+
+    @Override
+    public Optional<ProcessInstance> findProjectedById(String id, Collection<String> fields) {
+        return delegate.findProjectedById(id, fields);
+    }
+
+    @Override
+    public Optional<ProcessInstance> patchVariables(String id, VariablesPatch patch) {
+        Optional<ProcessInstance> before = delegate.patchVariables(id, patch);
+        if (before.isPresent()) {
+            evict(id); // the update was not read back, so reload on the next access
+        }
+        return before;
+    }
+
+    @Override
+    public Optional<ProcessInstance> addPendingChildren(String id, ProcessState requiredState, int delta) {
+        Optional<ProcessInstance> after = delegate.addPendingChildren(id, requiredState, delta);
+        if (after.isPresent()) {
+            evict(id);
+        }
+        return after;
+    }
+
+    @Override
+    public Map<Integer, InsertError> insertAll(List<ProcessInstance> instances) {
+        return delegate.insertAll(instances);
+    }
+
+    @Override
+    public ProcessInstance insertOrGetActive(ProcessInstance instance) {
+        return delegate.insertOrGetActive(instance);
+    }
+
+    @Override
+    public long migrateFlowVersion(ProcessType type, int from, int to, Set<ProcessState> states, int batchSize) {
+        long moved = delegate.migrateFlowVersion(type, from, to, states, batchSize);
+        if (moved > 0) {
+            partitions.invalidateAll(); // written behind the owners' backs
+        }
+        return moved;
+    }
+
+    @Override
+    public long countOnFlowVersion(ProcessType type, int version) {
+        return delegate.countOnFlowVersion(type, version);
+    }
+
+    @Override
+    public List<String> archive(ArchivePolicy policy, int batchSize) {
+        List<String> archived = delegate.archive(policy, batchSize);
+        partitions.invalidate(archived);
+        return archived;
+    }
+
+    @Override
+    public Optional<ProcessInstance> findArchivedById(String id, Collection<String> fields) {
+        return delegate.findArchivedById(id, fields);
+    }
+
+    @Override
+    public Set<String> findArchivedIds(Collection<String> ids) {
+        return delegate.findArchivedIds(ids);
+    }
+
+    @Override
+    public List<ProcessInstance> findByDateVariable(ProcessType type, ProcessState state, String variable, LocalDate date,
+                                                    boolean archived, String afterId, int limit) {
+        return delegate.findByDateVariable(type, state, variable, date, archived, afterId, limit);
+    }
+
+    @Override
+    public Map<ProcessType, Map<ProcessState, Long>> countByState() {
+        return delegate.countByState();
+    }
+
+    @EventListener
+    public void onPartitionReleased(PartitionReleased event) {
+        cache.remove(event.partition());
+    }
+
+    @EventListener
+    public void onPartitionInvalidated(PartitionInvalidated event) {
+        cache.remove(event.partition());
+    }
+
+    private void evict(String id) {
+        Map<String, ProcessInstance> entries = cache.get(partitions.partitionOf(id));
+        if (entries != null) {
+            entries.remove(id);
+        }
+    }
+
+    private Map<String, ProcessInstance> partition(String id) {
+        return cache.computeIfAbsent(partitions.partitionOf(id), p -> Collections.synchronizedMap(
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, ProcessInstance> eldest) {
+                        return size() > perPartition;
+                    }
+                }));
+    }
+
+    /** Callers mutate what they get, so neither side may share an instance with the cache. */
+    private static ProcessInstance copy(ProcessInstance instance) {
+        return instance.toBuilder()
+                .variables(instance.getVariables() != null ? new HashMap<>(instance.getVariables()) : null)
+                .build();
+    }
+}
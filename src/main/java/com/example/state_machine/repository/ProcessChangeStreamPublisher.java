@@ -0,0 +1,70 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.service.ProcessStateChanged;
+import com.mongodb.client.model.changestream.FullDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Tails the {@code process_instances} change stream and republishes every write as a
+ * {@link ProcessStateChanged} with {@code fromChangeStream = true}, so SSE subscribers on any node see
+ * transitions made on every node. Change streams need a replica set, hence opt-in via
+ * {@code process.stream.change-streams=true}.
+ */
+@Component
+@Profile("!memory")
+@ConditionalOnProperty(name = "process.stream.change-streams", havingValue = "true")
+@Slf4j
+class ProcessChangeStreamPublisher implements SmartLifecycle {
+
+    private final MessageListenerContainer container;
+    private final ApplicationEventPublisher events;
+
+    ProcessChangeStreamPublisher(MongoTemplate mongoTemplate, ApplicationEventPublisher events) {
+        this.container = new DefaultMessageListenerContainer(mongoTemplate);
+        this.events = events;
+    }
+
+    @Override
+    public void start() {
+        ChangeStreamRequest<ProcessInstance> request = ChangeStreamRequest.builder(this::onChange)
+                .collection("process_instances")
+                .filter(newAggregation(match(where("operationType").in("insert", "replace", "update"))))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .build();
+        container.register(request, ProcessInstance.class);
+        container.start();
+        log.info("Publishing process state changes from the change stream");
+    }
+
+    private void onChange(Message<?, ProcessInstance> message) {
+        ProcessInstance instance = message.getBody();
+        if (instance != null && instance.getState() != null) {
+            events.publishEvent(ProcessStateChanged.changeStream(instance));
+        }
+    }
+
+    @Override
+    public void stop() {
+        container.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return container.isRunning();
+    }
+}
@@ -5,5 +5,5 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface ProcessInstanceRepository extends MongoRepository<ProcessInstance, String> {
+public interface ProcessInstanceRepository extends MongoRepository<ProcessInstance, String>, ProcessInstanceRepositoryCustom {
 }
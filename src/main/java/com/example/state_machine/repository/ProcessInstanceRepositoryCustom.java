@@ -0,0 +1,18 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.model.ProcessInstance;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Mongo-specific queries that Spring Data cannot derive.
+ */
+public interface ProcessInstanceRepositoryCustom {
+
+    /**
+     * Loads only the given properties of a process (plus its id) via a Mongo projection.
+     * Nested variable paths such as {@code variables.status} are allowed.
+     */
+    Optional<ProcessInstance> findProjectedById(String id, Collection<String> fields);
+}
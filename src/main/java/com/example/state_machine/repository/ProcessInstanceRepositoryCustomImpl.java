@@ -0,0 +1,24 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.model.ProcessInstance;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<ProcessInstance> findProjectedById(String id, Collection<String> fields) {
+        Query query = new Query(where("_id").is(id));
+        fields.forEach(query.fields()::include);
+        return Optional.ofNullable(mongoTemplate.findOne(query, ProcessInstance.class));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Storage SPI for process instances. MongoDB ({@code MongoProcessStore}, backed by
+ * {@link ProcessInstanceRepository}) is the default; the {@code memory} profile swaps in
+ * {@link com.example.state_machine.repository.memory.InMemoryProcessStore} so the service runs without
+ * external dependencies.
+ */
+public interface ProcessStore {
+
+    /**
+     * Qualifies the store actually holding the processes, which a decorating store wraps.
+     */
+    String BACKEND = "processStoreBackend";
+
+    /**
+     * Inserts or replaces the process unconditionally; assigns an id when it has none. Changes to a stored
+     * process go through {@link #replace}.
+     */
+    ProcessInstance save(ProcessInstance instance);
+
+    /**
+     * Replaces a stored process, only while it is still in the hot store as the caller loaded it: on
+     * {@code flowVersion} ({@code null}: without a version), last changed at {@code updatedAt} to the
+     * millisecond and on the revision {@code instance} carries. Bumps that revision when it replaces the
+     * process; never inserts.
+     *
+     * @return whether it was replaced; {@code false} when it was patched, migrated or archived meanwhile
+     */
+    boolean replace(ProcessInstance instance, @Nullable Integer flowVersion, @Nullable Instant updatedAt);
+
+    Optional<ProcessInstance> findById(String id);
+
+    /**
+     * Loads only the given properties of a process (plus its id).
+     * Nested variable paths such as {@code variables.status} are allowed.
+     */
+    Optional<ProcessInstance> findProjectedById(String id, Collection<String> fields);
+
+    /**
+     * Inserts new processes (ids already assigned) independently of each other.
+     *
+     * @return the error by list index for every process that was not inserted
+     */
+    Map<Integer, InsertError> insertAll(List<ProcessInstance> instances);
+
+    /**
+     * Inserts an active process (id already assigned) unless its client already has an active process of
+     * its type, in one round trip.
+     *
+     * @return the process inserted, or the client's active process if there was one
+     */
+    ProcessInstance insertOrGetActive(ProcessInstance instance);
+
+    /**
+     * Applies {@code patch} to the variables in one conditional update, without reading the process first.
+     *
+     * @return the process as it was before the update, holding only type, flowVersion, state and the
+     * patched variables; empty when no process matched (unknown id, other state or other flow version)
+     */
+    Optional<ProcessInstance> patchVariables(String id, VariablesPatch patch);
+
+    /**
+     * Adds {@code delta} to the process' pending children (and bumps updatedAt) in one atomic update,
+     * without reading it first.
+     *
+     * @param requiredState when set, only while the process is in this state
+     * @return the process after the update, holding only type, state and pendingChildren; empty when no
+     * process matched
+     */
+    Optional<ProcessInstance> addPendingChildren(String id, @Nullable ProcessState requiredState, int delta);
+
+    /**
+     * Moves processes of {@code type} on flow version {@code from} whose state is one of {@code states}
+     * to version {@code to}. Processes without a version count as version 1.
+     *
+     * @return number of processes moved
+     */
+    long migrateFlowVersion(ProcessType type, int from, int to, Set<ProcessState> states, int batchSize);
+
+    long countOnFlowVersion(ProcessType type, int version);
+
+    /**
+     * Moves up to {@code batchSize} processes matching the policy to the archive. A process that changes
+     * while being moved stays in the hot store.
+     *
+     * @return ids of the processes archived
+     */
+    List<String> archive(ArchivePolicy policy, int batchSize);
+
+    /**
+     * Looks a process up in the archive.
+     *
+     * @param fields properties to load (see {@link #findProjectedById}); {@code null} loads all of them
+     */
+    Optional<ProcessInstance> findArchivedById(String id, @Nullable Collection<String> fields);
+
+    /**
+     * @return those of {@code ids} that are in the archive, looked up in one query
+     */
+    Set<String> findArchivedIds(Collection<String> ids);
+
+    /**
+     * One page of the processes of {@code type} in {@code state} whose DATE variable {@code variable} is
+     * {@code date}, ordered by id, after {@code afterId}. Backed by an index on (type, state, variable, id),
+     * so every page is one index range however many processes match.
+     *
+     * @param archived look in the archive instead of the hot store
+     * @return the processes holding only clientId and the variable
+     */
+    List<ProcessInstance> findByDateVariable(ProcessType type, ProcessState state, String variable, LocalDate date,
+                                             boolean archived, @Nullable String afterId, int limit);
+
+    /**
+     * Counts the processes per type and state, archived ones included. Reads every process; meant for
+     * rebuilding the {@link StatsStore} counters, not for serving requests.
+     */
+    Map<ProcessType, Map<ProcessState, Long>> countByState();
+}
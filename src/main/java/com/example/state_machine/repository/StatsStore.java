@@ -0,0 +1,44 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Storage SPI for the incrementally maintained process counters: how many processes are in each state
+ * (occupancy) and how many transitions happened per hourly bucket. Reads touch one counter per state or
+ * per transition and bucket, never the processes themselves.
+ */
+public interface StatsStore {
+
+    record StateKey(ProcessType type, ProcessState state) { }
+
+    /**
+     * @param from   {@code null} for processes that started in {@code to}
+     * @param bucket start of the hour the transitions happened in
+     */
+    record TransitionKey(ProcessType type, @Nullable ProcessState from, ProcessState to, Instant bucket) { }
+
+    /**
+     * Adds the deltas to the counters, creating missing ones.
+     */
+    void increment(Map<StateKey, Long> occupancy, Map<TransitionKey, Long> transitions);
+
+    Map<ProcessState, Long> occupancy(ProcessType type);
+
+    /**
+     * @param since first bucket, a whole hour
+     * @param until end of the last bucket (exclusive), a whole hour
+     * @return the transition counters of {@code type} per bucket
+     */
+    Map<TransitionKey, Long> transitions(ProcessType type, Instant since, Instant until);
+
+    /**
+     * Replaces all occupancy counters with {@code counts}, each counter in one write; counters not in
+     * {@code counts} are removed.
+     */
+    void replaceOccupancy(Map<StateKey, Long> counts);
+}
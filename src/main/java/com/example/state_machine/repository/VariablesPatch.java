@@ -0,0 +1,49 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.flow.FlowCatalog;
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A change to a process' variables applied as one conditional update, see {@link ProcessStore#patchVariables}.
+ *
+ * @param set           values by path below {@code variables} ({@code key} or {@code key.nested})
+ * @param unset         paths below {@code variables} to remove
+ * @param flows         flow versions by type the values were validated against; other processes are left alone
+ * @param expectedState the state the process must be in, {@code null} for any
+ * @param updatedAt     new {@code updatedAt}
+ */
+public record VariablesPatch(Map<String, Object> set,
+                             Set<String> unset,
+                             Map<ProcessType, Set<Integer>> flows,
+                             @Nullable ProcessState expectedState,
+                             Instant updatedAt) {
+
+    public boolean appliesTo(ProcessInstance p) {
+        int version = p.getFlowVersion() != null ? p.getFlowVersion() : FlowCatalog.LEGACY_VERSION;
+        return flows.getOrDefault(p.getType(), Set.of()).contains(version)
+                && (expectedState == null || expectedState == p.getState());
+    }
+
+    /**
+     * @return the top-level variable keys the patch writes
+     */
+    public Set<String> keys() {
+        Set<String> keys = new HashSet<>();
+        set.keySet().forEach(path -> keys.add(topLevel(path)));
+        unset.forEach(path -> keys.add(topLevel(path)));
+        return keys;
+    }
+
+    private static String topLevel(String path) {
+        int dot = path.indexOf('.');
+        return dot < 0 ? path : path.substring(0, dot);
+    }
+}
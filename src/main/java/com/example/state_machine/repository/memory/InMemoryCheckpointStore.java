@@ -0,0 +1,30 @@
+package com.example.state_machine.repository.memory;
+
+import com.example.state_machine.repository.CheckpointStore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CheckpointStore} for the {@code memory} profile. Not journaled: after a restart jobs start from
+ * their defaults, which they must tolerate anyway.
+ */
+@Repository
+@Profile("memory")
+public class InMemoryCheckpointStore implements CheckpointStore {
+
+    private final Map<String, String> checkpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<String> get(String job) {
+        return Optional.ofNullable(checkpoints.get(job));
+    }
+
+    @Override
+    public void put(String job, String value) {
+        checkpoints.put(job, value);
+    }
+}
@@ -0,0 +1,556 @@
+package com.example.state_machine.repository.memory;
+
+import com.example.state_machine.flow.FlowCatalog;
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.ArchivePolicy;
+import com.example.state_machine.repository.InsertError;
+import com.example.state_machine.repository.ProcessStore;
+import com.example.state_machine.repository.VariablesPatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * {@link ProcessStore} for the {@code memory} profile: processes live in a concurrent map, for load
+ * tests and edge sites without MongoDB. Callers always get copies, like documents read from Mongo.
+ * <p>
+ * With {@code process.store.memory.directory} set, every write is also appended to a memory-mapped
+ * journal ({@link ProcessJournal}) and the map is written to a snapshot every
+ * {@code process.store.memory.snapshot-interval}. A snapshot starts a new journal generation:
+ * {@code snapshot-N} holds everything written before {@code journal-N}, so recovery loads the newest
+ * snapshot and replays the journals from its generation on. Variables come back as JSON types
+ * (dates as ISO strings, small numbers as ints).
+ */
+@Repository
+@Profile("memory")
+@Qualifier(ProcessStore.BACKEND)
+@Slf4j
+public class InMemoryProcessStore implements ProcessStore, DisposableBean {
+
+    private static final Pattern FILE_NAME = Pattern.compile("(journal|snapshot)-(\\d+)\\.(log|dat)");
+
+    private final Map<String, ProcessInstance> processes = new ConcurrentHashMap<>();
+    /** Id of the active process by client and type, standing in for Mongo's partial unique index. */
+    private final Map<String, String> activeIds = new ConcurrentHashMap<>();
+    /** Writers share it; a snapshot takes it exclusively to switch journals at a consistent point. */
+    private final ReadWriteLock rotation = new ReentrantReadWriteLock();
+    private final ObjectMapper objectMapper;
+    private final Path directory;        // null = not durable
+    private final int journalSize;
+    private final ScheduledExecutorService snapshots;
+    private ProcessJournal journal;
+    private long generation;
+
+    public InMemoryProcessStore(ObjectMapper objectMapper,
+                                @Value("${process.store.memory.directory:}") String directory,
+                                @Value("${process.store.memory.journal-size:64MB}") DataSize journalSize,
+                                @Value("${process.store.memory.snapshot-interval:5m}") Duration snapshotInterval) throws IOException {
+        this.objectMapper = objectMapper;
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.journalSize = Math.toIntExact(journalSize.toBytes());
+        if (this.directory == null) {
+            this.snapshots = null;
+            log.info("In-memory process store without durability");
+            return;
+        }
+        recover();
+        this.snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "process-store-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = snapshotInterval.toMillis();
+        snapshots.scheduleWithFixedDelay(this::snapshotQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ProcessInstance save(ProcessInstance instance) {
+        if (instance.getId() == null) {
+            instance.setId(new ObjectId().toHexString()); // same id format as Mongo
+        }
+        write(copy(instance));
+        return instance;
+    }
+
+    @Override
+    public boolean replace(ProcessInstance instance, Integer flowVersion, Instant updatedAt) {
+        rotation.readLock().lock();
+        try {
+            boolean[] replaced = {false};
+            processes.computeIfPresent(instance.getId(), (id, previous) -> {
+                if (!Objects.equals(previous.getFlowVersion(), flowVersion)
+                        || !Objects.equals(millis(previous.getUpdatedAt()), millis(updatedAt))
+                        || !Objects.equals(previous.getRevision(), instance.getRevision())) {
+                    return previous;
+                }
+                replaced[0] = true;
+                instance.setRevision(ProcessInstance.nextRevision(instance.getRevision()));
+                return replaced(previous, copy(instance));
+            });
+            return replaced[0];
+        } finally {
+            rotation.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<ProcessInstance> findById(String id) {
+        return Optional.ofNullable(processes.get(id)).map(InMemoryProcessStore::copy);
+    }
+
+    @Override
+    public Optional<ProcessInstance> findProjectedById(String id, Collection<String> fields) {
+        return Optional.ofNullable(processes.get(id)).map(p -> project(p, fields));
+    }
+
+    @Override
+    public Map<Integer, InsertError> insertAll(List<ProcessInstance> instances) {
+        Map<Integer, InsertError> errors = new HashMap<>();
+        for (int i = 0; i < instances.size(); i++) {
+            ProcessInstance instance = instances.get(i);
+            if (instance.getId() == null) {
+                instance.setId(new ObjectId().toHexString());
+            }
+            try {
+                if (!insert(copy(instance))) {
+                    errors.put(i, new InsertError(InsertError.Reason.DUPLICATE_ID, "Duplicate id: " + instance.getId()));
+                }
+            } catch (DuplicateKeyException e) {
+                errors.put(i, new InsertError(InsertError.Reason.ACTIVE_EXISTS, e.getMessage()));
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public ProcessInstance insertOrGetActive(ProcessInstance instance) {
+        Assert.isTrue(Boolean.TRUE.equals(instance.getActive()) && instance.getId() != null, "an active process with an id is required");
+        while (true) {
+            try {
+                insert(copy(instance));
+                return instance;
+            } catch (DuplicateKeyException e) {
+                ProcessInstance existing = Optional.ofNullable(activeIds.get(activeKey(instance))).map(processes::get).orElse(null);
+                if (existing != null) {
+                    return copy(existing);
+                }
+                // finished meanwhile: try again
+            }
+        }
+    }
+
+    @Override
+    public Optional<ProcessInstance> patchVariables(String id, VariablesPatch patch) {
+        List<String> fields = new ArrayList<>(List.of("type", "flowVersion", "state", "revision"));
+        patch.keys().forEach(key -> fields.add("variables." + key));
+        ProcessInstance[] before = {null};
+        update(id, patch::appliesTo, p -> {
+            before[0] = project(p, fields);
+            Map<String, Object> variables = p.getVariables() != null ? p.getVariables() : new HashMap<>();
+            patch.unset().forEach(path -> setPath(variables, path, null));
+            patch.set().forEach((path, value) -> setPath(variables, path, value));
+            p.setVariables(variables);
+            p.setUpdatedAt(patch.updatedAt());
+            p.setRevision(ProcessInstance.nextRevision(p.getRevision()));
+        });
+        return Optional.ofNullable(before[0]);
+    }
+
+    @Override
+    public Optional<ProcessInstance> addPendingChildren(String id, ProcessState requiredState, int delta) {
+        ProcessInstance[] after = {null};
+        update(id, p -> requiredState == null || p.getState() == requiredState, p -> {
+            p.setPendingChildren((p.getPendingChildren() != null ? p.getPendingChildren() : 0) + delta);
+            p.setUpdatedAt(Instant.now());
+            p.setRevision(ProcessInstance.nextRevision(p.getRevision()));
+            after[0] = project(p, List.of("type", "state", "pendingChildren"));
+        });
+        return Optional.ofNullable(after[0]);
+    }
+
+    @Override
+    public long migrateFlowVersion(ProcessType type, int from, int to, Set<ProcessState> states, int batchSize) {
+        long migrated = 0;
+        for (String id : List.copyOf(processes.keySet())) {
+            if (update(id, p -> onVersion(p, type, from) && states.contains(p.getState()), p -> {
+                p.setFlowVersion(to);
+                p.setUpdatedAt(Instant.now());
+                p.setRevision(ProcessInstance.nextRevision(p.getRevision()));
+            })) {
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    @Override
+    public long countOnFlowVersion(ProcessType type, int version) {
+        return processes.values().stream().filter(p -> onVersion(p, type, version)).count();
+    }
+
+    /**
+     * Everything is in memory anyway, so there is no hot working set to shrink: nothing is archived.
+     */
+    @Override
+    public List<String> archive(ArchivePolicy policy, int batchSize) {
+        return List.of();
+    }
+
+    @Override
+    public Optional<ProcessInstance> findArchivedById(String id, Collection<String> fields) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Set<String> findArchivedIds(Collection<String> ids) {
+        return Set.of();
+    }
+
+    @Override
+    public List<ProcessInstance> findByDateVariable(ProcessType type, ProcessState state, String variable, LocalDate date,
+                                                    boolean archived, String afterId, int limit) {
+        if (archived) {
+            return List.of();
+        }
+        return processes.values().stream()
+                .filter(p -> p.getType() == type && p.getState() == state)
+                .filter(p -> p.getVariables() != null && date.equals(p.getVariables().get(variable)))
+                .filter(p -> afterId == null || p.getId().compareTo(afterId) > 0)
+                .sorted(Comparator.comparing(ProcessInstance::getId))
+                .limit(limit)
+                .map(p -> project(p, List.of("clientId", "variables." + variable)))
+                .toList();
+    }
+
+    @Override
+    public Map<ProcessType, Map<ProcessState, Long>> countByState() {
+        Map<ProcessType, Map<ProcessState, Long>> counts = new EnumMap<>(ProcessType.class);
+        for (ProcessInstance p : processes.values()) {
+            counts.computeIfAbsent(p.getType(), t -> new EnumMap<>(ProcessState.class)).merge(p.getState(), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    private static boolean onVersion(ProcessInstance p, ProcessType type, int version) {
+        int v = p.getFlowVersion() != null ? p.getFlowVersion() : FlowCatalog.LEGACY_VERSION;
+        return p.getType() == type && v == version;
+    }
+
+    // ---------- writes: the map and the journal change together, per id ----------
+
+    private void write(ProcessInstance stored) {
+        rotation.readLock().lock();
+        try {
+            processes.compute(stored.getId(), (id, previous) -> replaced(previous, stored));
+        } finally {
+            rotation.readLock().unlock();
+        }
+    }
+
+    private ProcessInstance replaced(ProcessInstance previous, ProcessInstance stored) {
+        claimActive(stored);
+        ProcessInstance written = journaled(stored);
+        releaseActive(previous, stored);
+        return written;
+    }
+
+    private boolean insert(ProcessInstance stored) {
+        rotation.readLock().lock();
+        try {
+            boolean[] inserted = {false};
+            processes.computeIfAbsent(stored.getId(), id -> {
+                claimActive(stored);
+                ProcessInstance written = journaled(stored);
+                inserted[0] = true;
+                return written;
+            });
+            return inserted[0];
+        } finally {
+            rotation.readLock().unlock();
+        }
+    }
+
+    private boolean update(String id, Predicate<ProcessInstance> condition,
+                           Consumer<ProcessInstance> change) {
+        rotation.readLock().lock();
+        try {
+            boolean[] updated = {false};
+            processes.computeIfPresent(id, (k, current) -> {
+                if (!condition.test(current)) {
+                    return current;
+                }
+                ProcessInstance next = copy(current); // stored instances are never mutated, snapshots read them unlocked
+                change.accept(next);
+                updated[0] = true;
+                return journaled(next);
+            });
+            return updated[0];
+        } finally {
+            rotation.readLock().unlock();
+        }
+    }
+
+    /**
+     * @throws DuplicateKeyException when another process of the client and type is active
+     */
+    private void claimActive(ProcessInstance stored) {
+        if (Boolean.TRUE.equals(stored.getActive())) {
+            String holder = activeIds.putIfAbsent(activeKey(stored), stored.getId());
+            if (holder != null && !holder.equals(stored.getId())) {
+                throw new DuplicateKeyException("Duplicate key: active " + stored.getType() + " process " + holder
+                        + " of client " + stored.getClientId());
+            }
+        }
+    }
+
+    private void releaseActive(ProcessInstance previous, ProcessInstance stored) {
+        if (previous != null && Boolean.TRUE.equals(previous.getActive())
+                && !(Boolean.TRUE.equals(stored.getActive()) && activeKey(previous).equals(activeKey(stored)))) {
+            activeIds.remove(activeKey(previous), previous.getId());
+        }
+    }
+
+    private static String activeKey(ProcessInstance p) {
+        return p.getClientId() + '/' + p.getType() + '/' + p.getActiveScope();
+    }
+
+    private ProcessInstance journaled(ProcessInstance stored) {
+        if (journal != null) {
+            try {
+                journal.append(objectMapper.writeValueAsBytes(stored));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not journal process " + stored.getId(), e);
+            }
+        }
+        return stored;
+    }
+
+    // ---------- durability ----------
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        long snapshotGeneration = generations("snapshot").stream().mapToLong(Long::longValue).max().orElse(0);
+        if (snapshotGeneration > 0) {
+            ProcessJournal.replay(snapshotFile(snapshotGeneration), this::restore);
+        }
+        long last = snapshotGeneration;
+        for (long g : generations("journal")) {
+            if (g >= snapshotGeneration) {
+                ProcessJournal.replay(journalFile(g), this::restore);
+            }
+            last = Math.max(last, g);
+        }
+        generation = last + 1;
+        journal = ProcessJournal.create(journalFile(generation), journalSize);
+        log.info("In-memory process store recovered {} processes from {}", processes.size(), directory);
+    }
+
+    private void restore(byte[] record) {
+        try {
+            ProcessInstance p = objectMapper.readValue(record, ProcessInstance.class);
+            releaseActive(processes.put(p.getId(), p), p);
+            if (Boolean.TRUE.equals(p.getActive())) {
+                activeIds.put(activeKey(p), p.getId());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt process record in " + directory, e);
+        }
+    }
+
+    /**
+     * Switches to a new journal generation and writes the state as of the switch to a snapshot,
+     * then removes the files the snapshot supersedes.
+     */
+    void snapshot() throws IOException {
+        long next;
+        List<ProcessInstance> state;
+        rotation.writeLock().lock();
+        try {
+            if (journal.isEmpty()) {
+                return; // nothing written since the last snapshot
+            }
+            next = generation + 1;
+            ProcessJournal previous = journal;
+            journal = ProcessJournal.create(journalFile(next), journalSize);
+            generation = next;
+            previous.close();
+            state = new ArrayList<>(processes.values());
+        } finally {
+            rotation.writeLock().unlock();
+        }
+
+        Path tmp = directory.resolve("snapshot-" + next + ".tmp");
+        try (OutputStream file = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            for (ProcessInstance p : state) {
+                byte[] record = objectMapper.writeValueAsBytes(p);
+                out.writeInt(record.length);
+                out.write(record);
+            }
+        }
+        Files.move(tmp, snapshotFile(next), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (String kind : List.of("journal", "snapshot")) {
+            for (long g : generations(kind)) {
+                if (g < next) {
+                    Files.deleteIfExists(kind.equals("journal") ? journalFile(g) : snapshotFile(g));
+                }
+            }
+        }
+        log.debug("Process store snapshot {}: {} processes", next, state.size());
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Process store snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (snapshots == null) {
+            return;
+        }
+        snapshots.shutdownNow();
+        snapshot();
+        journal.close();
+    }
+
+    private List<Long> generations(String kind) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(f -> FILE_NAME.matcher(f.getFileName().toString()))
+                    .filter(m -> m.matches() && m.group(1).equals(kind))
+                    .map(m -> Long.parseLong(m.group(2)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path journalFile(long g) {
+        return directory.resolve("journal-" + g + ".log");
+    }
+
+    private Path snapshotFile(long g) {
+        return directory.resolve("snapshot-" + g + ".dat");
+    }
+
+    // ---------- copies ----------
+
+    /**
+     * Sets ({@code null}: removes) the value at a dotted path, copying the nested maps on the way:
+     * they are shared with the stored instance.
+     */
+    @SuppressWarnings("unchecked")
+    private static void setPath(Map<String, Object> variables, String path, Object value) {
+        String[] keys = path.split("\\.");
+        Map<String, Object> map = variables;
+        for (int i = 0; i < keys.length - 1; i++) {
+            Object child = map.get(keys[i]);
+            if (!(child instanceof Map)) {
+                if (value == null) {
+                    return;
+                }
+                child = Map.of();
+            }
+            Map<String, Object> copy = new HashMap<>((Map<String, Object>) child);
+            map.put(keys[i], copy);
+            map = copy;
+        }
+        if (value == null) {
+            map.remove(keys[keys.length - 1]);
+        } else {
+            map.put(keys[keys.length - 1], value);
+        }
+    }
+
+    /**
+     * MongoDB keeps dates to the millisecond, so updatedAt fences compare at that precision here too.
+     */
+    private static Long millis(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : null;
+    }
+
+    private static ProcessInstance copy(ProcessInstance p) {
+        return p.toBuilder()
+                .variables(p.getVariables() != null ? new HashMap<>(p.getVariables()) : null)
+                .build();
+    }
+
+    /**
+     * Same shape as a Mongo projection: the id plus the listed properties; {@code variables.<key>}
+     * selects single variables.
+     */
+    private static ProcessInstance project(ProcessInstance p, Collection<String> fields) {
+        ProcessInstance view = ProcessInstance.builder().id(p.getId()).variables(null).createdAt(null).build();
+        for (String field : fields) {
+            switch (field) {
+                case "clientId" -> view.setClientId(p.getClientId());
+                case "type" -> view.setType(p.getType());
+                case "state" -> view.setState(p.getState());
+                case "flowVersion" -> view.setFlowVersion(p.getFlowVersion());
+                case "parentId" -> view.setParentId(p.getParentId());
+                case "pendingChildren" -> view.setPendingChildren(p.getPendingChildren());
+                case "active" -> view.setActive(p.getActive());
+                case "variables" -> view.setVariables(p.getVariables() != null ? new HashMap<>(p.getVariables()) : null);
+                case "createdAt" -> view.setCreatedAt(p.getCreatedAt());
+                case "updatedAt" -> view.setUpdatedAt(p.getUpdatedAt());
+                case "revision" -> view.setRevision(p.getRevision());
+                default -> {
+                    if (field.startsWith("variables.") && p.getVariables() != null) {
+                        String key = field.substring("variables.".length());
+                        if (view.getVariables() == null) {
+                            view.setVariables(new HashMap<>());
+                        }
+                        if (p.getVariables().containsKey(key)) {
+                            view.getVariables().put(key, p.getVariables().get(key));
+                        }
+                    }
+                }
+            }
+        }
+        return view;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.state_machine.repository.memory;
+
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.StatsStore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link StatsStore} for the {@code memory} profile. The counters are not journaled; after a restart
+ * occupancy comes back through a rebuild.
+ */
+@Repository
+@Profile("memory")
+public class InMemoryStatsStore implements StatsStore {
+
+    private final Map<StateKey, Long> occupancy = new ConcurrentHashMap<>();
+    private final Map<TransitionKey, Long> transitions = new ConcurrentHashMap<>();
+
+    @Override
+    public void increment(Map<StateKey, Long> occupancy, Map<TransitionKey, Long> transitions) {
+        occupancy.forEach((key, delta) -> this.occupancy.merge(key, delta, Long::sum));
+        transitions.forEach((key, delta) -> this.transitions.merge(key, delta, Long::sum));
+    }
+
+    @Override
+    public Map<ProcessState, Long> occupancy(ProcessType type) {
+        Map<ProcessState, Long> counts = new EnumMap<>(ProcessState.class);
+        occupancy.forEach((key, count) -> {
+            if (key.type() == type) {
+                counts.put(key.state(), count);
+            }
+        });
+        return counts;
+    }
+
+    @Override
+    public Map<TransitionKey, Long> transitions(ProcessType type, Instant since, Instant until) {
+        Map<TransitionKey, Long> counts = new HashMap<>();
+        transitions.forEach((key, count) -> {
+            if (key.type() == type && !key.bucket().isBefore(since) && key.bucket().isBefore(until)) {
+                counts.put(key, count);
+            }
+        });
+        return counts;
+    }
+
+    @Override
+    public synchronized void replaceOccupancy(Map<StateKey, Long> counts) {
+        occupancy.clear();
+        occupancy.putAll(counts);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.state_machine.repository.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Append-only, memory-mapped record file: each record is a 4-byte length followed by its bytes.
+ * The length is written after the bytes, so a record is only visible to {@link #replay} once it is
+ * complete; the zero-filled tail of the mapping marks the end. Writes reach the page cache
+ * immediately and survive a process crash; {@link #close} forces them to disk.
+ */
+final class ProcessJournal implements Closeable {
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+
+    private ProcessJournal(FileChannel channel, int capacity) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Creates an empty journal, replacing {@code file} if it exists.
+     */
+    static ProcessJournal create(Path file, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new ProcessJournal(channel, capacity);
+    }
+
+    synchronized void append(byte[] record) throws IOException {
+        ensureCapacity(Integer.BYTES + record.length);
+        buffer.put(position + Integer.BYTES, record);
+        buffer.putInt(position, record.length); // commit point
+        position += Integer.BYTES + record.length;
+    }
+
+    synchronized boolean isEmpty() {
+        return position == 0;
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if ((long) position + needed <= buffer.capacity()) {
+            return;
+        }
+        long capacity = Math.max(2L * buffer.capacity(), (long) position + needed);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Journal full: " + position + " bytes");
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Feeds every complete record of {@code file} to {@code consumer}, in write order.
+     */
+    static void replay(Path file, Consumer<byte[]> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            while (in.remaining() >= Integer.BYTES) {
+                int length = in.getInt();
+                if (length <= 0 || length > in.remaining()) {
+                    return; // end of the written part
+                }
+                byte[] record = new byte[length];
+                in.get(record);
+                consumer.accept(record);
+            }
+        }
+    }
+}
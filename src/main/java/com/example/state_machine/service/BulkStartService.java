@@ -0,0 +1,158 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.InsertError;
+import com.example.state_machine.repository.ProcessStore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates processes from an NDJSON stream (one start item per line) for migrations and campaigns.
+ * Items are validated one by one, inserted in chunks with an unordered bulk write and reported
+ * back as NDJSON in input order, one line per item, as soon as their chunk is written.
+ * Unlike {@code /conversion/start}, no state machine is built per process.
+ */
+@Service
+@Slf4j
+public class BulkStartService {
+
+    /**
+     * One input line. {@code minorAccountId} is used by {@code MINOR_TO_REGULAR} items.
+     */
+    public record Item(String clientId, ProcessType type, String minorAccountId, Map<String, Object> initialData) {
+    }
+
+    /**
+     * One output line: the created process id (or the client's active process of the type, as for a single
+     * start) or the reason the item was rejected.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Result(long line, String id, String error) {
+    }
+
+    private final FlowService flowService;
+    private final ProcessStore store;
+    private final ProcessStats stats;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public BulkStartService(FlowService flowService,
+                            ProcessStore store,
+                            ProcessStats stats,
+                            ObjectMapper objectMapper,
+                            @Value("${process.bulk.chunk-size:1000}") int chunkSize) {
+        this.flowService = flowService;
+        this.store = store;
+        this.stats = stats;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public void startAll(InputStream ndjson, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        List<Pending> chunk = new ArrayList<>(chunkSize);
+        long lineNo = 0;
+        int created = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(prepare(lineNo, line));
+            if (chunk.size() >= chunkSize) {
+                created += flush(chunk, writer);
+            }
+        }
+        created += flush(chunk, writer);
+        log.info("Bulk start finished: {} lines, {} processes created", lineNo, created);
+    }
+
+    private Pending prepare(long lineNo, String line) {
+        try {
+            Item item = objectMapper.readValue(line, Item.class);
+            FlowService.checkStartableByClient(item.type());
+            ProcessInstance instance = item.type() == ProcessType.MINOR_TO_REGULAR
+                    ? flowService.newConversion(item.clientId(), item.minorAccountId(), item.initialData())
+                    : flowService.newProcess(item.clientId(), item.type(), item.initialData());
+            instance.setId(new ObjectId().toHexString()); // known before the insert, so it can be reported
+            return new Pending(lineNo, instance);
+        } catch (JsonProcessingException e) {
+            return new Pending(lineNo, "Invalid JSON: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return new Pending(lineNo, e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts the valid items of the chunk, writes one result per item and clears the chunk.
+     *
+     * @return number of processes created
+     */
+    private int flush(List<Pending> chunk, Writer writer) throws IOException {
+        List<Pending> valid = chunk.stream().filter(p -> p.error == null).toList();
+        Map<Integer, InsertError> errors = store.insertAll(valid.stream().map(p -> p.instance).toList());
+        errors.forEach((index, error) -> {
+            Pending p = valid.get(index);
+            if (error.reason() == InsertError.Reason.ACTIVE_EXISTS) {
+                // like a single start: answer with the client's active process (inserted now if it finished meanwhile)
+                ProcessInstance active = store.insertOrGetActive(p.instance);
+                if (active.getId().equals(p.instance.getId())) {
+                    return;
+                }
+                p.activeId = active.getId();
+            } else {
+                p.error = error.message();
+            }
+            flowService.releaseBlobs(p.instance);
+        });
+        int created = 0;
+        for (Pending p : valid) {
+            if (p.error == null && p.activeId == null) {
+                created++;
+                stats.started(p.instance.getType(), p.instance.getState());
+            }
+        }
+        for (Pending p : chunk) {
+            Result result = p.error == null
+                    ? new Result(p.line, p.activeId != null ? p.activeId : p.instance.getId(), null)
+                    : new Result(p.line, null, p.error);
+            writer.write(objectMapper.writeValueAsString(result));
+            writer.write('\n');
+        }
+        writer.flush();
+        chunk.clear();
+        return created;
+    }
+
+    private static final class Pending {
+        private final long line;
+        private final ProcessInstance instance;
+        private String error;
+        private String activeId; // the client's active process, returned instead of a new one
+
+        private Pending(long line, ProcessInstance instance) {
+            this.line = line;
+            this.instance = instance;
+        }
+
+        private Pending(long line, String error) {
+            this.line = line;
+            this.instance = null;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.flow.FlowRegistry;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.ProcessStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Moves in-flight processes from one flow version to another in bulk batches.
+ * Only processes whose current state also exists in the target version are moved;
+ * the others finish on the version they were started on.
+ */
+@Service
+@Slf4j
+public class FlowMigrationService {
+
+    private final ProcessStore store;
+    private final FlowRegistry flows;
+    private final int batchSize;
+
+    public FlowMigrationService(ProcessStore store,
+                                FlowRegistry flows,
+                                @Value("${flows.migration.batch-size:1000}") int batchSize) {
+        this.store = store;
+        this.flows = flows;
+        this.batchSize = batchSize;
+    }
+
+    public record MigrationResult(ProcessType type, int from, int to, long migrated, long skipped) { }
+
+    @Async
+    public CompletableFuture<MigrationResult> migrateAsync(ProcessType type, int from, int to) {
+        return CompletableFuture.completedFuture(migrate(type, from, to));
+    }
+
+    public MigrationResult migrate(ProcessType type, int from, int to) {
+        Assert.notNull(type, "type must not be null");
+        Assert.isTrue(from != to, "from and to versions must differ");
+        flows.flow(type, from); // both versions must be loaded
+        Set<ProcessState> targetStates = flows.flow(type, to).getDefinition().states();
+
+        long migrated = store.migrateFlowVersion(type, from, to, targetStates, batchSize);
+        long skipped = store.countOnFlowVersion(type, from);
+        log.info("Flow migration {} v{} -> v{}: migrated={}, left on v{}={}", type, from, to, migrated, from, skipped);
+        return new MigrationResult(type, from, to, migrated, skipped);
+    }
+}
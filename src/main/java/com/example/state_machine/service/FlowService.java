@@ -1,129 +1,493 @@
 package com.example.state_machine.service;
 
-import com.example.state_machine.config.StateMachineConfig;
+import com.example.state_machine.flow.CompiledFlow;
+import com.example.state_machine.flow.FlowCatalog;
+import com.example.state_machine.flow.FlowRegistry;
+import com.example.state_machine.flow.VariableSchema;
+import com.example.state_machine.logging.LogRateLimiter;
+import com.example.state_machine.logging.ProcessMdc;
 import com.example.state_machine.model.ProcessEvent;
 import com.example.state_machine.model.ProcessInstance;
 import com.example.state_machine.model.ProcessState;
 import com.example.state_machine.model.ProcessType;
-import com.example.state_machine.repository.ProcessInstanceRepository;
+import com.example.state_machine.repository.InsertError;
+import com.example.state_machine.repository.ProcessStore;
+import com.example.state_machine.repository.VariablesPatch;
+import com.example.state_machine.service.advance.PreconditionError;
 import com.example.state_machine.service.advance.PreconditionRegistry;
 import com.example.state_machine.service.advance.PreconditionsNotMetException;
 import com.example.state_machine.service.advance.StepPlan;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
 import org.springframework.statemachine.StateMachine;
 import org.springframework.statemachine.StateMachinePersist;
-import org.springframework.statemachine.config.StateMachineFactory;
 import org.springframework.statemachine.support.DefaultStateMachineContext;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FlowService {
-    private final ProcessInstanceRepository repository;
-    private final StateMachineFactory<ProcessState, ProcessEvent> stateMachineFactory;
+    /** A client retrying an invalid event must not flood the log. */
+    private static final LogRateLimiter REJECTED_EVENT_LOG = new LogRateLimiter(10);
+
+    private final ProcessStore store;
+    private final FlowRegistry flows;
     private final StateMachinePersist<ProcessState, ProcessEvent, String> stateMachinePersist;
     private final StepPlan stepPlan;
     private final PreconditionRegistry preconditions;
+    private final VariableBlobStore blobs;
+    private final ObservationRegistry observations;
+    private final ApplicationEventPublisher events;
+    private final ProcessStats stats;
+    private final ProcessHistory history;
 
+    /**
+     * Starts a process, or returns the client's active process of {@code type} if there is one, so a
+     * double-submitted start does not create a second process.
+     */
     @Transactional
     public ProcessInstance startProcess(String clientId, ProcessType type, Map<String, Object> initialData) {
+        checkStartableByClient(type);
+        return insertUnlessActive(newProcess(clientId, type, initialData));
+    }
+
+    /**
+     * CO_OWNER processes belong to a MULTI_OWNER one and are started only by {@link #addOwners}.
+     */
+    static void checkStartableByClient(ProcessType type) {
+        Assert.isTrue(type != ProcessType.CO_OWNER, "CO_OWNER processes are started through POST /process/{id}/owners");
+    }
+
+    private ProcessInstance insertUnlessActive(ProcessInstance instance) {
+        instance.setId(new ObjectId().toHexString());
+        ProcessInstance stored = store.insertOrGetActive(instance);
+        if (!instance.getId().equals(stored.getId())) {
+            releaseBlobs(instance);
+            log.debug("Client {} already has active {} process {}", instance.getClientId(), instance.getType(), stored.getId());
+            return stored;
+        }
+        stats.started(instance.getType(), instance.getState());
+        return instance;
+    }
+
+    /**
+     * Builds, without saving, a process on the newest flow version of {@code type}.
+     */
+    ProcessInstance newProcess(String clientId, ProcessType type, Map<String, Object> initialData) {
         Assert.hasText(clientId, "clientId must not be blank");
         Assert.notNull(type, "type must not be null");
 
-        // IMPORTANT: mutable map instead of Map.of()
-        Map<String, Object> vars = (initialData != null) ? new HashMap<>(initialData) : new HashMap<>();
+        CompiledFlow flow = flows.flow(type); // newest version; the process stays on it
+        // validated, canonically typed and mutable (not Map.of())
+        Map<String, Object> vars = flow.getVariables().canonicalize(initialData);
+        blobs.offload(flow.getVariables(), vars);
 
-        ProcessInstance instance = ProcessInstance.builder()
+        return ProcessInstance.builder()
                 .clientId(clientId)
                 .type(type)
-                .state(ProcessState.STARTED)
+                .flowVersion(flow.getVersion())
+                .state(flow.getInitial())
                 .variables(vars)
+                .active(true)
                 .createdAt(Instant.now())
                 .updatedAt(Instant.now())
                 .build();
-
-        repository.save(instance);
-        return instance;
     }
 
+    /**
+     * Starts one CO_OWNER process per further owner of a MULTI_OWNER process waiting in
+     * WAITING_FOR_ALL_OWNERS, so the owners go through KYC and biometry concurrently instead of one after
+     * another. The parent counts its unfinished children; when the last one finishes, it advances on its
+     * own if its preconditions are met.
+     *
+     * @param owners initial variables by the owner's clientId
+     * @return the started processes
+     */
     @Transactional
-    public ProcessInstance handleEvent(String processId, ProcessEvent event, Map<String, Object> data) {
-        ProcessInstance instance = repository.findById(processId)
-                .orElseThrow(() -> new NoSuchElementException("Process not found: " + processId));
+    public List<ProcessInstance> addOwners(String parentId, Map<String, Map<String, Object>> owners) {
+        Assert.notEmpty(owners, "owners must not be empty");
+        List<ProcessInstance> children = new ArrayList<>();
+        owners.forEach((clientId, data) -> {
+            ProcessInstance child = newProcess(clientId, ProcessType.CO_OWNER, data != null ? data : Map.of());
+            child.setId(parentId + ProcessInstance.CHILD_ID_SEPARATOR + new ObjectId().toHexString());
+            child.setParentId(parentId);
+            child.setActive(null); // one client may co-own several accounts at a time
+            children.add(child);
+        });
 
-        StateMachine<ProcessState, ProcessEvent> sm = stateMachineFactory.getStateMachine(processId);
+        // count up before inserting, or a child finishing first would join the parent early
+        if (store.addPendingChildren(parentId, ProcessState.WAITING_FOR_ALL_OWNERS, children.size()).isEmpty()) {
+            children.forEach(this::releaseBlobs);
+            ProcessInstance parent = store.findProjectedById(parentId, List.of("state"))
+                    .orElseThrow(() -> new NoSuchElementException("Process not found: " + parentId));
+            throw new IllegalStateException("Owners can only be added in " + ProcessState.WAITING_FOR_ALL_OWNERS
+                    + ", process is in " + parent.getState());
+        }
+        Map<Integer, InsertError> failed = store.insertAll(children);
+        List<ProcessInstance> started = new ArrayList<>();
+        for (int i = 0; i < children.size(); i++) {
+            if (failed.containsKey(i)) {
+                releaseBlobs(children.get(i));
+            } else {
+                started.add(children.get(i));
+                stats.started(ProcessType.CO_OWNER, children.get(i).getState());
+            }
+        }
+        if (!failed.isEmpty()) {
+            joinIfLast(parentId, store.addPendingChildren(parentId, null, -failed.size()));
+            throw new IllegalStateException("Started owners " + started.stream().map(ProcessInstance::getClientId).toList()
+                    + ", could not start the others: " + failed.values().stream().map(InsertError::message).toList());
+        }
+        return started;
+    }
+
+    /**
+     * Deletes the blobs {@link #newProcess} offloaded for a process that was never stored.
+     */
+    void releaseBlobs(ProcessInstance process) {
+        blobs.delete(VariableBlobStore.replacedReferences(process.getVariables(), process.getVariables().keySet()));
+    }
 
-        // 1) Stop and reset the state machine to the process state stored in DB
-        sm.stop();
-        sm.getStateMachineAccessor().doWithAllRegions(access ->
-                access.resetStateMachine(new DefaultStateMachineContext<>(
-                        instance.getState(), null, null, null
-                ))
-        );
+    /**
+     * Advances the parent once its last child finished: {@code counted} is the parent after counting down.
+     * The children's events succeed either way; a parent whose preconditions are not met keeps waiting
+     * for {@code /advance}.
+     */
+    private void joinIfLast(String parentId, Optional<ProcessInstance> counted) {
+        boolean last = counted
+                .filter(p -> p.getState() == ProcessState.WAITING_FOR_ALL_OWNERS)
+                .filter(p -> Integer.valueOf(0).equals(p.getPendingChildren()))
+                .isPresent();
+        if (!last) {
+            return;
+        }
+        try {
+            advance(parentId, Map.of());
+        } catch (PreconditionsNotMetException e) {
+            log.info("All owners of {} finished, waiting for {}", parentId,
+                    e.getErrors().stream().map(PreconditionError::code).toList());
+        } catch (RuntimeException e) {
+            log.warn("Joining {} after its last owner failed, it waits for /advance: {}", parentId, e.toString());
+        }
+    }
 
-        // 2) Put process type and variables into ExtendedState BEFORE start() and BEFORE sendEvent()
-        Map<Object, Object> ext = sm.getExtendedState().getVariables();
-        ext.put(StateMachineConfig.EXT_TYPE, instance.getType()); // critical for guard checks
+    /**
+     * Builds, without saving, a MINOR_TO_REGULAR conversion. It starts directly from the flow's initial
+     * state (MINOR_ACCOUNT_IDENTIFIED) — a "valid start node" for the conversion branch.
+     */
+    ProcessInstance newConversion(String clientId, String minorAccountId, Map<String, Object> initialData) {
+        // Create mutable variables map and store the linked account for audit/tracing
+        Map<String, Object> vars = new HashMap<>();
+        if (initialData != null) vars.putAll(initialData);
+        if (minorAccountId != null) vars.put("linkedMinorAccountId", minorAccountId);
+        ProcessInstance conversion = newProcess(clientId, ProcessType.MINOR_TO_REGULAR, vars);
+        conversion.setActiveScope(minorAccountId); // a guardian converts each minor separately
+        return conversion;
+    }
 
-        if (instance.getVariables() != null) {
-            ext.putAll(instance.getVariables());
+    @Transactional
+    public ProcessInstance handleEvent(String processId, ProcessEvent event, Map<String, Object> data) {
+        ProcessInstance instance = store.findById(processId)
+                .orElseThrow(() -> new NoSuchElementException("Process not found: " + processId));
+        try (ProcessMdc mdc = ProcessMdc.open(instance)) {
+            return ProcessObservations.create(ProcessObservations.EVENT, observations, instance, event).observe(() -> {
+                CompiledFlow flow = flows.flow(instance.getType(), instance.getFlowVersion());
+                return fire(instance, flow, event, flow.getVariables().canonicalize(data));
+            });
         }
-        if (data != null) {
-            ext.putAll(data);
+    }
+
+    /**
+     * Fires {@code event} on the process' state machine; {@code data} is already canonical.
+     */
+    private ProcessInstance fire(ProcessInstance instance, CompiledFlow flow, ProcessEvent event, Map<String, Object> data) {
+        String processId = instance.getId();
+        ProcessState from = instance.getState();
+        boolean back = event == ProcessEvent.BACK;
+        if (back) {
+            // only to where the process actually came from, and only where the flow allows it
+            Assert.isTrue(data == null || data.isEmpty(), "BACK takes no data");
+            Optional<ProcessState> target = flow.backTarget(from);
+            if (target.isEmpty() || !history.peek(instance).map(f -> f.state() == target.get()).orElse(false)) {
+                throw new IllegalStateException("Cannot go back from " + from);
+            }
         }
+        StateMachine<ProcessState, ProcessEvent> sm = flow.getStateMachine(processId);
 
-        sm.start();
+        boolean accepted = ProcessObservations.create(ProcessObservations.STATE_MACHINE, observations, instance, event)
+                .observe(() -> {
+                    // 1) Stop and reset the state machine to the process state stored in DB
+                    sm.stop();
+                    sm.getStateMachineAccessor().doWithAllRegions(access ->
+                            access.resetStateMachine(new DefaultStateMachineContext<>(
+                                    instance.getState(), null, null, null
+                            ))
+                    );
 
-        boolean accepted = sm.sendEvent(event);
+                    // 2) Put the process type and the variables the flow's guards need into ExtendedState
+                    //    BEFORE start() and BEFORE sendEvent()
+                    flow.hydrate(sm.getExtendedState(), instance.getVariables(), data);
+
+                    sm.start();
+                    return sm.sendEvent(event);
+                });
         if (!accepted) {
-            log.warn("Event not accepted. id={}, state={}, event={}", processId, instance.getState(), event);
+            long dropped = REJECTED_EVENT_LOG.tryAcquire();
+            if (dropped >= 0 && log.isWarnEnabled()) {
+                log.warn("Event not accepted. id={}, state={}, event={}, suppressed={}",
+                        processId, instance.getState(), event, dropped);
+            }
             throw new IllegalStateException("Event not accepted: " + event);
         }
 
-        // 3) Update instance state and variables
+        // 3) Update instance state and variables, recording the step for BACK (or undoing the last one)
+        List<Object> released = back
+                ? history.back(instance)
+                : history.push(instance, from, data != null ? data.keySet() : Set.of());
         instance.setState(sm.getState().getId());
-        return getProcessInstance(data, instance);
+        ProcessMdc.state(instance.getState());
+        boolean finished = flow.isTerminal(instance.getState());
+        if (finished) {
+            instance.setActive(null); // frees the client to start another process of the type
+        }
+        getProcessInstance(data, instance, flow.getVariables(), released);
+        stats.transitioned(instance.getType(), from, instance.getState());
+        events.publishEvent(ProcessStateChanged.local(instance));
+        if (finished && instance.getParentId() != null) {
+            joinIfLast(instance.getParentId(), store.addPendingChildren(instance.getParentId(), null, -1));
+        }
+        return instance;
     }
 
     @NotNull
-    private ProcessInstance getProcessInstance(Map<String, Object> data, ProcessInstance instance) {
+    private ProcessInstance getProcessInstance(Map<String, Object> data, ProcessInstance instance, VariableSchema schema,
+                                               List<Object> releasedBlobs) {
         if (data != null && !data.isEmpty()) {
+            // offload only once the change is accepted, so rejected events leave no orphaned blobs
+            blobs.offload(schema, data);
             // ensure mutability
             if (instance.getVariables() == null || !(instance.getVariables() instanceof HashMap)) {
                 instance.setVariables(new HashMap<>(instance.getVariables() == null ? Map.of() : instance.getVariables()));
             }
             instance.getVariables().putAll(data);
         }
+        Instant loadedAt = instance.getUpdatedAt();
         instance.setUpdatedAt(Instant.now());
-        repository.save(instance);
+        // only over the copy it was read as: a patch, a migration or the archiver may have changed it meanwhile
+        boolean replaced = ProcessObservations.create(ProcessObservations.STORE, observations, instance, null)
+                .observe(() -> store.replace(instance, instance.getFlowVersion(), loadedAt));
+        if (!replaced) {
+            if (data != null) {
+                blobs.delete(VariableBlobStore.replacedReferences(data, data.keySet()));
+            }
+            throw new OptimisticLockingFailureException("Process " + instance.getId() + " was changed meanwhile, retry");
+        }
+        blobs.delete(releasedBlobs);
 
         return instance;
     }
 
+    /**
+     * Applies a JSON Merge Patch (RFC 7396) to the variables in one conditional update, without reading
+     * the process: {@code null} removes a key, an object is merged into an {@code OBJECT} variable, any
+     * other value replaces the stored one. The values are validated against every loaded flow version and
+     * the update only matches processes on a version that accepted them. Only when the loaded versions
+     * disagree on the stored values (canonical form, OBJECT or BLOB declaration) is the process' flow read
+     * before the update; when the update matches nothing, the process is read once to report why.
+     *
+     * @param expectedState when set, the patch applies only while the process is in this state
+     * @return the process' id, state, new updatedAt and revision (no variables)
+     */
     @Transactional
-    public ProcessInstance updateVariables(String processId, Map<String, Object> updates) {
-        ProcessInstance instance = repository.findById(processId)
+    public ProcessInstance patchVariables(String processId, Map<String, Object> patch, @Nullable ProcessState expectedState) {
+        Assert.notNull(patch, "patch must not be null");
+        Map<String, Object> values = new HashMap<>();
+        Set<String> removed = new HashSet<>();
+        patch.forEach((key, value) -> {
+            checkVariablePath(key);
+            if (value == null) {
+                removed.add(key);
+            } else {
+                values.put(key, value);
+            }
+        });
+
+        // flows that canonicalize the values alike and declare the patched keys alike can share one update
+        List<PatchCandidate> candidates = new ArrayList<>();
+        FlowCatalog catalog = flows.current();
+        for (ProcessType type : ProcessType.values()) {
+            for (CompiledFlow flow : catalog.versions(type)) {
+                Map<String, Object> canonical;
+                try {
+                    canonical = flow.getVariables().canonicalize(values);
+                } catch (IllegalArgumentException e) {
+                    continue; // not a valid patch for processes on this flow
+                }
+                candidates.stream().filter(c -> c.canonical().equals(canonical)
+                                && declaredAlike(c.schema(), flow.getVariables(), canonical.keySet()))
+                        .findFirst()
+                        .orElseGet(() -> {
+                            PatchCandidate c = new PatchCandidate(canonical, flow.getVariables(), new EnumMap<>(ProcessType.class));
+                            candidates.add(c);
+                            return c;
+                        })
+                        .flows().computeIfAbsent(type, t -> new TreeSet<>()).add(flow.getVersion());
+            }
+        }
+        PatchCandidate candidate = candidates.size() == 1 ? candidates.get(0) : candidateFor(processId, candidates);
+        if (candidate == null) {
+            throw patchRejected(processId, values, expectedState);
+        }
+
+        Instant now = Instant.now();
+        blobs.offload(candidate.schema(), candidate.canonical());
+        Map<String, Object> set = new HashMap<>();
+        Set<String> unset = new HashSet<>(removed);
+        candidate.canonical().forEach((key, value) ->
+                flatten(key, value, candidate.schema().isObject(key), set, unset));
+        Optional<ProcessInstance> before = store.patchVariables(processId,
+                new VariablesPatch(set, unset, candidate.flows(), expectedState, now));
+        if (before.isEmpty()) {
+            blobs.delete(VariableBlobStore.replacedReferences(candidate.canonical(), candidate.canonical().keySet()));
+            throw patchRejected(processId, values, expectedState);
+        }
+        blobs.delete(VariableBlobStore.replacedReferences(before.get().getVariables(), patch.keySet()));
+        ProcessInstance patched = before.get();
+        patched.setId(processId);
+        patched.setVariables(null);
+        patched.setUpdatedAt(now);
+        patched.setRevision(ProcessInstance.nextRevision(patched.getRevision()));
+        return patched;
+    }
+
+    private record PatchCandidate(Map<String, Object> canonical, VariableSchema schema,
+                                  Map<ProcessType, Set<Integer>> flows) { }
+
+    private static boolean declaredAlike(VariableSchema a, VariableSchema b, Set<String> keys) {
+        return keys.stream().allMatch(key -> a.isObject(key) == b.isObject(key) && a.isBlob(key) == b.isBlob(key));
+    }
+
+    /**
+     * The loaded flows disagree on the patch: reads only the process' type and flow version to pick the
+     * one update it accepts. The update is still conditional on that flow, in case a migration moves it.
+     *
+     * @return {@code null} when no flow the process may be on accepts the values
+     */
+    @Nullable
+    private PatchCandidate candidateFor(String processId, List<PatchCandidate> candidates) {
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        ProcessInstance current = store.findProjectedById(processId, List.of("type", "flowVersion"))
                 .orElseThrow(() -> new NoSuchElementException("Process not found: " + processId));
+        int version = current.getFlowVersion() != null ? current.getFlowVersion() : FlowCatalog.LEGACY_VERSION;
+        return candidates.stream()
+                .filter(c -> c.flows().getOrDefault(current.getType(), Set.of()).contains(version))
+                .findFirst().orElse(null);
+    }
+
+    /**
+     * Turns one merge-patch member into update paths; objects merge only into {@code OBJECT} variables.
+     */
+    @SuppressWarnings("unchecked")
+    private static void flatten(String path, Object value, boolean merge, Map<String, Object> set, Set<String> unset) {
+        if (!merge || !(value instanceof Map<?, ?> object) || object.isEmpty()) {
+            set.put(path, value);
+            return;
+        }
+        ((Map<String, Object>) object).forEach((key, nested) -> {
+            checkVariablePath(key);
+            if (nested == null) {
+                unset.add(path + "." + key);
+            } else {
+                flatten(path + "." + key, nested, true, set, unset);
+            }
+        });
+    }
 
-        return getProcessInstance(updates, instance);
+    private static void checkVariablePath(String key) {
+        if (key.isEmpty() || key.contains(".") || key.startsWith("$")) {
+            throw new IllegalArgumentException("Invalid variable key: " + key);
+        }
+    }
+
+    /**
+     * Reads the process once to tell why a patch matched nothing.
+     */
+    private RuntimeException patchRejected(String processId, Map<String, Object> values, @Nullable ProcessState expectedState) {
+        ProcessInstance current = store.findProjectedById(processId, List.of("type", "flowVersion", "state"))
+                .orElseThrow(() -> new NoSuchElementException("Process not found: " + processId));
+        if (expectedState != null && current.getState() != expectedState) {
+            return new PreconditionsNotMetException(current.getState(), List.of(new PreconditionError("STATE_CHANGED",
+                    "Process is in " + current.getState() + ", not " + expectedState)));
+        }
+        flows.flow(current.getType(), current.getFlowVersion()).getVariables().canonicalize(values); // throws the validation errors
+        return new IllegalStateException("Process changed concurrently, retry: " + processId);
     }
 
     @Transactional(readOnly = true)
     public ProcessInstance getProcess(String processId) {
-        return repository.findById(processId)
+        return store.findById(processId)
+                .or(() -> store.findArchivedById(processId, null))
                 .orElseThrow(() -> new NoSuchElementException("Process not found: " + processId));
     }
 
+    /**
+     * Loads only the given entity properties (see {@link ProcessStore#findProjectedById}).
+     * Like {@link #getProcess(String)} it falls back to the archive.
+     */
+    @Transactional(readOnly = true)
+    public ProcessInstance getProcess(String processId, Collection<String> fields) {
+        return store.findProjectedById(processId, fields)
+                .or(() -> store.findArchivedById(processId, fields))
+                .orElseThrow(() -> new NoSuchElementException("Process not found: " + processId));
+    }
+
+    /**
+     * Opens one variable for download: offloaded blobs stream from GridFS, inline values are encoded as UTF-8 text.
+     */
+    @Transactional(readOnly = true)
+    public Resource openVariable(String processId, String key) {
+        if (key.contains(".") || key.startsWith("$")) {
+            throw new IllegalArgumentException("Invalid variable key: " + key);
+        }
+        ProcessInstance instance = getProcess(processId, List.of("variables." + key));
+        Object value = instance.getVariables() != null ? instance.getVariables().get(key) : null;
+        if (value == null) {
+            throw new NoSuchElementException("Variable not found: " + key);
+        }
+        if (VariableBlobStore.isReference(value)) {
+            return blobs.open(value);
+        }
+        return new ByteArrayResource(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+    }
+
     @Transactional
     public ProcessInstance startMinorToRegularConversion(String clientId,
                                                          String minorAccountId,
@@ -137,55 +501,31 @@ public class FlowService {
             log.warn("startMinorToRegularConversion without minorAccountId (audit recommended)");
         }
 
-        // Create mutable variables map and store the linked account for audit/tracing
-        Map<String, Object> vars = new java.util.HashMap<>();
-        if (initialData != null) vars.putAll(initialData);
-        if (minorAccountId != null) vars.put("linkedMinorAccountId", minorAccountId);
-
-        ProcessInstance instance = ProcessInstance.builder()
-                .clientId(clientId)
-                .type(ProcessType.MINOR_TO_REGULAR)
-                // KEY: start directly from MINOR_ACCOUNT_IDENTIFIED —
-                // this is a "valid start node" for the conversion branch
-                .state(ProcessState.MINOR_ACCOUNT_IDENTIFIED)
-                .variables(vars)
-                .createdAt(Instant.now())
-                .updatedAt(Instant.now())
-                .build();
-
-        repository.save(instance);
-
-        // (Optional) Warm up the state machine — synchronize it immediately
-        StateMachine<ProcessState, ProcessEvent> sm = stateMachineFactory.getStateMachine(instance.getId());
-        sm.stop();
-        sm.getStateMachineAccessor().doWithAllRegions(acc ->
-                acc.resetStateMachine(new org.springframework.statemachine.support.DefaultStateMachineContext<>(
-                        instance.getState(), null, null, null
-                ))
-        );
-        // Put process type and variables into ExtendedState so guards are ready for the next event
-        sm.getExtendedState().getVariables().clear();
-        sm.getExtendedState().getVariables().put(com.example.state_machine.config.StateMachineConfig.EXT_TYPE, instance.getType());
-        sm.getExtendedState().getVariables().putAll(instance.getVariables());
-        sm.start();
-
-        return instance;
+        return insertUnlessActive(newConversion(clientId, minorAccountId, initialData));
     }
 
     // server-driven advance
     @Transactional
     public ProcessInstance advance(String processId, Map<String, Object> data) {
-        ProcessInstance pi = repository.findById(processId)
+        ProcessInstance pi = store.findById(processId)
                 .orElseThrow(() -> new NoSuchElementException("Process not found: " + processId));
 
-        ProcessEvent next = stepPlan.next(pi.getType(), pi.getState())
-                .orElseThrow(() -> new IllegalStateException("No next step for state " + pi.getState()));
+        try (ProcessMdc mdc = ProcessMdc.open(pi)) {
+            Observation observation = ProcessObservations.create(ProcessObservations.ADVANCE, observations, pi, null);
+            return observation.observe(() -> {
+                ProcessEvent next = stepPlan.next(pi.getType(), pi.getFlowVersion(), pi.getState())
+                        .orElseThrow(() -> new IllegalStateException("No next step for state " + pi.getState()));
+                ProcessObservations.event(observation, next);
+                CompiledFlow flow = flows.flow(pi.getType(), pi.getFlowVersion());
+                Map<String, Object> payload = flow.getVariables().canonicalize(data); // preconditions read typed values
 
-        var errors = preconditions.validateAll(pi, next, data != null ? data : Map.of());
-        if (!errors.isEmpty()) {
-            throw new PreconditionsNotMetException(pi.getState(), errors);
-        }
+                var errors = preconditions.validateAll(pi, next, payload);
+                if (!errors.isEmpty()) {
+                    throw new PreconditionsNotMetException(pi.getState(), errors);
+                }
 
-        return handleEvent(processId, next, data != null ? data : Map.of());
+                return fire(pi, flow, next, payload);
+            });
+        }
     }
 }
@@ -0,0 +1,310 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.cluster.PartitionManager;
+import com.example.state_machine.repository.CheckpointStore;
+import com.example.state_machine.repository.InsertError;
+import com.example.state_machine.repository.ProcessStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Starts a MINOR_TO_REGULAR conversion for every MINOR process in MINOR_ACCOUNT_IDENTIFIED (hot or
+ * archived) whose holder turned {@code process.majority.age}, every {@code process.majority.interval}.
+ * <p>
+ * The key space is the holders' dates of birth: each run takes the days after the checkpoint up to
+ * today minus the age, and {@code process.majority.parallelism} workers page through one day each with
+ * the (type, state, dateOfBirth, id) index, inserting one conversion batch per page. The checkpoint moves
+ * to the last day that, with every day before it, is done, so a crashed run resumes there. A conversion's
+ * id is the minor's id plus {@code -regular}: redoing a day skips the minors already converted, whether
+ * their conversion is still in the hot store or archived, and the minors with an active conversion
+ * started otherwise. Any other failed insert fails the day.
+ * Inserts are held to {@code process.majority.max-rate} per second across all workers. In a cluster only
+ * the {@linkplain PartitionManager#isLeader leader} runs the scheduled job.
+ */
+@Service
+@ConditionalOnProperty(name = "process.majority.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class MajorityConversionJob implements DisposableBean {
+
+    static final String JOB = "majority-conversion";
+    static final String DATE_OF_BIRTH = "dateOfBirth";
+    static final String CONVERSION_SUFFIX = ProcessInstance.CHILD_ID_SEPARATOR + "regular";
+
+    /**
+     * @param through    last date of birth covered
+     * @param candidates minors found
+     * @param started    conversions started (0 in a dry run)
+     * @param skipped    minors converted before
+     * @param complete   whether every day was done; otherwise the next run repeats from the first one that was not
+     */
+    public record ConversionResult(LocalDate from, LocalDate through, boolean dryRun, long candidates,
+                                   long started, long skipped, boolean complete) { }
+
+    private record DayResult(long candidates, long started, long skipped) { }
+
+    private final FlowService flowService;
+    private final ProcessStore store;
+    private final CheckpointStore checkpoints;
+    private final ProcessStats stats;
+    private final int age;
+    private final Duration catchUp;
+    private final int parallelism;
+    private final int batchSize;
+    private final Throttle throttle;
+    private final Clock clock;
+    private final BooleanSupplier leader;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    private volatile ConversionResult last;
+
+    @Autowired
+    public MajorityConversionJob(FlowService flowService, ProcessStore store, CheckpointStore checkpoints, ProcessStats stats,
+                                 @Value("${process.majority.age:18}") int age,
+                                 @Value("${process.majority.catch-up:365d}") Duration catchUp,
+                                 @Value("${process.majority.parallelism:4}") int parallelism,
+                                 @Value("${process.majority.batch-size:1000}") int batchSize,
+                                 @Value("${process.majority.max-rate:500}") int maxRate,
+                                 @Value("${process.majority.interval:1d}") Duration interval,
+                                 Optional<PartitionManager> cluster) {
+        this(flowService, store, checkpoints, stats, age, catchUp, parallelism, batchSize, maxRate, Clock.systemUTC(), interval,
+                cluster.<BooleanSupplier>map(partitions -> partitions::isLeader).orElse(() -> true));
+    }
+
+    MajorityConversionJob(FlowService flowService, ProcessStore store, CheckpointStore checkpoints, ProcessStats stats,
+                          int age, Duration catchUp, int parallelism, int batchSize, int maxRate, Clock clock,
+                          Duration interval, BooleanSupplier leader) {
+        this.flowService = flowService;
+        this.store = store;
+        this.checkpoints = checkpoints;
+        this.stats = stats;
+        this.age = age;
+        this.catchUp = catchUp;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.throttle = maxRate > 0 ? new Throttle(maxRate) : null;
+        this.clock = clock;
+        this.leader = leader;
+        if (interval.isZero()) {
+            this.scheduler = null; // runs only on demand
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "majority-conversion");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Async
+    public CompletableFuture<ConversionResult> runAsync(boolean dryRun) {
+        return CompletableFuture.completedFuture(run(dryRun));
+    }
+
+    /**
+     * @param dryRun only count the candidates: nothing is inserted and the checkpoint stays
+     */
+    public ConversionResult run(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Majority conversion is already running");
+        }
+        try {
+            last = convert(dryRun);
+            log.info("Majority conversion: {}", last);
+            return last;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return the result of the last run, {@code null} before the first one
+     */
+    @Nullable
+    public ConversionResult lastResult() {
+        return last;
+    }
+
+    public Optional<LocalDate> checkpoint() {
+        return checkpoints.get(JOB).map(LocalDate::parse);
+    }
+
+    private ConversionResult convert(boolean dryRun) {
+        LocalDate through = LocalDate.now(clock).minusYears(age);
+        LocalDate from = checkpoint().map(d -> d.plusDays(1)).orElse(through.minusDays(catchUp.toDays()));
+        List<LocalDate> days = from.datesUntil(through.plusDays(1)).toList();
+        if (days.isEmpty()) {
+            return new ConversionResult(from, through, dryRun, 0, 0, 0, true);
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, days.size()), r -> {
+            Thread t = new Thread(r, "majority-conversion-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<DayResult>> results = new ArrayList<>();
+            for (LocalDate day : days) {
+                results.add(workers.submit(() -> convertDay(day, dryRun)));
+            }
+            long candidates = 0, started = 0, skipped = 0;
+            boolean complete = true;
+            for (int i = 0; i < days.size(); i++) {
+                try {
+                    DayResult day = results.get(i).get();
+                    candidates += day.candidates();
+                    started += day.started();
+                    skipped += day.skipped();
+                    if (complete && !dryRun) {
+                        checkpoints.put(JOB, days.get(i).toString());
+                    }
+                } catch (ExecutionException e) {
+                    complete = false; // the checkpoint stays before this day; later days are redone next run
+                    log.warn("Majority conversion of minors born on {} failed: {}", days.get(i), e.getCause().toString());
+                }
+            }
+            return new ConversionResult(from, through, dryRun, candidates, started, skipped, complete);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Majority conversion interrupted", e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private DayResult convertDay(LocalDate day, boolean dryRun) throws InterruptedException {
+        long candidates = 0, started = 0, skipped = 0;
+        // hot store first: a minor archived meanwhile is then still found in the archive
+        for (boolean archived : new boolean[]{false, true}) {
+            String after = null;
+            while (true) {
+                List<ProcessInstance> minors = store.findByDateVariable(ProcessType.MINOR, ProcessState.MINOR_ACCOUNT_IDENTIFIED,
+                        DATE_OF_BIRTH, day, archived, after, batchSize);
+                if (minors.isEmpty()) {
+                    break;
+                }
+                after = minors.get(minors.size() - 1).getId();
+                candidates += minors.size();
+                if (dryRun) {
+                    continue;
+                }
+                if (throttle != null) {
+                    throttle.acquire(minors.size());
+                }
+                // a conversion that finished and was archived is no longer in the way of its insert
+                Set<String> archivedConversions = store.findArchivedIds(minors.stream()
+                        .map(minor -> minor.getId() + CONVERSION_SUFFIX).toList());
+                skipped += archivedConversions.size();
+                List<ProcessInstance> conversions = new ArrayList<>(minors.size());
+                for (ProcessInstance minor : minors) {
+                    if (archivedConversions.contains(minor.getId() + CONVERSION_SUFFIX)) {
+                        continue;
+                    }
+                    ProcessInstance conversion = flowService.newConversion(minor.getClientId(), minor.getId(), Map.of());
+                    conversion.setId(minor.getId() + CONVERSION_SUFFIX);
+                    conversions.add(conversion);
+                }
+                if (conversions.isEmpty()) {
+                    continue;
+                }
+                Map<Integer, InsertError> errors = store.insertAll(conversions);
+                for (int i = 0; i < conversions.size(); i++) {
+                    InsertError error = errors.get(i);
+                    if (error == null) {
+                        started++;
+                        stats.started(ProcessType.MINOR_TO_REGULAR, conversions.get(i).getState());
+                    } else if (error.reason() == InsertError.Reason.DUPLICATE_ID
+                            || error.reason() == InsertError.Reason.ACTIVE_EXISTS) {
+                        // this very conversion was started before, or another one for this minor
+                        // (conversions are active per minor) is still running
+                        skipped++;
+                    } else {
+                        throw new IllegalStateException("Could not start conversion " + conversions.get(i).getId() + ": "
+                                + error.message());
+                    }
+                }
+            }
+        }
+        return new DayResult(candidates, started, skipped);
+    }
+
+    void runQuietly() {
+        if (!leader.getAsBoolean()) {
+            log.debug("Not the cluster leader, skipping the majority conversion");
+            return;
+        }
+        try {
+            run(false);
+        } catch (RuntimeException e) {
+            log.warn("Majority conversion failed, retrying next run: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Spaces permits evenly at a fixed rate, shared by all workers.
+     */
+    static final class Throttle {
+
+        private final long nanosPerPermit;
+        private long next;
+
+        Throttle(int perSecond) {
+            this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / perSecond;
+            this.next = System.nanoTime();
+        }
+
+        void acquire(int permits) throws InterruptedException {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(next, now);
+                next = start + permits * nanosPerPermit;
+                wait = start - now;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.cluster.PartitionManager;
+import com.example.state_machine.flow.CompiledFlow;
+import com.example.state_machine.flow.FlowCatalog;
+import com.example.state_machine.flow.FlowRegistry;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.ArchivePolicy;
+import com.example.state_machine.repository.ProcessStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Moves finished and abandoned processes out of the hot store, in batches of
+ * {@code process.archive.batch-size} with a {@code process.archive.pause} between them, at most
+ * {@code process.archive.max-per-run} per run, every {@code process.archive.interval}.
+ * <p>
+ * A process is finished in a terminal state of its type's flow (any loaded version) and archived
+ * {@code process.archive.terminal-after} its last update; a process in any other state counts as
+ * abandoned after {@code process.archive.abandoned-after} (0 keeps them).
+ * <p>
+ * In a cluster only the {@linkplain PartitionManager#isLeader leader} runs the scheduled archiving.
+ */
+@Service
+@ConditionalOnProperty(name = "process.archive.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ProcessArchiver implements DisposableBean {
+
+    public record ArchiveResult(long archived, boolean complete) { }
+
+    private final ProcessStore store;
+    private final FlowRegistry flows;
+    private final int batchSize;
+    private final Duration pause;
+    private final long maxPerRun;
+    private final Duration terminalAfter;
+    private final Duration abandonedAfter;
+    private final Clock clock;
+    private final BooleanSupplier leader;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ProcessArchiver(ProcessStore store, FlowRegistry flows,
+                           @Value("${process.archive.batch-size:500}") int batchSize,
+                           @Value("${process.archive.pause:200ms}") Duration pause,
+                           @Value("${process.archive.max-per-run:100000}") long maxPerRun,
+                           @Value("${process.archive.terminal-after:30d}") Duration terminalAfter,
+                           @Value("${process.archive.abandoned-after:180d}") Duration abandonedAfter,
+                           @Value("${process.archive.interval:1h}") Duration interval,
+                           Optional<PartitionManager> cluster) {
+        this(store, flows, batchSize, pause, maxPerRun, terminalAfter, abandonedAfter, Clock.systemUTC(), interval,
+                cluster.<BooleanSupplier>map(partitions -> partitions::isLeader).orElse(() -> true));
+    }
+
+    ProcessArchiver(ProcessStore store, FlowRegistry flows, int batchSize, Duration pause, long maxPerRun,
+                    Duration terminalAfter, Duration abandonedAfter, Clock clock, Duration interval,
+                    BooleanSupplier leader) {
+        this.store = store;
+        this.flows = flows;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.maxPerRun = maxPerRun;
+        this.terminalAfter = terminalAfter;
+        this.abandonedAfter = abandonedAfter;
+        this.clock = clock;
+        this.leader = leader;
+        if (interval.isZero()) {
+            this.scheduler = null; // runs only on demand
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "process-archiver");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Archives until nothing is left or the run limit is reached.
+     */
+    public ArchiveResult run() {
+        ArchivePolicy policy = policy();
+        long archived = 0;
+        while (archived < maxPerRun) {
+            List<String> batch = store.archive(policy, (int) Math.min(batchSize, maxPerRun - archived));
+            archived += batch.size();
+            if (batch.isEmpty()) {
+                log.info("Archived {} processes", archived);
+                return new ArchiveResult(archived, true);
+            }
+            log.debug("Archived a batch of {} processes", batch.size());
+            if (!pause.isZero()) {
+                try {
+                    Thread.sleep(pause.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        log.info("Archived {} processes, more left for the next run", archived);
+        return new ArchiveResult(archived, false);
+    }
+
+    ArchivePolicy policy() {
+        FlowCatalog catalog = flows.current();
+        Map<ProcessType, Set<ProcessState>> terminal = new EnumMap<>(ProcessType.class);
+        for (ProcessType type : ProcessType.values()) {
+            Set<ProcessState> states = EnumSet.noneOf(ProcessState.class);
+            for (CompiledFlow flow : catalog.versions(type)) {
+                states.addAll(flow.getDefinition().terminal());
+            }
+            if (!states.isEmpty()) {
+                terminal.put(type, states);
+            }
+        }
+        Instant now = clock.instant();
+        return new ArchivePolicy(terminal, now.minus(terminalAfter),
+                abandonedAfter.isZero() ? null : now.minus(abandonedAfter));
+    }
+
+    void runQuietly() {
+        if (!leader.getAsBoolean()) {
+            log.debug("Not the cluster leader, skipping the archive run");
+            return;
+        }
+        try {
+            run();
+        } catch (RuntimeException e) {
+            log.warn("Archiving failed, retrying next run: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.HistoryFrame;
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The bounded stack of {@link HistoryFrame}s behind {@code BACK}. Each step pushes the state it leaves
+ * and the previous values of the keys it writes; {@code BACK} pops the top frame and puts those values
+ * back. Blob references are released only once no frame and no variable holds them anymore.
+ */
+@Component
+public class ProcessHistory {
+
+    private final int depth;
+
+    public ProcessHistory(@Value("${process.history.depth:10}") int depth) {
+        this.depth = depth;
+    }
+
+    public Optional<HistoryFrame> peek(ProcessInstance instance) {
+        List<HistoryFrame> stack = instance.getHistory();
+        return stack == null || stack.isEmpty() ? Optional.empty() : Optional.of(stack.get(stack.size() - 1));
+    }
+
+    /**
+     * Records a step leaving {@code left} that is about to write {@code keys}.
+     *
+     * @return blob references nothing holds anymore: those of the frame pushed out at the bottom
+     * (or, with history off, those the step overwrites)
+     */
+    public List<Object> push(ProcessInstance instance, ProcessState left, Collection<String> keys) {
+        Map<String, Object> variables = instance.getVariables() != null ? instance.getVariables() : Map.of();
+        if (depth <= 0) {
+            return VariableBlobStore.replacedReferences(variables, keys);
+        }
+        Map<String, Object> previous = new HashMap<>();
+        List<String> added = new ArrayList<>();
+        for (String key : keys) {
+            if (variables.containsKey(key)) {
+                previous.put(key, variables.get(key));
+            } else {
+                added.add(key);
+            }
+        }
+
+        List<HistoryFrame> stack = instance.getHistory() != null ? instance.getHistory() : List.of();
+        int dropped = Math.max(0, stack.size() + 1 - depth);
+        List<Object> released = new ArrayList<>();
+        for (HistoryFrame frame : stack.subList(0, dropped)) {
+            frame.previous().values().stream().filter(VariableBlobStore::isReference).forEach(released::add);
+        }
+        List<HistoryFrame> next = new ArrayList<>(stack.subList(dropped, stack.size()));
+        next.add(new HistoryFrame(left, previous, added));
+        instance.setHistory(next);
+        return released;
+    }
+
+    /**
+     * Pops the top frame and undoes its variable changes; the caller sets the state.
+     *
+     * @return blob references the undone step had written
+     */
+    public List<Object> back(ProcessInstance instance) {
+        HistoryFrame frame = peek(instance).orElseThrow(() -> new IllegalStateException("Nothing to go back to"));
+        Map<String, Object> variables = new HashMap<>(instance.getVariables() != null ? instance.getVariables() : Map.of());
+        List<Object> released = new ArrayList<>();
+        List<String> undone = new ArrayList<>(frame.added());
+        undone.addAll(frame.previous().keySet());
+        for (String key : undone) {
+            Object current = variables.get(key);
+            if (VariableBlobStore.isReference(current) && !current.equals(frame.previous().get(key))) {
+                released.add(current);
+            }
+        }
+        frame.added().forEach(variables::remove);
+        variables.putAll(frame.previous());
+        instance.setVariables(variables);
+
+        List<HistoryFrame> stack = instance.getHistory();
+        instance.setHistory(List.copyOf(stack.subList(0, stack.size() - 1)));
+        return released;
+    }
+}
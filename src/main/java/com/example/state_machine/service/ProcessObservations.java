@@ -0,0 +1,49 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessInstance;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+/**
+ * Names and attributes of the observations (trace spans + timers) around the stages of handling a
+ * process. Type, state and event are low-cardinality (timer tags), the process id is a span attribute only.
+ * With no tracing or metrics handler registered the observations are no-ops.
+ */
+public final class ProcessObservations {
+
+    /** {@code POST /process/{id}/advance}: plan, preconditions, state machine, save. */
+    public static final String ADVANCE = "process.advance";
+    /** {@code POST /process/{id}/event}. */
+    public static final String EVENT = "process.event";
+    public static final String PRECONDITIONS = "process.preconditions";
+    /** Reset, hydrate, start and fire the flow's state machine. */
+    public static final String STATE_MACHINE = "process.state-machine";
+    public static final String STORE = "process.store";
+
+    public static final String PROCESS_ID = "process.id";
+    public static final String PROCESS_TYPE = "process.type";
+    public static final String PROCESS_STATE = "process.state";
+    public static final String PROCESS_EVENT = "process.event";
+
+    private ProcessObservations() {
+    }
+
+    /**
+     * @param event {@code null} when not known yet; set it later with {@link #event}
+     */
+    public static Observation create(String name, ObservationRegistry registry, ProcessInstance instance, ProcessEvent event) {
+        Observation observation = Observation.createNotStarted(name, registry);
+        if (observation.isNoop()) {
+            return observation;
+        }
+        return event(observation
+                .lowCardinalityKeyValue(PROCESS_TYPE, String.valueOf(instance.getType()))
+                .lowCardinalityKeyValue(PROCESS_STATE, String.valueOf(instance.getState()))
+                .highCardinalityKeyValue(PROCESS_ID, String.valueOf(instance.getId())), event);
+    }
+
+    public static Observation event(Observation observation, ProcessEvent event) {
+        return observation.lowCardinalityKeyValue(PROCESS_EVENT, event != null ? event.name() : "none");
+    }
+}
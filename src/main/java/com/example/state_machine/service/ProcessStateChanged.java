@@ -0,0 +1,22 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+
+import java.time.Instant;
+
+/**
+ * Application event: a process' new state has been saved. Published by {@link FlowService} on the node
+ * that made the transition, or by the Mongo change stream for transitions made on any node
+ * ({@code fromChangeStream}).
+ */
+public record ProcessStateChanged(String id, ProcessState state, Instant updatedAt, boolean fromChangeStream) {
+
+    public static ProcessStateChanged local(ProcessInstance instance) {
+        return new ProcessStateChanged(instance.getId(), instance.getState(), instance.getUpdatedAt(), false);
+    }
+
+    public static ProcessStateChanged changeStream(ProcessInstance instance) {
+        return new ProcessStateChanged(instance.getId(), instance.getState(), instance.getUpdatedAt(), true);
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.ProcessStore;
+import com.example.state_machine.repository.StatsStore;
+import com.example.state_machine.repository.StatsStore.StateKey;
+import com.example.state_machine.repository.StatsStore.TransitionKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State occupancy and hourly transition counters, maintained as processes start and move instead of
+ * counted from the processes. Changes are summed in memory per counter and written to the
+ * {@link StatsStore} every {@code process.stats.flush-interval}, so the counters lag by at most that
+ * much and a burst of transitions costs one write per counter. The pending sums are not persisted with
+ * the transitions: a node that dies between flushes loses them, and the counters drift until
+ * {@linkplain #rebuild recounted} ({@code POST /actuator/stats}).
+ */
+@Service
+@Slf4j
+public class ProcessStats implements DisposableBean {
+
+    /**
+     * Counters of one process type. {@code entered} sums the transitions into each state within the window
+     * (processes started in a state included); {@code step} is set when a step was asked for.
+     */
+    public record Funnel(ProcessType type, Instant since, Instant until,
+                         Map<ProcessState, Long> occupancy, Map<ProcessState, Long> entered,
+                         List<Transition> transitions, @Nullable Step step) { }
+
+    /** {@code from} is {@code null} for processes started in {@code to}. */
+    public record Transition(@Nullable ProcessState from, ProcessState to, long count) { }
+
+    /** Of the processes that entered {@code from} in the window, how many went on to {@code to}. */
+    public record Step(ProcessState from, ProcessState to, long entered, long advanced, long dropped) { }
+
+    private final StatsStore stats;
+    private final ProcessStore processes;
+    private final Clock clock;
+    private final Map<StateKey, Long> occupancy = new ConcurrentHashMap<>();
+    private final Map<TransitionKey, Long> transitions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    @Autowired
+    public ProcessStats(StatsStore stats, ProcessStore processes,
+                        @Value("${process.stats.flush-interval:5s}") Duration flushInterval) {
+        this(stats, processes, Clock.systemUTC(), flushInterval);
+    }
+
+    ProcessStats(StatsStore stats, ProcessStore processes, Clock clock, Duration flushInterval) {
+        this.stats = stats;
+        this.processes = processes;
+        this.clock = clock;
+        if (flushInterval.isZero()) {
+            this.flusher = null; // flushed only on demand
+            return;
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "process-stats-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void started(ProcessType type, ProcessState state) {
+        occupancy.merge(new StateKey(type, state), 1L, Long::sum);
+        transitions.merge(new TransitionKey(type, null, state, bucket(clock.instant())), 1L, Long::sum);
+    }
+
+    public void transitioned(ProcessType type, ProcessState from, ProcessState to) {
+        if (from == to) {
+            return;
+        }
+        occupancy.merge(new StateKey(type, from), -1L, Long::sum);
+        occupancy.merge(new StateKey(type, to), 1L, Long::sum);
+        transitions.merge(new TransitionKey(type, from, to, bucket(clock.instant())), 1L, Long::sum);
+    }
+
+    /**
+     * Writes the changes summed since the last flush. On failure they are kept for the next one.
+     */
+    public synchronized void flush() {
+        Map<StateKey, Long> occupancyDeltas = drain(occupancy);
+        Map<TransitionKey, Long> transitionDeltas = drain(transitions);
+        if (occupancyDeltas.isEmpty() && transitionDeltas.isEmpty()) {
+            return;
+        }
+        try {
+            stats.increment(occupancyDeltas, transitionDeltas);
+        } catch (RuntimeException e) {
+            occupancyDeltas.forEach((key, delta) -> occupancy.merge(key, delta, Long::sum));
+            transitionDeltas.forEach((key, delta) -> transitions.merge(key, delta, Long::sum));
+            throw e;
+        }
+    }
+
+    /**
+     * Counts from the stored counters only; the window is widened to whole hours.
+     *
+     * @param stepFrom with {@code stepTo}, also reports how many processes entering {@code stepFrom}
+     *                 went on to {@code stepTo}
+     */
+    public Funnel funnel(ProcessType type, Instant since, Instant until,
+                         @Nullable ProcessState stepFrom, @Nullable ProcessState stepTo) {
+        Assert.notNull(type, "type must not be null");
+        Assert.isTrue(since.isBefore(until), "since must be before until");
+        Assert.isTrue((stepFrom == null) == (stepTo == null), "from and to must be given together");
+        Instant first = bucket(since);
+        Instant end = bucket(until.minusNanos(1)).plus(1, ChronoUnit.HOURS);
+
+        Map<String, Transition> byEdge = new HashMap<>();
+        stats.transitions(type, first, end).forEach((key, count) -> byEdge.merge(key.from() + ">" + key.to(),
+                new Transition(key.from(), key.to(), count),
+                (a, b) -> new Transition(a.from(), a.to(), a.count() + b.count())));
+        List<Transition> summed = new ArrayList<>(byEdge.values());
+        summed.sort(Comparator.comparing(Transition::count).reversed());
+
+        Map<ProcessState, Long> entered = new EnumMap<>(ProcessState.class);
+        summed.forEach(t -> entered.merge(t.to(), t.count(), Long::sum));
+        Step step = null;
+        if (stepFrom != null) {
+            long into = entered.getOrDefault(stepFrom, 0L);
+            long advanced = summed.stream()
+                    .filter(t -> t.from() == stepFrom && t.to() == stepTo)
+                    .mapToLong(Transition::count)
+                    .sum();
+            step = new Step(stepFrom, stepTo, into, advanced, Math.max(0, into - advanced));
+        }
+        return new Funnel(type, first, end, stats.occupancy(type), entered, summed, step);
+    }
+
+    /**
+     * Recounts the occupancy counters from the processes, archived ones included. Transition counters
+     * are left alone: past transitions are not recorded anywhere else. Transitions flushed while the
+     * count runs may be counted twice or missed, so run it when traffic is low.
+     *
+     * @return the new occupancy counters
+     */
+    @Async
+    public CompletableFuture<Map<ProcessType, Map<ProcessState, Long>>> rebuildAsync() {
+        return CompletableFuture.completedFuture(rebuild());
+    }
+
+    public synchronized Map<ProcessType, Map<ProcessState, Long>> rebuild() {
+        flush();
+        Map<ProcessType, Map<ProcessState, Long>> counts = processes.countByState();
+        Map<StateKey, Long> occupancy = new HashMap<>();
+        counts.forEach((type, states) -> states.forEach((state, count) -> occupancy.put(new StateKey(type, state), count)));
+        stats.replaceOccupancy(occupancy);
+        log.info("Rebuilt occupancy counters: {}", counts);
+        return counts;
+    }
+
+    private static <K> Map<K, Long> drain(Map<K, Long> pending) {
+        Map<K, Long> deltas = new HashMap<>();
+        for (K key : List.copyOf(pending.keySet())) {
+            Long delta = pending.remove(key);
+            if (delta != null && delta != 0) {
+                deltas.put(key, delta);
+            }
+        }
+        return deltas;
+    }
+
+    private static Instant bucket(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Flushing process counters failed, retrying: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flushQuietly();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.flow.VariableSchema;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Keeps large {@code BLOB} variables out of {@code process_instances}. Values longer than
+ * {@code variables.blob.threshold} characters are written to GridFS and replaced in the process by a
+ * reference {@code {"blobId": "...", "size": <bytes>}}; readers only touch GridFS when they ask for
+ * the content ({@link #open}). Without GridFS (the {@code memory} profile) blobs stay inline.
+ */
+@Component
+@Slf4j
+public class VariableBlobStore {
+
+    public static final String BLOB_ID = "blobId";
+    public static final String SIZE = "size";
+
+    private final GridFsTemplate gridFs;
+    private final int threshold;
+
+    public VariableBlobStore(@Nullable GridFsTemplate gridFs, @Value("${variables.blob.threshold:16384}") int threshold) {
+        this.gridFs = gridFs;
+        this.threshold = threshold;
+    }
+
+    public static boolean isReference(Object value) {
+        return value instanceof Map<?, ?> m && m.get(BLOB_ID) instanceof String;
+    }
+
+    /**
+     * Replaces, in place, every {@code BLOB} value above the threshold by a reference to its GridFS copy.
+     */
+    public void offload(VariableSchema schema, Map<String, Object> variables) {
+        if (gridFs == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> e : variables.entrySet()) {
+            if (schema.isBlob(e.getKey()) && e.getValue() instanceof String s && s.length() > threshold) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                ObjectId id = gridFs.store(new ByteArrayInputStream(bytes), e.getKey(), "text/plain;charset=UTF-8",
+                        new Document("variable", e.getKey()));
+                e.setValue(Map.of(BLOB_ID, id.toHexString(), SIZE, (long) bytes.length));
+            }
+        }
+    }
+
+    /**
+     * @return references held by {@code previous} for keys that {@code updates} overwrites.
+     */
+    public static List<Object> replacedReferences(Map<String, Object> previous, Collection<String> updatedKeys) {
+        List<Object> replaced = new ArrayList<>();
+        if (previous != null) {
+            for (String key : updatedKeys) {
+                Object old = previous.get(key);
+                if (isReference(old)) {
+                    replaced.add(old);
+                }
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Streams the content behind a reference; the resource is read chunk by chunk, never buffered whole.
+     */
+    public GridFsResource open(Object reference) {
+        GridFSFile file = gridFs.findOne(query(where("_id").is(idOf(reference))));
+        if (file == null) {
+            throw new NoSuchElementException("Blob not found: " + idOf(reference));
+        }
+        return gridFs.getResource(file);
+    }
+
+    public void delete(Collection<Object> references) {
+        for (Object reference : references) {
+            try {
+                gridFs.delete(query(where("_id").is(idOf(reference))));
+            } catch (RuntimeException ex) {
+                // an orphaned file only costs storage; the process update already succeeded
+                log.warn("Could not delete blob {}: {}", idOf(reference), ex.getMessage());
+            }
+        }
+    }
+
+    private static ObjectId idOf(Object reference) {
+        return new ObjectId((String) ((Map<?, ?>) reference).get(BLOB_ID));
+    }
+}
@@ -1,9 +1,10 @@
 package com.example.state_machine.service.advance;
 
+import com.example.state_machine.flow.FlowRegistry;
 import com.example.state_machine.model.ProcessEvent;
 import com.example.state_machine.model.ProcessInstance;
-import com.example.state_machine.model.ProcessState;
-import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.service.ProcessObservations;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -14,12 +15,13 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PreconditionRegistry {
 
-    private final List<Precondition> checks; // Spring injects all @Component Precondition beans
+    private final FlowRegistry flows; // bindings come from the flow definitions
+    private final ObservationRegistry observations;
 
     public List<PreconditionError> validateAll(ProcessInstance pi, ProcessEvent e, Map<String, Object> payload) {
-        return checks.stream()
-                .filter(p -> p.supports(pi.getType(), pi.getState(), e))
-                .flatMap(p -> p.validate(pi, payload).stream())
-                .toList();
+        return ProcessObservations.create(ProcessObservations.PRECONDITIONS, observations, pi, e).observe(() ->
+                flows.flow(pi.getType(), pi.getFlowVersion()).preconditions(pi.getState(), e).stream()
+                        .flatMap(p -> p.validate(pi, payload).stream())
+                        .toList());
     }
 }
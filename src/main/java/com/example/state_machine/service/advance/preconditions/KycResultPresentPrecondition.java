@@ -33,7 +33,7 @@ public class KycResultPresentPrecondition implements Precondition {
             return errors;
         }
 
-        if (!"APPROVED".equalsIgnoreCase(String.valueOf(status))) {
+        if (!(status instanceof String s) || !"APPROVED".equalsIgnoreCase(s)) {
             errors.add(new PreconditionError("KYC_NOT_APPROVED", "KYC status must be APPROVED"));
         }
 
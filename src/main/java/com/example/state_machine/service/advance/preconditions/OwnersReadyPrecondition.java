@@ -20,6 +20,10 @@ public class OwnersReadyPrecondition implements Precondition {
     public List<PreconditionError> validate(ProcessInstance pi, Map<String, Object> payload) {
         List<PreconditionError> errors = new ArrayList<>();
 
+        if (pi.getPendingChildren() != null && pi.getPendingChildren() > 0) {
+            errors.add(new PreconditionError("OWNERS_PENDING", pi.getPendingChildren() + " owner(s) still in progress"));
+        }
+
         Object totalOwners = firstNotNull(
                 payload.get("totalOwners"),
                 pi.getVariables() != null ? pi.getVariables().get("totalOwners") : null
@@ -36,12 +40,11 @@ public class OwnersReadyPrecondition implements Precondition {
             errors.add(new PreconditionError("OWNERS_SHARE_REQUIRED", "Total share is required"));
         }
 
-        try {
-            if (totalShare != null && Integer.parseInt(String.valueOf(totalShare)) != 100) {
-                errors.add(new PreconditionError("INVALID_TOTAL_SHARE", "Total share must be 100"));
-            }
-        } catch (NumberFormatException ignored) {
+        // totalShare is declared INT in the MULTI_OWNER schema, so it was converted when written
+        if (totalShare != null && !(totalShare instanceof Integer)) {
             errors.add(new PreconditionError("INVALID_TOTAL_SHARE", "Total share must be numeric 100"));
+        } else if (totalShare != null && (Integer) totalShare != 100) {
+            errors.add(new PreconditionError("INVALID_TOTAL_SHARE", "Total share must be 100"));
         }
 
         return errors;
@@ -0,0 +1,43 @@
+package com.example.state_machine;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.ProcessStore;
+import com.example.state_machine.repository.memory.InMemoryProcessStore;
+import com.example.state_machine.service.FlowService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "flows.warmup.iterations=0")
+@ActiveProfiles("memory")
+class MemoryProfileApplicationTests {
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private ProcessStore store;
+
+	@Autowired
+	private FlowService flowService;
+
+	@Test
+	void runsWithoutMongo() {
+		assertInstanceOf(InMemoryProcessStore.class, store);
+		assertTrue(context.getBeansOfType(MongoTemplate.class).isEmpty());
+
+		ProcessInstance started = flowService.startProcess("c1", ProcessType.SINGLE_OWNER, Map.of());
+
+		assertEquals(ProcessState.STARTED, flowService.getProcess(started.getId()).getState());
+	}
+
+}
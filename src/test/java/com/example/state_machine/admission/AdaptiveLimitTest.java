@@ -0,0 +1,61 @@
+package com.example.state_machine.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimitTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    void tryAcquire_RejectsAtTheLimit() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 1, 10);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.release(10 * MS);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void limit_GrowsWhileLatencyIsSteadyAndShrinksWhenItClimbs() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 4, 200);
+
+        for (int i = 0; i < 200; i++) {
+            saturate(limit, 10 * MS);
+        }
+        int grown = limit.limit();
+        assertTrue(grown > 20, "grown to " + grown);
+
+        for (int i = 0; i < 20; i++) {
+            saturate(limit, 100 * MS);
+        }
+        assertTrue(limit.limit() < grown / 2, "shrunk to " + limit.limit());
+    }
+
+    @Test
+    void limit_StaysPutWhileMostlyIdle() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 4, 200);
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(i % 2 == 0 ? 10 * MS : 500 * MS);
+        }
+
+        assertEquals(20, limit.limit());
+    }
+
+    /** Fills the limit, then completes every request with the given latency. */
+    private static void saturate(AdaptiveLimit limit, long rttNanos) {
+        int admitted = 0;
+        while (limit.tryAcquire()) {
+            admitted++;
+        }
+        for (int i = 0; i < admitted; i++) {
+            limit.release(rttNanos);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.state_machine.admission;
+
+import com.example.state_machine.admission.AdmissionControlFilter.EndpointClass;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final AdmissionControlFilter filter = new AdmissionControlFilter(meters, 1, 1, 10, 2);
+
+    @Test
+    void classify_MapsProcessControllerEndpoints() {
+        assertEquals(EndpointClass.READ, classify("GET", "/process/123"));
+        assertEquals(EndpointClass.READ, classify("GET", "/process/123/variables/idScan"));
+        assertEquals(EndpointClass.WRITE, classify("POST", "/process/123/event"));
+        assertEquals(EndpointClass.WRITE, classify("POST", "/process/123/async-result"));
+        assertEquals(EndpointClass.WRITE, classify("POST", "/process/123/owners"));
+        assertEquals(EndpointClass.WRITE, classify("POST", "/process/start"));
+        assertEquals(EndpointClass.WRITE, classify("POST", "/process/conversion/start"));
+        assertEquals(EndpointClass.WRITE, classify("PATCH", "/process/123/variables"));
+        assertEquals(EndpointClass.ADVANCE, classify("POST", "/process/123/advance"));
+        assertNull(classify("GET", "/process/123/stream"));
+        assertNull(classify("POST", "/process/bulk/start"));
+        assertNull(classify("GET", "/actuator/health"));
+    }
+
+    @Test
+    void overLimitRequestsAreShedWith503AndCounted() throws Exception {
+        assertTrue(filter.limit(EndpointClass.WRITE).tryAcquire()); // a write in progress fills the limit of 1
+
+        MockHttpServletResponse rejected = perform("POST", "/process/123/event");
+        MockHttpServletResponse otherClass = perform("GET", "/process/123");
+
+        assertEquals(503, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+        assertEquals(200, otherClass.getStatus(), "each endpoint class has its own limit");
+        assertEquals(1.0, meters.get("process.admission.rejected").tag("endpoint", "write").counter().count());
+        assertEquals(0.0, meters.get("process.admission.rejected").tag("endpoint", "read").counter().count());
+        assertEquals(1.0, meters.get("process.admission.inflight").tag("endpoint", "write").gauge().value());
+        assertEquals(0.0, meters.get("process.admission.inflight").tag("endpoint", "read").gauge().value());
+    }
+
+    private MockHttpServletResponse perform(String method, String uri) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, uri), response, new MockFilterChain());
+        return response;
+    }
+
+    private static EndpointClass classify(String method, String uri) {
+        return AdmissionControlFilter.classify(new MockHttpServletRequest(method, uri));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.state_machine.bench;
+
+import com.example.state_machine.config.StateMachineConfig;
+import com.example.state_machine.flow.CompiledFlow;
+import com.example.state_machine.flow.FlowAnalyzer;
+import com.example.state_machine.flow.FlowCatalog;
+import com.example.state_machine.flow.FlowCompiler;
+import com.example.state_machine.flow.FlowDefinitionLoader;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.service.advance.Precondition;
+import com.example.state_machine.service.advance.preconditions.KycResultPresentPrecondition;
+import com.example.state_machine.service.advance.preconditions.MinorIdLinkedPrecondition;
+import com.example.state_machine.service.advance.preconditions.OwnersReadyPrecondition;
+import com.example.state_machine.service.advance.preconditions.ParentConsentPresentPrecondition;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.statemachine.ExtendedState;
+import org.springframework.statemachine.support.DefaultExtendedState;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of preparing the extended state for one event, by size of the process variable map:
+ * {@code fullCopy} is the former behaviour (every variable plus the request data),
+ * {@code lean} is {@link CompiledFlow#hydrate}. Run with the GC profiler to compare allocations:
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main ExtendedStateHydrationBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtendedStateHydrationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int variableCount;
+
+    private CompiledFlow flow;
+    private Map<String, Object> variables;
+    private Map<String, Object> data;
+
+    @Setup
+    public void setUp() {
+        Map<String, Precondition> preconditions = Map.of(
+                "kycResultPresentPrecondition", new KycResultPresentPrecondition(),
+                "ownersReadyPrecondition", new OwnersReadyPrecondition(),
+                "parentConsentPresentPrecondition", new ParentConsentPresentPrecondition(),
+                "minorIdLinkedPrecondition", new MinorIdLinkedPrecondition());
+        FlowCompiler compiler = new FlowCompiler(new StateMachineConfig(),
+                new FlowAnalyzer(preconditions, Map.of()), preconditions, Map.of());
+        FlowCatalog catalog = compiler.compile(new FlowDefinitionLoader("classpath*:flows/*.yml").loadAll());
+        flow = catalog.flow(ProcessType.MULTI_OWNER);
+
+        variables = new HashMap<>();
+        for (int i = 0; i < variableCount; i++) {
+            variables.put("var" + i, "value-" + i);
+        }
+        data = Map.of("totalOwners", 2, "totalShare", 100);
+    }
+
+    @Benchmark
+    public ExtendedState fullCopy() {
+        ExtendedState ext = new DefaultExtendedState();
+        ext.getVariables().put(StateMachineConfig.EXT_TYPE, ProcessType.MULTI_OWNER);
+        ext.getVariables().putAll(variables);
+        ext.getVariables().putAll(data);
+        return ext;
+    }
+
+    @Benchmark
+    public ExtendedState lean() {
+        ExtendedState ext = new DefaultExtendedState();
+        flow.hydrate(ext, variables, data);
+        return ext;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ExtendedStateHydrationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
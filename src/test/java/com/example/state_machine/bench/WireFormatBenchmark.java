@@ -0,0 +1,97 @@
+package com.example.state_machine.bench;
+
+import com.example.state_machine.controller.dto.EventRequest;
+import com.example.state_machine.controller.dto.ProcessInstanceDto;
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode throughput of the {@code /event} request and the process response in JSON, CBOR and Smile.
+ * Payload sizes are printed once per format at setup.
+ * <p>
+ * Run from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.state_machine.bench.WireFormatBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private EventRequest request;
+    private ProcessInstanceDto response;
+    private byte[] requestBytes;
+    private byte[] responseBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        mapper = switch (format) {
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            default -> new ObjectMapper();
+        };
+        mapper.registerModule(new JavaTimeModule());
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("verificationId", "kyc-7f3e2a91");
+        data.put("status", "APPROVED");
+        data.put("riskLevel", "LOW");
+        data.put("score", 742);
+        data.put("totalShare", 100);
+        data.put("owners", List.of(
+                Map.of("id", "owner-1", "share", 60, "kycApproved", true),
+                Map.of("id", "owner-2", "share", 40, "kycApproved", true)));
+        request = EventRequest.builder().event(ProcessEvent.KYC_VERIFIED).data(data).build();
+        response = ProcessInstanceDto.builder()
+                .id("66b2f1c4e4b0a1d2c3e4f5a6")
+                .clientId("client-001")
+                .state(ProcessState.WAITING_FOR_BIOMETRY)
+                .screenCode(ProcessState.WAITING_FOR_BIOMETRY.getScreenCode())
+                .variables(data)
+                .createdAt(Instant.parse("2025-01-01T10:00:00Z"))
+                .updatedAt(Instant.parse("2025-01-01T10:05:00Z"))
+                .build();
+
+        requestBytes = mapper.writeValueAsBytes(request);
+        responseBytes = mapper.writeValueAsBytes(response);
+        System.out.printf("%n%s: request %d bytes, response %d bytes%n", format, requestBytes.length, responseBytes.length);
+    }
+
+    @Benchmark
+    public byte[] encodeResponse() throws Exception {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public EventRequest decodeRequest() throws Exception {
+        return mapper.readValue(requestBytes, EventRequest.class);
+    }
+
+    @Benchmark
+    public ProcessInstanceDto decodeResponse() throws Exception {
+        return mapper.readValue(responseBytes, ProcessInstanceDto.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(WireFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+}
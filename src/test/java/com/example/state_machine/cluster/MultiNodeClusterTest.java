@@ -0,0 +1,223 @@
+package com.example.state_machine.cluster;
+
+import com.example.state_machine.StateMachineBankWorkflowApplication;
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.ProcessStore;
+import com.example.state_machine.repository.memory.InMemoryProcessStore;
+import com.example.state_machine.service.FlowMigrationService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.support.AutowireCandidateQualifier;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Several app instances on one machine, one port each. They share the lease table and, standing in for
+ * a shared MongoDB, the process store underneath each node's partition cache.
+ */
+class MultiNodeClusterTest {
+
+    private static final int PARTITIONS = 16;
+
+    private final LeaseTable leases = new InMemoryLeaseTable();
+    private final InMemoryProcessStore store = newStore();
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void requestsAreServedByThePartitionOwnerAsNodesJoinAndLeave() throws Exception {
+        ConfigurableApplicationContext a = start("node-a");
+        ConfigurableApplicationContext b = start("node-b");
+        ConfigurableApplicationContext c = start("node-c");
+        awaitBalanced();
+
+        // a journey driven through one node: every process request ends up at its owner
+        HttpResponse<String> started = post(a, "/process/start",
+                "{\"clientId\":\"c-1\",\"type\":\"SINGLE_OWNER\",\"initialData\":{}}");
+        assertEquals(200, started.statusCode(), started.body());
+        String id = objectMapper.readTree(started.body()).path("id").asText();
+        String owner = ownerOf(id);
+        for (ConfigurableApplicationContext node : List.of(a, b, c)) {
+            HttpResponse<String> response = get(node, "/process/" + id + "?fields=state");
+            assertEquals(200, response.statusCode(), response.body());
+            assertEquals(owner, response.headers().firstValue(PartitionForwardingFilter.SERVED_BY).orElseThrow());
+        }
+        ConfigurableApplicationContext notOwner = List.of(a, b, c).stream()
+                .filter(n -> !manager(n).nodeId().equals(owner)).findFirst().orElseThrow();
+        HttpResponse<String> event = post(notOwner, "/process/" + id + "/event", "{\"event\":\"START_FLOW\",\"data\":{}}");
+        assertEquals(200, event.statusCode(), event.body());
+        assertEquals(owner, event.headers().firstValue(PartitionForwardingFilter.SERVED_BY).orElseThrow());
+        JsonNode body = objectMapper.readTree(event.body());
+        assertEquals("KYC_IN_PROGRESS", body.path("state").asText());
+
+        HttpResponse<String> stream = get(notOwner, "/process/" + id + "/stream");
+        assertEquals(307, stream.statusCode());
+        assertTrue(stream.headers().firstValue("Location").orElseThrow().endsWith("/process/" + id + "/stream"));
+
+        // the owner leaves: its partitions move to the survivors
+        ConfigurableApplicationContext owning = List.of(a, b, c).stream()
+                .filter(n -> manager(n).nodeId().equals(owner)).findFirst().orElseThrow();
+        nodes.remove(owning);
+        owning.close();
+        awaitBalanced();
+        String newOwner = ownerOf(id);
+        assertNotEquals(owner, newOwner);
+        awaitRoutedToOwner(id);
+        HttpResponse<String> afterLeave = get(nodes.get(0), "/process/" + id);
+        assertEquals("KYC_IN_PROGRESS", objectMapper.readTree(afterLeave.body()).path("state").asText());
+        assertEquals(newOwner, afterLeave.headers().firstValue(PartitionForwardingFilter.SERVED_BY).orElseThrow());
+
+        // a node joins: it takes over only what it wins, the rest stays put
+        Set<Integer> before = new HashSet<>(manager(nodes.get(0)).ownedPartitions());
+        ConfigurableApplicationContext d = start("node-d");
+        awaitBalanced();
+        assertFalse(manager(d).ownedPartitions().isEmpty());
+        Set<Integer> after = manager(nodes.get(0)).ownedPartitions();
+        assertTrue(before.containsAll(after), "partitions only move to the new node");
+    }
+
+    @Test
+    void aMigrationOnAnotherNodeReachesTheOwnersCache() throws Exception {
+        ConfigurableApplicationContext a = start("node-a");
+        ConfigurableApplicationContext b = start("node-b");
+        awaitBalanced();
+
+        HttpResponse<String> started = post(a, "/process/start",
+                "{\"clientId\":\"c-2\",\"type\":\"SINGLE_OWNER\",\"initialData\":{}}");
+        String id = objectMapper.readTree(started.body()).path("id").asText();
+        ConfigurableApplicationContext owner = manager(a).owns(id) ? a : b;
+        ConfigurableApplicationContext other = owner == a ? b : a;
+        assertEquals(200, post(owner, "/process/" + id + "/event", "{\"event\":\"START_FLOW\",\"data\":{}}").statusCode());
+        assertEquals(2, store.findById(id).orElseThrow().getFlowVersion(), "started on the newest version, now cached by its owner");
+
+        other.getBean(FlowMigrationService.class).migrate(ProcessType.SINGLE_OWNER, 2, 1);
+        Thread.sleep(500); // a few heartbeats: the owner sees the bumped partition epochs
+
+        HttpResponse<String> event = post(owner, "/process/" + id + "/event", "{\"event\":\"KYC_VERIFIED\",\"data\":{}}");
+        assertEquals(200, event.statusCode(), event.body());
+        ProcessInstance stored = store.findById(id).orElseThrow();
+        assertEquals(1, stored.getFlowVersion(), "the owner did not write its stale copy back");
+        assertEquals(ProcessState.WAITING_FOR_BIOMETRY, stored.getState());
+    }
+
+    private ConfigurableApplicationContext start(String nodeId) {
+        ConfigurableApplicationContext node = new SpringApplicationBuilder(StateMachineBankWorkflowApplication.class)
+                .profiles("memory")
+                .initializers(ctx -> {
+                    GenericApplicationContext context = (GenericApplicationContext) ctx;
+                    context.registerBean("sharedLeaseTable", LeaseTable.class, () -> leases, bd -> bd.setPrimary(true));
+                    // once the components are scanned, put the shared store in place of the node's own, below its cache
+                    context.registerBean("sharedProcessStore", BeanDefinitionRegistryPostProcessor.class, () -> registry -> {
+                        registry.removeBeanDefinition("inMemoryProcessStore");
+                        RootBeanDefinition shared = new RootBeanDefinition(InMemoryProcessStore.class, () -> store);
+                        shared.addQualifier(new AutowireCandidateQualifier(Qualifier.class, ProcessStore.BACKEND));
+                        registry.registerBeanDefinition("inMemoryProcessStore", shared);
+                    });
+                })
+                .run("--server.port=0",
+                        "--flows.warmup.iterations=0",
+                        "--flows.location=classpath*:flows/*.yml,classpath*:cluster-flows/*.yml",
+                        "--process.cluster.enabled=true",
+                        "--process.cluster.partitions=" + PARTITIONS,
+                        "--process.cluster.heartbeat=100ms",
+                        "--process.cluster.lease-ttl=1s",
+                        "--process.cluster.node-id=" + nodeId,
+                        "--process.cluster.advertised-host=localhost");
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * Waits until every partition has exactly one owner among the running nodes.
+     */
+    private void awaitBalanced() throws InterruptedException {
+        await(() -> {
+            List<Set<Integer>> owned = nodes.stream().map(n -> manager(n).ownedPartitions()).toList();
+            Set<Integer> union = owned.stream().flatMap(Set::stream).collect(Collectors.toSet());
+            return union.size() == PARTITIONS && owned.stream().mapToInt(Set::size).sum() == PARTITIONS
+                    && owned.stream().noneMatch(Set::isEmpty);
+        });
+    }
+
+    /**
+     * Ownership settles a heartbeat before every node has read the new holders; until then a node serves a
+     * partition it sees between owners itself.
+     */
+    private void awaitRoutedToOwner(String processId) throws InterruptedException {
+        String owner = ownerOf(processId);
+        await(() -> nodes.stream().map(MultiNodeClusterTest::manager).allMatch(m -> m.owns(processId)
+                || m.remoteOwner(processId).map(LeaseTable.Member::nodeId).filter(owner::equals).isPresent()));
+    }
+
+    private String ownerOf(String processId) {
+        return nodes.stream().map(MultiNodeClusterTest::manager)
+                .filter(m -> m.owns(processId))
+                .map(PartitionManager::nodeId)
+                .findFirst().orElseThrow();
+    }
+
+    private static PartitionManager manager(ConfigurableApplicationContext node) {
+        return node.getBean(PartitionManager.class);
+    }
+
+    private HttpResponse<String> get(ConfigurableApplicationContext node, String path) throws Exception {
+        return http.send(HttpRequest.newBuilder(uri(node, path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(ConfigurableApplicationContext node, String path, String json) throws Exception {
+        return http.send(HttpRequest.newBuilder(uri(node, path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(ConfigurableApplicationContext node, String path) {
+        return URI.create("http://localhost:" + node.getEnvironment().getProperty("local.server.port") + path);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(50);
+        }
+    }
+
+    private static InMemoryProcessStore newStore() {
+        try {
+            return new InMemoryProcessStore(new ObjectMapper().findAndRegisterModules(), "", DataSize.ofMegabytes(1),
+                    Duration.ofMinutes(5));
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.state_machine.cluster;
+
+import com.example.state_machine.cluster.LeaseTable.Member;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionForwardingFilterTest {
+
+    @Mock
+    private PartitionManager partitions;
+
+    @Test
+    void forwardedHeaderFromOutsideTheCluster_IsIgnored() throws Exception {
+        when(partitions.isPeer("b", "203.0.113.7")).thenReturn(false);
+        when(partitions.remoteOwner("p1")).thenReturn(Optional.of(new Member("b", "http://10.0.0.2:8080")));
+        MockHttpServletRequest request = streamRequest("203.0.113.7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter().doFilter(request, response, chain);
+
+        assertEquals(307, response.getStatus());
+        assertEquals("http://10.0.0.2:8080/process/p1/stream", response.getHeader("Location"));
+        assertNull(chain.getRequest(), "not served by a node that does not own the process");
+    }
+
+    @Test
+    void forwardedHeaderFromAMember_IsServedWhereItLands() throws Exception {
+        when(partitions.isPeer("b", "10.0.0.2")).thenReturn(true);
+        when(partitions.nodeId()).thenReturn("a");
+        MockHttpServletRequest request = streamRequest("10.0.0.2");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter().doFilter(request, response, chain);
+
+        assertSame(request, chain.getRequest());
+        assertEquals("a", response.getHeader(PartitionForwardingFilter.SERVED_BY));
+    }
+
+    private PartitionForwardingFilter filter() {
+        return new PartitionForwardingFilter(partitions, RestClient.builder(), Duration.ofSeconds(1));
+    }
+
+    private static MockHttpServletRequest streamRequest(String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/process/p1/stream");
+        request.setRemoteAddr(remoteAddress);
+        request.addHeader(PartitionForwardingFilter.FORWARDED_BY, "b");
+        return request;
+    }
+}
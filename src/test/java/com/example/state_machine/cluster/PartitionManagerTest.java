@@ -0,0 +1,179 @@
+package com.example.state_machine.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionManagerTest {
+
+    private static final int PARTITIONS = 32;
+    private static final Duration TTL = Duration.ofSeconds(10);
+
+    private final InMemoryLeaseTable leases = new InMemoryLeaseTable();
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void singleNode_OwnsEveryPartition() {
+        PartitionManager a = node("a", new ArrayList<>());
+
+        assertEquals(all(), a.ownedPartitions());
+        assertTrue(a.owns("any-process"));
+        assertTrue(a.remoteOwner("any-process").isEmpty());
+        assertTrue(a.isLeader());
+    }
+
+    @Test
+    void partitionOf_PutsChildrenOnTheirParentsPartition() {
+        PartitionManager a = node("a", new ArrayList<>());
+
+        for (int i = 0; i < 100; i++) {
+            String parent = "p" + i;
+            assertEquals(a.partitionOf(parent), a.partitionOf(parent + "-child" + i));
+        }
+    }
+
+    @Test
+    void join_HandsOverOnlyThePartitionsTheNewNodeWins() {
+        List<Object> releasedByA = new ArrayList<>();
+        PartitionManager a = node("a", releasedByA);
+        PartitionManager b = node("b", new ArrayList<>());
+        assertTrue(b.ownedPartitions().isEmpty(), "b waits until a hands partitions over");
+
+        a.rebalance();
+        b.rebalance();
+
+        Set<Integer> union = new HashSet<>(a.ownedPartitions());
+        union.addAll(b.ownedPartitions());
+        assertEquals(all(), union);
+        assertTrue(a.ownedPartitions().stream().noneMatch(b.ownedPartitions()::contains));
+        assertFalse(b.ownedPartitions().isEmpty());
+        assertEquals(b.ownedPartitions(), releasedByA.stream()
+                .map(e -> ((PartitionReleased) e).partition()).collect(Collectors.toSet()));
+
+        String onB = IntStream.range(0, 1000).mapToObj(i -> "p" + i)
+                .filter(id -> b.ownedPartitions().contains(b.partitionOf(id)))
+                .findFirst().orElseThrow();
+        a.rebalance(); // a learns the new owner with its next heartbeat
+        assertEquals("http://b", a.remoteOwner(onB).orElseThrow().url());
+        assertTrue(b.remoteOwner(onB).isEmpty());
+        assertNotEquals(a.isLeader(), b.isLeader(), "exactly one node holds partition 0");
+    }
+
+    @Test
+    void crashedNode_PartitionsAreTakenOverOnceItsLeasesExpire() {
+        PartitionManager a = node("a", new ArrayList<>());
+        PartitionManager b = node("b", new ArrayList<>());
+        a.rebalance();
+        b.rebalance();
+        String onB = IntStream.range(0, 1000).mapToObj(i -> "p" + i)
+                .filter(id -> b.ownedPartitions().contains(b.partitionOf(id)))
+                .findFirst().orElseThrow();
+
+        clock.advance(TTL.plusSeconds(1)); // b stops renewing
+        assertFalse(b.owns(onB), "an unrenewed lease is not trusted past its expiry");
+        a.rebalance();
+
+        assertEquals(all(), a.ownedPartitions());
+        assertTrue(a.owns(onB));
+    }
+
+    @Test
+    void destroy_ReleasesLeasesImmediately() {
+        PartitionManager a = node("a", new ArrayList<>());
+        PartitionManager b = node("b", new ArrayList<>());
+        a.rebalance();
+        b.rebalance();
+
+        b.destroy();
+        a.rebalance();
+
+        assertEquals(all(), a.ownedPartitions());
+        assertTrue(b.ownedPartitions().isEmpty());
+    }
+
+    @Test
+    void invalidate_ReachesTheOwnerWithItsNextHeartbeat() {
+        List<Object> eventsOnA = new ArrayList<>();
+        PartitionManager a = node("a", eventsOnA);
+        PartitionManager b = node("b", new ArrayList<>());
+        a.rebalance();
+        b.rebalance();
+        String onA = IntStream.range(0, 1000).mapToObj(i -> "p" + i)
+                .filter(id -> a.ownedPartitions().contains(a.partitionOf(id)))
+                .findFirst().orElseThrow();
+        eventsOnA.clear();
+
+        b.invalidate(List.of(onA)); // e.g. b archived it
+        assertTrue(eventsOnA.isEmpty());
+        a.rebalance();
+        a.rebalance();
+
+        assertEquals(List.of(new PartitionInvalidated(a.partitionOf(onA))), eventsOnA);
+    }
+
+    @Test
+    void isPeer_OnlyForAnotherLiveMemberAtItsAdvertisedAddress() {
+        PartitionManager a = node("a", new ArrayList<>());
+        PartitionManager b = new PartitionManager(leases, event -> { }, PARTITIONS, TTL, Duration.ofSeconds(3),
+                "b", "", clock);
+        b.register("http://127.0.0.1:8081");
+        a.rebalance();
+
+        assertTrue(a.isPeer("b", "127.0.0.1"));
+        assertFalse(a.isPeer("b", "203.0.113.7"), "the right node id from elsewhere");
+        assertFalse(a.isPeer("c", "127.0.0.1"), "not a member");
+        assertFalse(a.isPeer("a", "127.0.0.1"), "this node never forwards to itself");
+
+        b.destroy();
+        a.rebalance();
+        assertFalse(a.isPeer("b", "127.0.0.1"), "a member that left");
+    }
+
+    private PartitionManager node(String id, List<Object> events) {
+        ApplicationEventPublisher publisher = events::add;
+        PartitionManager node = new PartitionManager(leases, publisher, PARTITIONS, TTL, Duration.ofSeconds(3),
+                id, "", clock);
+        node.register("http://" + id);
+        return node;
+    }
+
+    private static Set<Integer> all() {
+        return IntStream.range(0, PARTITIONS).boxed().collect(Collectors.toSet());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.state_machine.config;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoConfigTest {
+
+    private final TimeZone zone = TimeZone.getDefault();
+
+    @AfterEach
+    void restoreZone() {
+        TimeZone.setDefault(zone);
+    }
+
+    @Test
+    void localDates_AreWrittenAsMidnightUtc_WhateverTheJvmZone() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+        MappingMongoConverter converter = converter(new MongoConfig().mongoCustomConversions());
+        Document document = new Document();
+
+        converter.write(Map.of("dateOfBirth", LocalDate.of(2007, 6, 1)), document);
+
+        assertEquals(Date.from(Instant.parse("2007-06-01T00:00:00Z")), document.get("dateOfBirth"));
+    }
+
+    @Test
+    void dates_AreReadBackAsStored_NotTurnedIntoLocalDates() {
+        MappingMongoConverter converter = converter(new MongoConfig().mongoCustomConversions());
+        Date signedAt = Date.from(Instant.parse("2025-03-04T15:30:00Z"));
+
+        Map<?, ?> read = converter.read(Map.class, new Document("signedAt", signedAt));
+
+        assertEquals(signedAt, read.get("signedAt"));
+    }
+
+    private static MappingMongoConverter converter(MongoCustomConversions conversions) {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
@@ -1,38 +1,48 @@
 package com.example.state_machine.config;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.state_machine.flow.FlowAnalyzer;
+import com.example.state_machine.flow.FlowCompiler;
+import com.example.state_machine.flow.FlowDefinitionLoader;
+import com.example.state_machine.flow.FlowRegistry;
 import com.example.state_machine.model.ProcessEvent;
 import com.example.state_machine.model.ProcessState;
 import com.example.state_machine.model.ProcessType;
-import org.junit.jupiter.api.BeforeEach;
+import com.example.state_machine.service.advance.preconditions.KycResultPresentPrecondition;
+import com.example.state_machine.service.advance.preconditions.MinorIdLinkedPrecondition;
+import com.example.state_machine.service.advance.preconditions.OwnersReadyPrecondition;
+import com.example.state_machine.service.advance.preconditions.ParentConsentPresentPrecondition;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.statemachine.StateContext;
 import org.springframework.statemachine.StateMachine;
-import org.springframework.statemachine.config.StateMachineFactory;
 import org.springframework.statemachine.support.DefaultStateMachineContext;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
-@SpringBootTest(classes = { StateMachineConfig.class })
+@SpringBootTest(classes = {
+        StateMachineConfig.class, FlowRegistry.class, FlowDefinitionLoader.class, FlowCompiler.class, FlowAnalyzer.class,
+        KycResultPresentPrecondition.class, OwnersReadyPrecondition.class,
+        ParentConsentPresentPrecondition.class, MinorIdLinkedPrecondition.class
+})
 class StateMachineConfigTest {
 
     @Autowired
-    private StateMachineFactory<ProcessState, ProcessEvent> factory;
+    private FlowRegistry flows;
 
     private StateMachine<ProcessState, ProcessEvent> sm;
     private ProcessType currentType;
 
-    @BeforeEach
-    void setUp() {
-        sm = factory.getStateMachine();
-        sm.start();
-        currentType = null;
-    }
-
-    /** Ensure the guard sees the right process type. */
+    /** Build the machine of the type's flow and ensure the guard sees the right process type. */
     private void setType(ProcessType type) {
         this.currentType = type;
+        sm = flows.flow(type).getStateMachine("test-" + type);
+        sm.start();
         sm.getExtendedState().getVariables()
                 .put(StateMachineConfig.EXT_TYPE, type);
     }
@@ -118,4 +128,22 @@ class StateMachineConfigTest {
         assertFalse(accepted, "Event should not be accepted at STARTED");
         assertEquals(ProcessState.STARTED, sm.getState().getId(), "State must remain STARTED");
     }
+
+    @Test
+    @DisplayName("Transition log: nothing is evaluated when INFO is off")
+    void listenerSkipsTransitionWhenInfoDisabled() {
+        Logger logger = (Logger) LoggerFactory.getLogger(StateMachineConfig.class);
+        Level previous = logger.getLevel();
+        logger.setLevel(Level.WARN);
+        try {
+            @SuppressWarnings("unchecked")
+            StateContext<ProcessState, ProcessEvent> ctx = mock(StateContext.class);
+
+            new StateMachineConfig().stateMachineListener().stateContext(ctx);
+
+            verifyNoInteractions(ctx);
+        } finally {
+            logger.setLevel(previous);
+        }
+    }
 }
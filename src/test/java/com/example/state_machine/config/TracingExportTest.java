@@ -0,0 +1,78 @@
+package com.example.state_machine.config;
+
+import com.example.state_machine.controller.dto.ProcessInstanceDto;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exports to a stand-in OTLP/HTTP collector and checks the spans of one {@code /advance} arrive.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "flows.warmup.iterations=0",
+        "management.tracing.sampling.probability=1.0"
+})
+@ActiveProfiles("memory")
+@AutoConfigureObservability
+class TracingExportTest {
+
+    private static final StringBuffer exported = new StringBuffer();
+    private static HttpServer collector;
+
+    @DynamicPropertySource
+    static void otlpEndpoint(DynamicPropertyRegistry registry) throws IOException {
+        collector = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        collector.createContext("/v1/traces", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                // protobuf keeps strings as UTF-8, so span names and attributes can be searched as text
+                exported.append(new String(body.readAllBytes(), StandardCharsets.ISO_8859_1));
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        collector.start();
+        registry.add("management.otlp.tracing.endpoint",
+                () -> "http://localhost:" + collector.getAddress().getPort() + "/v1/traces");
+    }
+
+    @AfterAll
+    static void stopCollector() {
+        collector.stop(0);
+    }
+
+    @Autowired
+    private TestRestTemplate http;
+
+    @Test
+    void advance_ExportsASpanPerStage_WithTheProcessId() throws InterruptedException {
+        ProcessInstanceDto started = http.postForObject("/process/start",
+                Map.of("clientId", "c1", "type", "SINGLE_OWNER"), ProcessInstanceDto.class);
+        http.postForObject("/process/" + started.getId() + "/advance", Map.of("data", Map.of()), ProcessInstanceDto.class);
+
+        List<String> expected = List.of("process.advance", "process.preconditions", "process.state-machine",
+                "process.store", "START_FLOW", started.getId());
+        long deadline = System.currentTimeMillis() + 30_000; // the batch processor exports every 5 s
+        while (!expected.stream().allMatch(exported.toString()::contains) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+        }
+        for (String text : expected) {
+            assertTrue(exported.toString().contains(text), "not exported: " + text);
+        }
+    }
+}
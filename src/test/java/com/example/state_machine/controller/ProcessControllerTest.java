@@ -3,23 +3,45 @@ package com.example.state_machine.controller;
 import com.example.state_machine.exception.GlobalExceptionHandler;
 import com.example.state_machine.model.*;
 import com.example.state_machine.controller.dto.*;
+import com.example.state_machine.service.BulkStartService;
 import com.example.state_machine.service.FlowService;
+import com.example.state_machine.service.ProcessStateChanged;
+import com.example.state_machine.service.advance.PreconditionError;
+import com.example.state_machine.service.advance.PreconditionsNotMetException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -33,6 +55,13 @@ class ProcessControllerTest {
     @Mock
     private FlowService flowService;
 
+    @Mock
+    private BulkStartService bulkStartService;
+
+    @Spy
+    private ProcessUpdateBroadcaster broadcaster =
+            new ProcessUpdateBroadcaster(Duration.ofMinutes(1), Duration.ofMinutes(1), false);
+
     @InjectMocks
     private ProcessController processController;
 
@@ -130,6 +159,22 @@ class ProcessControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void bulkStart_StreamsResultsAsNdjson() throws Exception {
+        doAnswer(inv -> {
+            OutputStream out = inv.getArgument(1);
+            out.write("{\"line\":1,\"id\":\"66b2f1c4e4b0a1d2c3e4f5a6\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(bulkStartService).startAll(any(), any());
+
+        mockMvc.perform(post("/process/bulk/start")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"clientId\":\"c1\",\"type\":\"SINGLE_OWNER\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"line\":1,\"id\":\"66b2f1c4e4b0a1d2c3e4f5a6\"}\n"));
+    }
+
     @Test
     void get_ReturnsProcessInstance_WhenExists() throws Exception {
         ProcessInstance instance = ProcessInstance.builder()
@@ -156,6 +201,112 @@ class ProcessControllerTest {
                 .andExpect(content().string("Process not found"));
     }
 
+    @Test
+    void get_ReturnsOnlySelectedFieldsAndVariables() throws Exception {
+        ProcessInstance instance = ProcessInstance.builder()
+                .id("123")
+                .state(ProcessState.KYC_IN_PROGRESS)
+                .variables(Map.of("kycResult", "OK"))
+                .updatedAt(Instant.parse("2025-01-01T00:00:00Z"))
+                .build();
+
+        when(flowService.getProcess(eq("123"), anyCollection())).thenReturn(instance);
+
+        mockMvc.perform(get("/process/123").param("fields", "screenCode").param("variables", "kycResult"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.screenCode").value(ProcessState.KYC_IN_PROGRESS.getScreenCode()))
+                .andExpect(jsonPath("$.variables.kycResult").value("OK"))
+                .andExpect(jsonPath("$.id").doesNotExist())
+                .andExpect(jsonPath("$.state").doesNotExist());
+    }
+
+    @Test
+    void stream_SendsCurrentStateThenTransitions() throws Exception {
+        ProcessInstance instance = ProcessInstance.builder()
+                .id("123")
+                .state(ProcessState.KYC_IN_PROGRESS)
+                .updatedAt(Instant.parse("2025-01-01T00:00:00Z"))
+                .build();
+        when(flowService.getProcess(eq("123"), anyCollection())).thenReturn(instance);
+
+        MvcResult result = mockMvc.perform(get("/process/123/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        broadcaster.onStateChanged(new ProcessStateChanged("123", ProcessState.FILL_PERSONAL_DETAILS,
+                Instant.parse("2025-01-01T00:00:01Z"), false));
+        broadcaster.onStateChanged(new ProcessStateChanged("123", ProcessState.ACCOUNT_CREATED_LIMITED,
+                Instant.parse("2025-01-01T00:00:02Z"), true)); // change streams are off
+        broadcaster.onStateChanged(new ProcessStateChanged("456", ProcessState.ACCOUNT_CREATED_LIMITED,
+                Instant.parse("2025-01-01T00:00:02Z"), false));
+
+        String body = result.getResponse().getContentAsString();
+        assertEquals(MediaType.TEXT_EVENT_STREAM_VALUE, result.getResponse().getContentType());
+        assertTrue(body.startsWith("event:state\ndata:{\"id\":\"123\",\"state\":\"KYC_IN_PROGRESS\""), body);
+        assertTrue(body.contains("\"state\":\"FILL_PERSONAL_DETAILS\""), body);
+        assertTrue(!body.contains("ACCOUNT_CREATED_LIMITED"), body);
+    }
+
+    @Test
+    void stream_ReturnsNotFound_WhenProcessDoesNotExist() throws Exception {
+        when(flowService.getProcess(eq("nonexistent"), anyCollection()))
+                .thenThrow(new NoSuchElementException("Process not found"));
+
+        mockMvc.perform(get("/process/nonexistent/stream"))
+                .andExpect(status().isNotFound());
+        assertEquals(0, broadcaster.subscriberCount());
+    }
+
+    @Test
+    void variable_StreamsContent() throws Exception {
+        when(flowService.openVariable("123", "consentDocument"))
+                .thenReturn(new ByteArrayResource("%PDF-1.7".getBytes(StandardCharsets.UTF_8)));
+
+        mockMvc.perform(get("/process/123/variables/consentDocument"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+                .andExpect(content().string("%PDF-1.7"));
+    }
+
+    @Test
+    void get_ReturnsBadRequest_WhenFieldIsUnknown() throws Exception {
+        mockMvc.perform(get("/process/123").param("fields", "password"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void get_ReturnsNotModified_WhenETagMatches() throws Exception {
+        ProcessInstance process = ProcessInstance.builder()
+                .id("123")
+                .state(ProcessState.KYC_IN_PROGRESS)
+                .revision(4L)
+                .updatedAt(Instant.parse("2025-01-01T00:00:00Z"))
+                .build();
+        String etag = ProcessView.of(null, null).etag(process);
+
+        when(flowService.getProcess("123")).thenReturn(process);
+
+        mockMvc.perform(get("/process/123").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(flowService, times(1)).getProcess("123");
+    }
+
+    @Test
+    void get_ReturnsTheProcess_WhenItChangedWithinTheSameMillisecond() throws Exception {
+        Instant updatedAt = Instant.parse("2025-01-01T00:00:00Z");
+        ProcessInstance seen = ProcessInstance.builder().id("123").state(ProcessState.KYC_IN_PROGRESS)
+                .revision(4L).updatedAt(updatedAt).build();
+        ProcessInstance patched = seen.toBuilder().revision(5L).variables(Map.of("kycResult", "OK")).build();
+
+        when(flowService.getProcess("123")).thenReturn(patched);
+
+        mockMvc.perform(get("/process/123").header("If-None-Match", ProcessView.of(null, null).etag(seen)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.variables.kycResult").value("OK"));
+        verify(flowService, times(1)).getProcess("123");
+    }
+
     @Test
     void event_ReturnsUpdatedInstance_WhenSubmittingPersonalDetails() throws Exception {
         Map<String, Object> data = Map.of(
@@ -184,6 +335,40 @@ class ProcessControllerTest {
                 .andExpect(jsonPath("$.state").value("ANSWER_ACCOUNT_QUESTIONS"));
     }
 
+    @Test
+    void event_AcceptsAndReturnsCbor() throws Exception {
+        ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor().build();
+        MockMvc binaryMvc = MockMvcBuilders.standaloneSetup(processController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(),
+                        new MappingJackson2CborHttpMessageConverter(cbor))
+                .build();
+        Map<String, Object> data = Map.of("verificationId", "kyc123");
+        EventRequest request = EventRequest.builder()
+                .event(ProcessEvent.KYC_VERIFIED)
+                .data(data)
+                .build();
+
+        when(flowService.handleEvent(eq("123"), eq(ProcessEvent.KYC_VERIFIED), eq(data)))
+                .thenReturn(ProcessInstance.builder()
+                        .id("123")
+                        .state(ProcessState.WAITING_FOR_BIOMETRY)
+                        .variables(data)
+                        .build());
+
+        byte[] body = binaryMvc.perform(post("/process/123/event")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cbor.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        ProcessInstanceDto response = cbor.readValue(body, ProcessInstanceDto.class);
+        assertEquals(ProcessState.WAITING_FOR_BIOMETRY, response.getState());
+        assertEquals("kyc123", response.getVariables().get("verificationId"));
+    }
+
     @Test
     void event_ReturnsUpdatedInstance_WhenKYCVerified() throws Exception {
         Map<String, Object> data = Map.of(
@@ -396,4 +581,62 @@ class ProcessControllerTest {
                         .content(objectMapper.writeValueAsString(req)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void patchVariables_AppliesTheMergePatchAndReturnsTheNewETag() throws Exception {
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("firstName", "Jane");
+        patch.put("riskLevel", null);
+        when(flowService.patchVariables("123", patch, ProcessState.FILL_PERSONAL_DETAILS))
+                .thenReturn(ProcessInstance.builder().id("123").state(ProcessState.FILL_PERSONAL_DETAILS)
+                        .updatedAt(Instant.parse("2025-06-01T00:00:00Z")).build());
+
+        mockMvc.perform(patch("/process/123/variables")
+                        .param("state", "FILL_PERSONAL_DETAILS")
+                        .contentType(ProcessController.MERGE_PATCH_JSON_VALUE)
+                        .content("{\"firstName\":\"Jane\",\"riskLevel\":null}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().exists("ETag"));
+    }
+
+    @Test
+    void patchVariables_Returns409_WhenTheProcessMovedOn() throws Exception {
+        when(flowService.patchVariables(eq("123"), anyMap(), eq(ProcessState.FILL_PERSONAL_DETAILS)))
+                .thenThrow(new PreconditionsNotMetException(ProcessState.KYC_IN_PROGRESS,
+                        List.of(new PreconditionError("STATE_CHANGED", "Process is in KYC_IN_PROGRESS, not FILL_PERSONAL_DETAILS"))));
+
+        mockMvc.perform(patch("/process/123/variables")
+                        .param("state", "FILL_PERSONAL_DETAILS")
+                        .contentType(ProcessController.MERGE_PATCH_JSON_VALUE)
+                        .content("{\"firstName\":\"Jane\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.state").value("KYC_IN_PROGRESS"));
+    }
+
+    @Test
+    void addOwners_StartsOneChildPerOwner() throws Exception {
+        Map<String, Map<String, Object>> owners = new LinkedHashMap<>();
+        owners.put("owner-a", Map.of("share", 30));
+        owners.put("owner-b", Map.of());
+        when(flowService.addOwners("123", owners)).thenReturn(List.of(
+                ProcessInstance.builder().id("123-a").clientId("owner-a").parentId("123").state(ProcessState.STARTED).build(),
+                ProcessInstance.builder().id("123-b").clientId("owner-b").parentId("123").state(ProcessState.STARTED).build()));
+
+        mockMvc.perform(post("/process/123/owners")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"owners\":[{\"clientId\":\"owner-a\",\"initialData\":{\"share\":30}},{\"clientId\":\"owner-b\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("123-a"))
+                .andExpect(jsonPath("$[1].parentId").value("123"));
+    }
+
+    @Test
+    void addOwners_ReturnsBadRequest_ForDuplicateOwners() throws Exception {
+        mockMvc.perform(post("/process/123/owners")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"owners\":[{\"clientId\":\"owner-a\"},{\"clientId\":\"owner-a\"}]}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(flowService);
+    }
 }
@@ -0,0 +1,74 @@
+package com.example.state_machine.controller;
+
+import com.example.state_machine.exception.GlobalExceptionHandler;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.service.ProcessStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class StatsControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private ProcessStats stats;
+
+    @InjectMocks
+    private StatsController controller;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void funnel_ReturnsTheCountersForTheWindow() throws Exception {
+        Instant since = Instant.parse("2025-06-01T00:00:00Z");
+        Instant until = Instant.parse("2025-06-02T00:00:00Z");
+        when(stats.funnel(ProcessType.SINGLE_OWNER, since, until, ProcessState.KYC_IN_PROGRESS, ProcessState.WAITING_FOR_BIOMETRY))
+                .thenReturn(new ProcessStats.Funnel(ProcessType.SINGLE_OWNER, since, until,
+                        Map.of(ProcessState.KYC_IN_PROGRESS, 3L),
+                        Map.of(ProcessState.KYC_IN_PROGRESS, 10L),
+                        List.of(new ProcessStats.Transition(ProcessState.STARTED, ProcessState.KYC_IN_PROGRESS, 10)),
+                        new ProcessStats.Step(ProcessState.KYC_IN_PROGRESS, ProcessState.WAITING_FOR_BIOMETRY, 10, 7, 3)));
+
+        mockMvc.perform(get("/stats/funnel")
+                        .param("type", "SINGLE_OWNER")
+                        .param("since", "2025-06-01T00:00:00Z")
+                        .param("until", "2025-06-02T00:00:00Z")
+                        .param("from", "KYC_IN_PROGRESS")
+                        .param("to", "WAITING_FOR_BIOMETRY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.occupancy.KYC_IN_PROGRESS").value(3))
+                .andExpect(jsonPath("$.transitions[0].from").value("STARTED"))
+                .andExpect(jsonPath("$.step.dropped").value(3));
+    }
+
+    @Test
+    void funnel_Returns400_WhenOnlyOneStepIsGiven() throws Exception {
+        when(stats.funnel(eq(ProcessType.MINOR), any(), any(), eq(ProcessState.KYC_IN_PROGRESS), isNull()))
+                .thenThrow(new IllegalArgumentException("from and to must be given together"));
+
+        mockMvc.perform(get("/stats/funnel").param("type", "MINOR").param("from", "KYC_IN_PROGRESS"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.config.StateMachineConfig;
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+import com.example.state_machine.flow.FlowDefinition.VariableDefinition;
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import org.junit.jupiter.api.Test;
+import org.springframework.statemachine.ExtendedState;
+import org.springframework.statemachine.support.DefaultExtendedState;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledFlowTest {
+
+    private final Map<String, Object> variables = Map.of("totalShare", 60, "firstName", "John", "idScan", "...");
+
+    private static CompiledFlow flow(Set<String> extendedStateKeys) {
+        return flow(extendedStateKeys, null);
+    }
+
+    private static CompiledFlow flow(Set<String> extendedStateKeys, Map<String, VariableDefinition> schema) {
+        FlowDefinition def = new FlowDefinition(ProcessType.MULTI_OWNER, 1, ProcessState.STARTED, Set.of(), List.of(
+                new TransitionDefinition(ProcessState.STARTED, ProcessState.FILL_PERSONAL_DETAILS,
+                        ProcessEvent.START_FLOW, true, null, null)), schema);
+        return new CompiledFlow(def, Map.of(), Map.of(), List.of(), extendedStateKeys, null);
+    }
+
+    @Test
+    void hydrate_CopiesOnlyProcessType_WhenGuardsDeclareNoKeys() {
+        ExtendedState ext = new DefaultExtendedState();
+        ext.getVariables().put("stale", true);
+
+        flow(Set.of()).hydrate(ext, variables, Map.of("ownerId", "owner1"));
+
+        assertEquals(Map.of(StateMachineConfig.EXT_TYPE, ProcessType.MULTI_OWNER), ext.getVariables());
+    }
+
+    @Test
+    void hydrate_CopiesDeclaredKeys_PreferringIncomingData() {
+        ExtendedState ext = new DefaultExtendedState();
+
+        flow(Set.of("totalShare", "missing")).hydrate(ext, variables, Map.of("totalShare", 100));
+
+        assertEquals(Map.of(StateMachineConfig.EXT_TYPE, ProcessType.MULTI_OWNER, "totalShare", 100), ext.getVariables());
+    }
+
+    @Test
+    void hydrate_CopiesEverything_WhenAGuardDeclaresNothing() {
+        ExtendedState ext = new DefaultExtendedState();
+
+        flow(null).hydrate(ext, variables, Map.of("ownerId", "owner1"));
+
+        assertEquals(5, ext.getVariables().size());
+        assertEquals("owner1", ext.getVariables().get("ownerId"));
+    }
+
+    @Test
+    void hydrate_RestoresStoredDates_OnlyForVariablesDeclaredDate() {
+        ExtendedState ext = new DefaultExtendedState();
+        Date midnight = Date.from(Instant.parse("2007-06-01T00:00:00Z"));
+        Date signedAt = Date.from(Instant.parse("2025-03-04T15:30:00Z"));
+
+        flow(Set.of("dateOfBirth", "signedAt"), Map.of("dateOfBirth", new VariableDefinition(VariableType.DATE, null)))
+                .hydrate(ext, Map.of("dateOfBirth", midnight, "signedAt", signedAt), Map.of());
+
+        assertEquals(LocalDate.of(2007, 6, 1), ext.getVariables().get("dateOfBirth"));
+        assertEquals(signedAt, ext.getVariables().get("signedAt"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.service.advance.Precondition;
+import com.example.state_machine.service.advance.preconditions.KycResultPresentPrecondition;
+import com.example.state_machine.service.advance.preconditions.MinorIdLinkedPrecondition;
+import com.example.state_machine.service.advance.preconditions.OwnersReadyPrecondition;
+import com.example.state_machine.service.advance.preconditions.ParentConsentPresentPrecondition;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowAnalyzerTest {
+
+    private final Map<String, Precondition> preconditions = Map.of(
+            "kycResultPresentPrecondition", new KycResultPresentPrecondition(),
+            "ownersReadyPrecondition", new OwnersReadyPrecondition(),
+            "parentConsentPresentPrecondition", new ParentConsentPresentPrecondition(),
+            "minorIdLinkedPrecondition", new MinorIdLinkedPrecondition()
+    );
+    private final FlowAnalyzer analyzer = new FlowAnalyzer(preconditions, Map.of());
+    private final FlowDefinitionLoader loader = new FlowDefinitionLoader("classpath*:flows/*.yml");
+
+    private FlowDefinition yaml(String content) {
+        return loader.load(new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8), "test flow"));
+    }
+
+    @Test
+    void bundledDefinitions_AreConsistent() {
+        for (FlowDefinition def : loader.loadAll()) {
+            FlowAnalyzer.Report report = analyzer.analyze(def);
+            assertEquals(0, report.errors().size(), def.type() + ": " + report.errors());
+            assertEquals(0, report.warnings().size(), def.type() + ": " + report.warnings());
+        }
+    }
+
+    @Test
+    void reports_UnreachableStateAndDeadEnd() {
+        FlowAnalyzer.Report report = analyzer.analyze(yaml("""
+                type: SINGLE_OWNER
+                version: 1
+                initial: STARTED
+                terminal: [ACCOUNT_CREATED]
+                transitions:
+                  - { source: STARTED, target: KYC_IN_PROGRESS, event: START_FLOW, next: true }
+                  - { source: BIOMETRY_VERIFIED, target: ACCOUNT_CREATED, event: CREATE_ACCOUNT, next: true }
+                """));
+
+        assertTrue(report.errors().contains("state BIOMETRY_VERIFIED is unreachable from STARTED"), report.errors()::toString);
+        assertTrue(report.errors().contains("state ACCOUNT_CREATED is unreachable from STARTED"), report.errors()::toString);
+        assertTrue(report.errors().contains("state KYC_IN_PROGRESS is a dead end (not terminal, no outgoing transition)"),
+                report.errors()::toString);
+    }
+
+    @Test
+    void reports_TerminalWithOutgoingTransition_AndMissingNextStep() {
+        FlowAnalyzer.Report report = analyzer.analyze(yaml("""
+                type: SINGLE_OWNER
+                version: 1
+                initial: STARTED
+                terminal: [KYC_IN_PROGRESS]
+                transitions:
+                  - { source: STARTED, target: KYC_IN_PROGRESS, event: START_FLOW }
+                  - { source: KYC_IN_PROGRESS, target: WAITING_FOR_BIOMETRY, event: KYC_VERIFIED,
+                      next: true, preconditions: [kycResultPresentPrecondition] }
+                """));
+
+        assertTrue(report.errors().contains("terminal state KYC_IN_PROGRESS has outgoing transitions"), report.errors()::toString);
+        assertTrue(report.errors().contains("state STARTED has no next step for /advance"), report.errors()::toString);
+    }
+
+    @Test
+    void reports_BadPreconditionBindings() {
+        FlowAnalyzer.Report report = analyzer.analyze(yaml("""
+                type: SINGLE_OWNER
+                version: 1
+                initial: KYC_IN_PROGRESS
+                terminal: [WAITING_FOR_BIOMETRY]
+                transitions:
+                  - { source: KYC_IN_PROGRESS, target: WAITING_FOR_BIOMETRY, event: KYC_VERIFIED, next: true,
+                      preconditions: [ownersReadyPrecondition, noSuchPrecondition] }
+                """));
+
+        String where = "KYC_IN_PROGRESS -[KYC_VERIFIED]-> WAITING_FOR_BIOMETRY: ";
+        assertTrue(report.errors().contains(where + "precondition 'ownersReadyPrecondition' does not support this transition"));
+        assertTrue(report.errors().contains(where + "unknown precondition 'noSuchPrecondition'"));
+        assertEquals(1, report.warnings().size());
+        assertTrue(report.warnings().get(0).contains("'kycResultPresentPrecondition' supports this transition but is not bound"));
+    }
+}
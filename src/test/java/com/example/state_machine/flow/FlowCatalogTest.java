@@ -0,0 +1,51 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.flow.FlowDefinition.TransitionDefinition;
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowCatalogTest {
+
+    private static CompiledFlow flow(ProcessType type, int version) {
+        FlowDefinition def = new FlowDefinition(type, version, ProcessState.STARTED, Set.of(ProcessState.KYC_IN_PROGRESS), List.of(
+                new TransitionDefinition(ProcessState.STARTED, ProcessState.KYC_IN_PROGRESS,
+                        ProcessEvent.START_FLOW, true, null, null)), null);
+        return new CompiledFlow(def, Map.of(), Map.of(), List.of(), Set.of(), null);
+    }
+
+    @Test
+    void flow_ReturnsNewestVersion_ForNewProcesses() {
+        FlowCatalog catalog = new FlowCatalog(List.of(
+                flow(ProcessType.SINGLE_OWNER, 1), flow(ProcessType.SINGLE_OWNER, 3), flow(ProcessType.MINOR, 1)));
+
+        assertEquals(3, catalog.flow(ProcessType.SINGLE_OWNER).getVersion());
+        assertEquals(1, catalog.flow(ProcessType.MINOR).getVersion());
+    }
+
+    @Test
+    void flow_DispatchesToStampedVersion_AndTreatsNullAsLegacy() {
+        FlowCatalog catalog = new FlowCatalog(List.of(
+                flow(ProcessType.SINGLE_OWNER, 1), flow(ProcessType.SINGLE_OWNER, 3)));
+
+        assertEquals(3, catalog.flow(ProcessType.SINGLE_OWNER, 3).getVersion());
+        assertEquals(1, catalog.flow(ProcessType.SINGLE_OWNER, null).getVersion());
+        assertEquals(List.of(1, 3), catalog.versions(ProcessType.SINGLE_OWNER).stream()
+                .map(CompiledFlow::getVersion).toList());
+    }
+
+    @Test
+    void flow_Throws_WhenVersionNotLoaded() {
+        FlowCatalog catalog = new FlowCatalog(List.of(flow(ProcessType.SINGLE_OWNER, 1)));
+
+        assertThrows(IllegalStateException.class, () -> catalog.flow(ProcessType.SINGLE_OWNER, 2));
+        assertThrows(IllegalStateException.class, () -> catalog.flow(ProcessType.MINOR));
+    }
+}
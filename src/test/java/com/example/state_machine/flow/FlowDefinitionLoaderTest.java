@@ -0,0 +1,105 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.model.ProcessEvent;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowDefinitionLoaderTest {
+
+    private final FlowDefinitionLoader loader = new FlowDefinitionLoader("classpath*:flows/*.yml");
+
+    private static ByteArrayResource yaml(String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8), "test flow");
+    }
+
+    @Test
+    void loadAll_ReturnsOneDefinitionPerType() {
+        List<FlowDefinition> definitions = loader.loadAll();
+
+        EnumSet<ProcessType> types = EnumSet.noneOf(ProcessType.class);
+        definitions.forEach(d -> types.add(d.type()));
+        assertEquals(EnumSet.allOf(ProcessType.class), types);
+    }
+
+    @Test
+    void checkVersions_AllowsSeveralVersions_ButRejectsDuplicates() {
+        List<FlowDefinition> all = new ArrayList<>(loader.loadAll());
+        FlowDefinition v1 = all.get(0);
+        all.add(new FlowDefinition(v1.type(), v1.version() + 1, v1.initial(), v1.terminal(), v1.transitions(), v1.variables()));
+        assertDoesNotThrow(() -> FlowDefinitionLoader.checkVersions(all));
+
+        all.add(v1);
+        assertThrows(IllegalStateException.class, () -> FlowDefinitionLoader.checkVersions(all));
+    }
+
+    @Test
+    void load_ParsesTransitionsAndBindings() {
+        FlowDefinition def = loader.load(yaml("""
+                type: MINOR
+                version: 2
+                initial: STARTED
+                transitions:
+                  - { source: STARTED, target: FILL_PERSONAL_DETAILS, event: START_FLOW, next: true,
+                      preconditions: [kycResultPresentPrecondition] }
+                """));
+
+        assertEquals(ProcessType.MINOR, def.type());
+        assertEquals(2, def.version());
+        var t = def.transitions().get(0);
+        assertEquals(ProcessEvent.START_FLOW, t.event());
+        assertEquals(ProcessState.FILL_PERSONAL_DETAILS, t.target());
+        assertTrue(t.next());
+        assertEquals(List.of("kycResultPresentPrecondition"), t.preconditions());
+    }
+
+    @Test
+    void load_Rejects_DuplicateTransition() {
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> loader.load(yaml("""
+                type: SINGLE_OWNER
+                version: 1
+                initial: STARTED
+                transitions:
+                  - { source: STARTED, target: KYC_IN_PROGRESS, event: START_FLOW }
+                  - { source: STARTED, target: FILL_PERSONAL_DETAILS, event: START_FLOW }
+                """)));
+        assertTrue(ex.getMessage().contains("duplicate transition"));
+    }
+
+    @Test
+    void load_Rejects_TwoNextStepsFromSameState() {
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> loader.load(yaml("""
+                type: SINGLE_OWNER
+                version: 1
+                initial: STARTED
+                transitions:
+                  - { source: STARTED, target: KYC_IN_PROGRESS, event: START_FLOW, next: true }
+                  - { source: STARTED, target: FILL_PERSONAL_DETAILS, event: SUBMIT_PERSONAL, next: true }
+                """)));
+        assertTrue(ex.getMessage().contains("more than one next step"));
+    }
+
+    @Test
+    void load_Rejects_MissingVersionAndUnknownState() {
+        assertThrows(IllegalStateException.class, () -> loader.load(yaml("""
+                type: SINGLE_OWNER
+                initial: STARTED
+                transitions:
+                  - { source: STARTED, target: KYC_IN_PROGRESS, event: START_FLOW }
+                """)));
+        assertThrows(IllegalStateException.class, () -> loader.load(yaml("""
+                type: SINGLE_OWNER
+                version: 1
+                initial: NOT_A_STATE
+                transitions: []
+                """)));
+    }
+}
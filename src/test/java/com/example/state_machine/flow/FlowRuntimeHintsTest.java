@@ -0,0 +1,22 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.service.BulkStartService;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlowRuntimeHintsTest {
+
+    @Test
+    void registersFlowResourcesAndYamlBoundTypes() {
+        RuntimeHints hints = new RuntimeHints();
+        new FlowRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.resource().forResource("flows/single-owner.yml").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(FlowDefinition.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(FlowDefinition.TransitionDefinition.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(BulkStartService.Item.class).test(hints));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.state_machine.flow;
+
+import com.example.state_machine.flow.FlowDefinition.VariableDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VariableSchemaTest {
+
+    private final VariableSchema schema = new VariableSchema(Map.of(
+            "totalShare", new VariableDefinition(VariableType.INT, null),
+            "approved", new VariableDefinition(VariableType.BOOLEAN, null),
+            "dateOfBirth", new VariableDefinition(VariableType.DATE, null),
+            "matchScore", new VariableDefinition(VariableType.DOUBLE, null),
+            "status", new VariableDefinition(VariableType.STRING, 8)
+    ));
+
+    @Test
+    void canonicalize_ConvertsDeclaredKeys_AndKeepsUndeclaredOnes() {
+        Map<String, Object> canonical = schema.canonicalize(Map.of(
+                "totalShare", "100",
+                "approved", "TRUE",
+                "dateOfBirth", "1990-01-01",
+                "matchScore", "0.95",
+                "status", "APPROVED",
+                "companyName", "ABC Corp"
+        ));
+
+        assertEquals(100, canonical.get("totalShare"));
+        assertEquals(Boolean.TRUE, canonical.get("approved"));
+        assertEquals(LocalDate.of(1990, 1, 1), canonical.get("dateOfBirth"));
+        assertEquals(0.95, canonical.get("matchScore"));
+        assertEquals("APPROVED", canonical.get("status"));
+        assertEquals("ABC Corp", canonical.get("companyName"));
+        assertInstanceOf(HashMap.class, canonical);
+    }
+
+    @Test
+    void canonicalize_AcceptsValuesAsReadBackFromMongo() {
+        Date stored = Date.from(LocalDate.of(1990, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        Map<String, Object> canonical = schema.canonicalize(Map.of("dateOfBirth", stored, "totalShare", 100L));
+
+        assertEquals(LocalDate.of(1990, 1, 1), canonical.get("dateOfBirth"));
+        assertEquals(100, canonical.get("totalShare"));
+    }
+
+    @Test
+    void restore_TurnsStoredDatesBack_OnlyForDateVariables() {
+        Date stored = Date.from(LocalDate.of(1990, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        assertEquals(LocalDate.of(1990, 1, 1), schema.restore("dateOfBirth", stored));
+        assertSame(stored, schema.restore("signedAt", stored));
+        assertEquals(60, schema.restore("totalShare", 60));
+    }
+
+    @Test
+    void canonicalize_ReportsEveryInvalidKey() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> schema.canonicalize(Map.of(
+                "totalShare", "abc",
+                "status", "WAY_TOO_LONG",
+                "notes", "x".repeat(VariableSchema.DEFAULT_MAX_SIZE + 1)
+        )));
+
+        assertTrue(ex.getMessage().contains("totalShare: expected INT but was 'abc'"), ex::getMessage);
+        assertTrue(ex.getMessage().contains("status: size exceeds 8"), ex::getMessage);
+        assertTrue(ex.getMessage().contains("notes: size exceeds " + VariableSchema.DEFAULT_MAX_SIZE), ex::getMessage);
+    }
+}
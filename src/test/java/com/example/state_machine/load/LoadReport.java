@@ -0,0 +1,86 @@
+package com.example.state_machine.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint latencies (exact percentiles, every sample is kept) and error counts of a load run.
+ */
+final class LoadReport {
+
+    private final Map<String, Samples> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder journeys = new LongAdder();
+    private final LongAdder failedJourneys = new LongAdder();
+
+    void record(String endpoint, long nanos, boolean ok) {
+        endpoints.computeIfAbsent(endpoint, e -> new Samples()).add(nanos, ok);
+    }
+
+    void journey(boolean ok) {
+        journeys.increment();
+        if (!ok) {
+            failedJourneys.increment();
+        }
+    }
+
+    long requests() {
+        return endpoints.values().stream().mapToLong(s -> s.count).sum();
+    }
+
+    long errors() {
+        return endpoints.values().stream().mapToLong(s -> s.errors).sum();
+    }
+
+    long failedJourneys() {
+        return failedJourneys.sum();
+    }
+
+    String format(double seconds) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d journeys (%d failed), %d requests in %.1f s: %.1f req/s, %.2f%% errors%n",
+                journeys.sum(), failedJourneys.sum(), requests(), seconds, requests() / seconds,
+                requests() == 0 ? 0.0 : 100.0 * errors() / requests()));
+        out.append(String.format("%-36s %9s %8s %8s %8s %8s %8s %8s%n",
+                "endpoint", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        new TreeMap<>(endpoints).forEach((endpoint, samples) -> {
+            long[] sorted = samples.sorted();
+            out.append(String.format("%-36s %9d %8d %8.2f %8.2f %8.2f %8.2f %8.2f%n", endpoint, sorted.length,
+                    samples.errors, millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99),
+                    millis(sorted, 0.999), millis(sorted, 1.0)));
+        });
+        return out.toString();
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static final class Samples {
+        private long[] nanos = new long[1024];
+        private int count;
+        private int errors;
+
+        synchronized void add(long value, boolean ok) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = value;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(nanos, count);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
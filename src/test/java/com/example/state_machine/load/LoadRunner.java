@@ -0,0 +1,224 @@
+package com.example.state_machine.load;
+
+import com.example.state_machine.StateMachineBankWorkflowApplication;
+import com.example.state_machine.load.PostmanJourneys.Journey;
+import com.example.state_machine.load.PostmanJourneys.Step;
+import com.example.state_machine.model.ProcessType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays the Postman journeys ({@link PostmanJourneys}) with a configurable mix of process types,
+ * concurrency and think time, and prints throughput, latency percentiles per endpoint and error rates.
+ * Every journey iteration uses its own {@code clientId}.
+ * <p>
+ * Without {@code load.base-url} the application is started in-process on a random port, backed by the
+ * {@code memory} store or, with {@code load.store=mongo}, a MongoDB Testcontainer. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.state_machine.load.LoadRunner
+ * -Dload.users=32 -Dload.duration=PT2M}. Options (system properties, defaults in brackets):
+ * <ul>
+ *   <li>{@code load.users} [16] concurrent virtual users, each replaying one journey after another</li>
+ *   <li>{@code load.duration} [PT60S] measured time, after {@code load.warmup} [PT10S] of unmeasured load</li>
+ *   <li>{@code load.think-time} [PT0S] pause between the steps of a journey</li>
+ *   <li>{@code load.mix} [SINGLE_OWNER=4,MULTI_OWNER=2,MINOR=1,MINOR_TO_REGULAR=1] journey weights by type</li>
+ *   <li>{@code load.collections} [{@value PostmanJourneys#DEFAULT_LOCATION}]</li>
+ *   <li>{@code load.base-url} target an already running instance instead</li>
+ * </ul>
+ */
+public class LoadRunner {
+
+    record Settings(int users, Duration warmup, Duration duration, Duration thinkTime, Map<ProcessType, Integer> mix) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("load.users", 16),
+                    Duration.parse(System.getProperty("load.warmup", "PT10S")),
+                    Duration.parse(System.getProperty("load.duration", "PT60S")),
+                    Duration.parse(System.getProperty("load.think-time", "PT0S")),
+                    parseMix(System.getProperty("load.mix", "SINGLE_OWNER=4,MULTI_OWNER=2,MINOR=1,MINOR_TO_REGULAR=1")));
+        }
+
+        static Map<ProcessType, Integer> parseMix(String mix) {
+            Map<ProcessType, Integer> weights = new EnumMap<>(ProcessType.class);
+            for (String entry : mix.split(",")) {
+                String[] kv = entry.trim().split("=");
+                weights.put(ProcessType.valueOf(kv[0].trim()), Integer.parseInt(kv[1].trim()));
+            }
+            return weights;
+        }
+    }
+
+    private static final Pattern CLIENT_ID = Pattern.compile("(\"clientId\"\\s*:\\s*\")([^\"]*)\"");
+    private static final Pattern VARIABLE = Pattern.compile("\\{\\{(\\w+)}}");
+
+    private final String baseUrl;
+    private final List<Journey> journeys;
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong iterations = new AtomicLong();
+
+    LoadRunner(String baseUrl, List<Journey> journeys) {
+        this.baseUrl = baseUrl;
+        this.journeys = journeys;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        List<Journey> journeys = PostmanJourneys.load(System.getProperty("load.collections", PostmanJourneys.DEFAULT_LOCATION));
+        String baseUrl = System.getProperty("load.base-url");
+        MongoDBContainer mongo = null;
+        ConfigurableApplicationContext app = null;
+        try {
+            if (baseUrl == null) {
+                SpringApplicationBuilder builder = new SpringApplicationBuilder(StateMachineBankWorkflowApplication.class)
+                        .properties("server.port=0");
+                if ("mongo".equals(System.getProperty("load.store"))) {
+                    mongo = new MongoDBContainer("mongo:7");
+                    mongo.start();
+                    builder.properties("spring.data.mongodb.uri=" + mongo.getReplicaSetUrl("bankworkflow"));
+                } else {
+                    builder.profiles("memory");
+                }
+                app = builder.run();
+                baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+            System.out.printf("Replaying %d journeys against %s: %s%n", journeys.size(), baseUrl, settings);
+            LoadReport report = new LoadRunner(baseUrl, journeys).run(settings);
+            System.out.print(report.format(settings.duration().toMillis() / 1000.0));
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (mongo != null) {
+                mongo.stop();
+            }
+        }
+    }
+
+    /**
+     * Runs {@code settings.users()} virtual users for warm-up plus duration; only the latter is reported.
+     */
+    LoadReport run(Settings settings) throws InterruptedException {
+        Map<ProcessType, List<Journey>> byType = new EnumMap<>(ProcessType.class);
+        journeys.forEach(j -> byType.computeIfAbsent(j.type(), t -> new ArrayList<>()).add(j));
+        List<ProcessType> weighted = new ArrayList<>();
+        settings.mix().forEach((type, weight) -> {
+            if (!byType.containsKey(type)) {
+                throw new IllegalArgumentException("No journey for " + type);
+            }
+            for (int i = 0; i < weight; i++) {
+                weighted.add(type);
+            }
+        });
+
+        LoadReport warmup = new LoadReport();
+        LoadReport measured = new LoadReport();
+        long measureFrom = System.nanoTime() + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+        ExecutorService users = Executors.newFixedThreadPool(settings.users());
+        for (int u = 0; u < settings.users(); u++) {
+            users.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    List<Journey> candidates = byType.get(weighted.get(random.nextInt(weighted.size())));
+                    Journey journey = candidates.get(random.nextInt(candidates.size()));
+                    replay(journey, settings.thinkTime(), System.nanoTime() < measureFrom ? warmup : measured);
+                }
+            });
+        }
+        users.shutdown();
+        if (!users.awaitTermination(settings.warmup().plus(settings.duration()).toSeconds() + 60, TimeUnit.SECONDS)) {
+            users.shutdownNow();
+        }
+        return measured;
+    }
+
+    /**
+     * Replays one journey; it is abandoned at the first unexpected response.
+     *
+     * @return whether every step got the expected response
+     */
+    boolean replay(Journey journey, Duration thinkTime, LoadReport report) {
+        String clientSuffix = "-" + iterations.incrementAndGet();
+        Map<String, String> variables = new HashMap<>();
+        variables.put("baseUrl", baseUrl);
+        for (Step step : journey.steps()) {
+            step.aliases().forEach((name, source) -> variables.put(name, variables.get(source)));
+            long started = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<String> response = http.send(request(step, variables, clientSuffix),
+                        HttpResponse.BodyHandlers.ofString());
+                ok = step.accepts(response.statusCode());
+                if (ok && !step.captures().isEmpty()) {
+                    JsonNode json = objectMapper.readTree(response.body());
+                    String id = (json.isArray() ? json.path(0) : json).path("id").asText();
+                    step.captures().forEach(name -> variables.put(name, id));
+                }
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            report.record(step.endpoint(), System.nanoTime() - started, ok);
+            if (!ok) {
+                report.journey(false);
+                return false;
+            }
+            if (!thinkTime.isZero()) {
+                try {
+                    Thread.sleep(thinkTime.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        report.journey(true);
+        return true;
+    }
+
+    private static HttpRequest request(Step step, Map<String, String> variables, String clientSuffix) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(substitute(step.url(), variables)))
+                .timeout(Duration.ofSeconds(30));
+        if (step.body() == null) {
+            return request.method(step.method(), HttpRequest.BodyPublishers.noBody()).build();
+        }
+        String body = CLIENT_ID.matcher(substitute(step.body(), variables))
+                .replaceAll(m -> Matcher.quoteReplacement(m.group(1) + m.group(2) + clientSuffix + "\""));
+        return request.header("Content-Type", "application/json")
+                .method(step.method(), HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String substitute(String template, Map<String, String> variables) {
+        return VARIABLE.matcher(template).replaceAll(m -> Matcher.quoteReplacement(
+                variables.getOrDefault(m.group(1), m.group())));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.state_machine.load;
+
+import com.example.state_machine.load.PostmanJourneys.Journey;
+import com.example.state_machine.model.ProcessType;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "flows.warmup.iterations=0")
+@ActiveProfiles("memory")
+class LoadRunnerTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void load_FindsAJourneyPerProcessTypeWithIdCapture() throws Exception {
+        List<Journey> journeys = PostmanJourneys.load(PostmanJourneys.DEFAULT_LOCATION);
+
+        assertEquals(EnumSet.allOf(ProcessType.class), journeys.stream().map(Journey::type)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(ProcessType.class))));
+        for (Journey journey : journeys) {
+            assertFalse(journey.steps().get(0).captures().isEmpty(), journey.name());
+            assertTrue(journey.steps().stream().skip(1).allMatch(s -> s.endpoint().contains("{id}")), journey.name());
+        }
+    }
+
+    @Test
+    void replay_EveryJourneySucceedsAgainstTheApp() throws Exception {
+        List<Journey> journeys = PostmanJourneys.load(PostmanJourneys.DEFAULT_LOCATION);
+        LoadRunner runner = new LoadRunner("http://localhost:" + port, journeys);
+        LoadReport report = new LoadReport();
+
+        List<String> failed = journeys.stream()
+                .filter(j -> !runner.replay(j, Duration.ZERO, report))
+                .map(Journey::name)
+                .toList();
+
+        assertEquals(List.of(), failed, report.format(1));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.state_machine.load;
+
+import com.example.state_machine.model.ProcessType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the Postman collections in {@code attach/} into replayable journeys: one per folder that starts a
+ * process. The collections' JavaScript is not run; the two idioms they use are recognised instead —
+ * {@code pm.*.set('x', json.id)} in test scripts captures the new process id ({@code json[0].id}: the first
+ * one of a list), and
+ * {@code pm.*.set('x', pm.*.get('y'))} in pre-request scripts aliases a variable. Requests expect
+ * {@code pm.response.to.have.status(...)} when present, any 2xx otherwise.
+ */
+final class PostmanJourneys {
+
+    static final String DEFAULT_LOCATION = "classpath*:attach/*.json";
+
+    record Step(String name, String method, String url, String body, String endpoint, int expectedStatus,
+                Map<String, String> aliases, List<String> captures) {
+
+        boolean accepts(int status) {
+            return expectedStatus > 0 ? status == expectedStatus : status / 100 == 2;
+        }
+    }
+
+    record Journey(String name, ProcessType type, List<Step> steps) {
+    }
+
+    private static final Pattern CAPTURE = Pattern.compile("\\.set\\('(\\w+)',\\s*\\w+(?:\\[0])?\\.id\\)");
+    private static final Pattern ALIAS = Pattern.compile("\\.set\\('(\\w+)',\\s*pm\\.\\w+\\.get\\('(\\w+)'\\)\\)");
+    private static final Pattern STATUS = Pattern.compile("have\\.status\\((\\d{3})\\)");
+    private static final Pattern VARIABLE = Pattern.compile("\\{\\{(\\w+)}}");
+
+    private PostmanJourneys() {
+    }
+
+    static List<Journey> load(String location) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Journey> journeys = new ArrayList<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location)) {
+            try (InputStream in = resource.getInputStream()) {
+                JsonNode collection = mapper.readTree(in);
+                for (JsonNode folder : collection.path("item")) {
+                    Journey journey = journey(mapper, folder);
+                    if (journey != null) {
+                        journeys.add(journey);
+                    }
+                }
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * @return {@code null} for folders that do not start with a process start (shared or negative requests)
+     */
+    private static Journey journey(ObjectMapper mapper, JsonNode folder) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        for (JsonNode item : folder.path("item")) {
+            if (item.has("request")) {
+                steps.add(step(item));
+            }
+        }
+        if (steps.isEmpty() || !steps.get(0).url().endsWith("/start")) {
+            return null;
+        }
+        Step start = steps.get(0);
+        ProcessType type = start.url().endsWith("/conversion/start")
+                ? ProcessType.MINOR_TO_REGULAR
+                : ProcessType.valueOf(mapper.readTree(start.body()).path("type").asText());
+        if (steps.stream().anyMatch(step -> step.url().endsWith("/owners"))) {
+            type = ProcessType.CO_OWNER; // started by the parent it joins
+        }
+        return new Journey(folder.path("name").asText(), type, List.copyOf(steps));
+    }
+
+    private static Step step(JsonNode item) {
+        JsonNode request = item.path("request");
+        JsonNode url = request.path("url");
+        String rawUrl = url.isTextual() ? url.asText() : url.path("raw").asText();
+        String method = request.path("method").asText("GET");
+
+        Map<String, String> aliases = new LinkedHashMap<>();
+        List<String> captures = new ArrayList<>();
+        int expectedStatus = 0;
+        for (JsonNode event : item.path("event")) {
+            String script = String.join("\n", texts(event.path("script").path("exec")));
+            if ("prerequest".equals(event.path("listen").asText())) {
+                Matcher m = ALIAS.matcher(script);
+                while (m.find()) {
+                    aliases.put(m.group(1), m.group(2));
+                }
+            } else {
+                Matcher m = CAPTURE.matcher(script);
+                while (m.find()) {
+                    captures.add(m.group(1));
+                }
+                Matcher s = STATUS.matcher(script);
+                if (s.find()) {
+                    expectedStatus = Integer.parseInt(s.group(1));
+                }
+            }
+        }
+        String path = rawUrl.replace("{{baseUrl}}", "");
+        String endpoint = method + " " + VARIABLE.matcher(path).replaceAll("{id}");
+        String body = request.path("body").path("raw").asText(null);
+        return new Step(item.path("name").asText(), method, rawUrl, body, endpoint, expectedStatus,
+                Map.copyOf(aliases), List.copyOf(captures));
+    }
+
+    private static List<String> texts(JsonNode array) {
+        List<String> lines = new ArrayList<>();
+        array.forEach(line -> lines.add(line.asText()));
+        return lines;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.state_machine.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final LogRateLimiter limiter = new LogRateLimiter(2, now::get);
+
+    @Test
+    void tryAcquire_LetsThroughThePermitsPerSecond_ThenReportsWhatWasDropped() {
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+
+        now.addAndGet(1_000_000_000L);
+
+        assertEquals(2, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+    }
+
+    @Test
+    void tryAcquire_DropsEverything_WhenNoPermits() {
+        LogRateLimiter off = new LogRateLimiter(0, now::get);
+
+        assertEquals(-1, off.tryAcquire());
+        assertThrows(IllegalArgumentException.class, () -> new LogRateLimiter(-1));
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoProcessStoreTest {
+
+    @Mock
+    private ProcessInstanceRepository repository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @InjectMocks
+    private MongoProcessStore store;
+
+    @Test
+    void insertAll_MapsBulkWriteErrorsToItemIndexes() {
+        IndexOperations indexOps = mock(IndexOperations.class);
+        when(mongoTemplate.getCollectionName(ProcessInstance.class)).thenReturn("process_instances");
+        when(mongoTemplate.indexOps("process_instances")).thenReturn(indexOps);
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, ProcessInstance.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        BulkOperationException failure = mock(BulkOperationException.class);
+        String duplicateId = "E11000 duplicate key error collection: bankworkflow.process_instances index: _id_ dup key: { _id: \"b\" }";
+        String active = "E11000 duplicate key error collection: bankworkflow.process_instances index: active_client_type_scope dup key: { clientId: \"c\", type: \"MINOR_TO_REGULAR\", activeScope: \"m1\" }";
+        when(failure.getErrors()).thenReturn(List.of(
+                new BulkWriteError(11000, duplicateId, new BsonDocument(), 1),
+                new BulkWriteError(11000, active, new BsonDocument(), 2),
+                new BulkWriteError(121, "Document failed validation", new BsonDocument(), 3)));
+        when(bulkOperations.execute()).thenThrow(failure);
+
+        Map<Integer, InsertError> errors = store.insertAll(List.of(new ProcessInstance(), new ProcessInstance(),
+                new ProcessInstance(), new ProcessInstance()));
+
+        assertEquals(Map.of(
+                1, new InsertError(InsertError.Reason.DUPLICATE_ID, duplicateId),
+                2, new InsertError(InsertError.Reason.ACTIVE_EXISTS, active),
+                3, new InsertError(InsertError.Reason.OTHER, "Document failed validation")), errors);
+        verify(indexOps).createIndex(argThat(index -> MongoProcessStore.ACTIVE_INDEX.equals(index.getIndexOptions().getString("name"))));
+    }
+
+    @Test
+    void insertAll_SkipsTheBulkWriteForAnEmptyChunk() {
+        assertTrue(store.insertAll(List.of()).isEmpty());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void archive_CopiesThenDeletesAndKeepsProcessesThatChangedMeanwhile() {
+        ProcessInstance done = ProcessInstance.builder().id("a").type(ProcessType.SINGLE_OWNER)
+                .state(ProcessState.ACCOUNT_CREATED).updatedAt(Instant.parse("2024-01-01T00:00:00Z")).build();
+        ProcessInstance revived = done.toBuilder().id("b").state(ProcessState.STARTED).build();
+        BulkOperations copy = mock(BulkOperations.class);
+        BulkOperations delete = mock(BulkOperations.class);
+        IndexOperations indexOps = mock(IndexOperations.class);
+        when(mongoTemplate.getCollectionName(ProcessInstance.class)).thenReturn("process_instances");
+        when(mongoTemplate.indexOps("process_instances")).thenReturn(indexOps);
+        when(mongoTemplate.find(any(Query.class), eq(ProcessInstance.class)))
+                .thenReturn(List.of(done, revived))
+                .thenReturn(List.of(revived));
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, ProcessInstance.class, MongoProcessStore.ARCHIVE_COLLECTION)).thenReturn(copy);
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, ProcessInstance.class)).thenReturn(delete);
+        BulkWriteResult deleted = mock(BulkWriteResult.class);
+        when(deleted.getDeletedCount()).thenReturn(1);
+        when(delete.execute()).thenReturn(deleted);
+
+        List<String> archived = store.archive(new ArchivePolicy(
+                Map.of(ProcessType.SINGLE_OWNER, Set.of(ProcessState.ACCOUNT_CREATED)), Instant.now(), Instant.now()), 10);
+
+        assertEquals(List.of("a"), archived);
+        verify(indexOps).createIndex(argThat(index -> index.getIndexKeys().keySet().equals(Set.of("type", "state", "updatedAt"))));
+        verify(copy, times(2)).replaceOne(any(Query.class), any(ProcessInstance.class), any(FindAndReplaceOptions.class));
+        verify(copy).execute();
+        verify(delete, times(2)).remove(any(Query.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(MongoProcessStore.ARCHIVE_COLLECTION));
+    }
+
+    @Test
+    void patchVariables_IsOneConditionalUpdateReturningThePatchedKeysBefore() {
+        ProcessInstance before = ProcessInstance.builder().id("a").state(ProcessState.STARTED).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProcessInstance.class)))
+                .thenReturn(before);
+        Instant now = Instant.parse("2025-06-01T00:00:00Z");
+
+        Optional<ProcessInstance> result = store.patchVariables("a", new VariablesPatch(Map.of("firstName", "Jane"),
+                Set.of("riskLevel"), Map.of(ProcessType.SINGLE_OWNER, Set.of(2)), ProcessState.STARTED, now));
+
+        assertSame(before, result.orElseThrow());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), eq(ProcessInstance.class));
+        verifyNoMoreInteractions(mongoTemplate);
+        assertEquals("a", query.getValue().getQueryObject().get("_id"));
+        assertEquals(ProcessState.STARTED, query.getValue().getQueryObject().get("state"));
+        assertEquals(1, query.getValue().getFieldsObject().get("variables.riskLevel"));
+        assertEquals(new Document("variables.firstName", "Jane").append("updatedAt", now),
+                update.getValue().getUpdateObject().get("$set", Document.class));
+        assertEquals(new Document("variables.riskLevel", 1), update.getValue().getUpdateObject().get("$unset", Document.class));
+        assertFalse(options.getValue().isReturnNew());
+    }
+
+    @Test
+    void addPendingChildren_IsOneConditionalIncrementReturningTheCount() {
+        ProcessInstance after = ProcessInstance.builder().id("a").state(ProcessState.WAITING_FOR_ALL_OWNERS).pendingChildren(2).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProcessInstance.class)))
+                .thenReturn(after);
+
+        Optional<ProcessInstance> result = store.addPendingChildren("a", ProcessState.WAITING_FOR_ALL_OWNERS, 2);
+
+        assertSame(after, result.orElseThrow());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), eq(ProcessInstance.class));
+        assertEquals(ProcessState.WAITING_FOR_ALL_OWNERS, query.getValue().getQueryObject().get("state"));
+        assertEquals(1, query.getValue().getFieldsObject().get("pendingChildren"));
+        assertEquals(new Document("pendingChildren", 2).append("revision", 1),
+                update.getValue().getUpdateObject().get("$inc", Document.class));
+        assertTrue(options.getValue().isReturnNew());
+    }
+
+    @Test
+    void findArchivedIds_LooksTheIdsUpInTheArchiveInOneQuery() {
+        when(mongoTemplate.find(any(Query.class), eq(ProcessInstance.class), eq(MongoProcessStore.ARCHIVE_COLLECTION)))
+                .thenReturn(List.of(ProcessInstance.builder().id("m1-regular").build()));
+
+        assertEquals(Set.of("m1-regular"), store.findArchivedIds(List.of("m1-regular", "m2-regular")));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(ProcessInstance.class), eq(MongoProcessStore.ARCHIVE_COLLECTION));
+        assertEquals(new Document("_id", new Document("$in", List.of("m1-regular", "m2-regular"))),
+                query.getValue().getQueryObject());
+        assertEquals(new Document("_id", 1), query.getValue().getFieldsObject());
+    }
+
+    @Test
+    void findByDateVariable_CreatesTheIndexOnFirstUseAndPagesById() {
+        IndexOperations indexOps = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(MongoProcessStore.ARCHIVE_COLLECTION)).thenReturn(indexOps);
+        LocalDate day = LocalDate.parse("2007-06-10");
+
+        store.findByDateVariable(ProcessType.MINOR, ProcessState.MINOR_ACCOUNT_IDENTIFIED, "dateOfBirth", day, true, "m1", 100);
+        store.findByDateVariable(ProcessType.MINOR, ProcessState.MINOR_ACCOUNT_IDENTIFIED, "dateOfBirth", day, true, "m9", 100);
+
+        verify(indexOps, times(1)).createIndex(argThat(index -> index.getIndexKeys().keySet()
+                .equals(Set.of("type", "state", "variables.dateOfBirth", "_id"))));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(query.capture(), eq(ProcessInstance.class), eq(MongoProcessStore.ARCHIVE_COLLECTION));
+        Document criteria = query.getAllValues().get(0).getQueryObject();
+        assertEquals(day, criteria.get("variables.dateOfBirth"));
+        assertEquals(new Document("$gt", "m1"), criteria.get("_id"));
+        assertEquals(new Document("_id", 1), query.getAllValues().get(0).getSortObject());
+        assertEquals(100, query.getAllValues().get(0).getLimit());
+    }
+
+    @Test
+    void insertOrGetActive_UpsertsOnTheActiveProcessBehindAPartialUniqueIndex() {
+        IndexOperations indexOps = mock(IndexOperations.class);
+        IndexInfo legacy = mock(IndexInfo.class);
+        when(legacy.getName()).thenReturn("active_client_type");
+        when(indexOps.getIndexInfo()).thenReturn(List.of(legacy));
+        when(mongoTemplate.getCollectionName(ProcessInstance.class)).thenReturn("process_instances");
+        when(mongoTemplate.indexOps("process_instances")).thenReturn(indexOps);
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        ProcessInstance existing = ProcessInstance.builder().id("66a0c0ffee0000000000abcd").build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProcessInstance.class)))
+                .thenThrow(new DuplicateKeyException("E11000")).thenReturn(existing);
+        ProcessInstance instance = ProcessInstance.builder().id("66a0c0ffee0000000000beef").clientId("c1")
+                .type(ProcessType.SINGLE_OWNER).state(ProcessState.STARTED).active(true).build();
+
+        assertSame(existing, store.insertOrGetActive(instance));
+
+        verify(indexOps).dropIndex("active_client_type");
+        verify(indexOps).createIndex(argThat(index -> index.getIndexKeys().keySet().equals(Set.of("clientId", "type", "activeScope"))
+                && index.getIndexOptions().getBoolean("unique")
+                && new Document("active", true).equals(index.getIndexOptions().get("partialFilterExpression"))));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate, times(2)).findAndModify(query.capture(), update.capture(), options.capture(), eq(ProcessInstance.class));
+        assertEquals(Boolean.TRUE, query.getValue().getQueryObject().get("active"));
+        assertTrue(query.getValue().getQueryObject().containsKey("activeScope"));
+        Document onInsert = update.getValue().getUpdateObject().get("$setOnInsert", Document.class);
+        assertTrue(onInsert.containsKey("_id") && onInsert.containsKey("state"));
+        assertFalse(onInsert.containsKey("clientId") || onInsert.containsKey("active"));
+        assertTrue(options.getValue().isUpsert() && options.getValue().isReturnNew());
+    }
+
+    @Test
+    void migrateFlowVersion_CreatesTheIndexOnceAndMovesBatchesUntilNoneIsLeft() {
+        IndexOperations indexOps = mock(IndexOperations.class);
+        when(mongoTemplate.getCollectionName(ProcessInstance.class)).thenReturn("process_instances");
+        when(mongoTemplate.indexOps("process_instances")).thenReturn(indexOps);
+        when(mongoTemplate.find(any(Query.class), eq(ProcessInstance.class)))
+                .thenReturn(List.of(ProcessInstance.builder().id("a").build()))
+                .thenReturn(List.of());
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ProcessInstance.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        assertEquals(1, store.migrateFlowVersion(ProcessType.SINGLE_OWNER, 1, 2, Set.of(ProcessState.STARTED), 100));
+        store.countOnFlowVersion(ProcessType.SINGLE_OWNER, 1);
+
+        verify(indexOps, times(1)).createIndex(argThat(index -> index.getIndexKeys().keySet()
+                .equals(Set.of("type", "flowVersion", "state"))));
+        verify(mongoTemplate).updateMulti(any(Query.class), argThat(update -> update.modifies("flowVersion")
+                && update.modifies("updatedAt")), eq(ProcessInstance.class));
+    }
+
+    @Test
+    void replace_OnlyMatchesTheProcessAsItWasLoaded() {
+        ProcessInstance instance = ProcessInstance.builder().id("a").flowVersion(2).build();
+        Instant loadedAt = Instant.parse("2025-06-01T00:00:00Z");
+        when(mongoTemplate.replace(any(Query.class), eq(instance))).thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertFalse(store.replace(instance, 1, loadedAt));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).replace(query.capture(), eq(instance));
+        assertEquals(new Document("_id", "a").append("flowVersion", 1).append("updatedAt", loadedAt)
+                .append("revision", null), query.getValue().getQueryObject());
+        assertNull(instance.getRevision(), "left as loaded when nothing was replaced");
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.state_machine.repository;
+
+import com.example.state_machine.cluster.PartitionInvalidated;
+import com.example.state_machine.cluster.PartitionManager;
+import com.example.state_machine.cluster.PartitionReleased;
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.memory.InMemoryProcessStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionCachingProcessStoreTest {
+
+    @Mock
+    private ProcessStore delegate;
+
+    @Mock
+    private PartitionManager partitions;
+
+    private PartitionCachingProcessStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new PartitionCachingProcessStore(delegate, partitions, 100, 4);
+        lenient().when(partitions.partitionOf(any())).thenReturn(1);
+    }
+
+    @Test
+    void findById_ServesOwnedProcessesFromMemoryAfterTheFirstRead() {
+        when(partitions.owns("p1")).thenReturn(true);
+        when(delegate.findById("p1")).thenReturn(Optional.of(instance("p1", ProcessState.STARTED)));
+
+        store.findById("p1").orElseThrow().getVariables().put("mutated", true);
+        ProcessInstance second = store.findById("p1").orElseThrow();
+
+        verify(delegate, times(1)).findById("p1");
+        assertEquals(Map.of(), second.getVariables(), "callers get copies");
+
+        when(delegate.replace(any(), isNull(), isNull())).thenReturn(true);
+        assertTrue(store.replace(instance("p1", ProcessState.KYC_IN_PROGRESS), null, null));
+        assertEquals(ProcessState.KYC_IN_PROGRESS, store.findById("p1").orElseThrow().getState());
+        verify(delegate, times(1)).findById("p1");
+    }
+
+    @Test
+    void findById_GoesToMongoForForeignOrReleasedPartitions() {
+        when(partitions.owns("p1")).thenReturn(false, true, true);
+        when(delegate.findById("p1")).thenReturn(Optional.of(instance("p1", ProcessState.STARTED)));
+
+        store.findById("p1"); // not owned: not cached
+        store.findById("p1"); // owned: cached
+        store.onPartitionReleased(new PartitionReleased(1));
+        store.findById("p1");
+
+        verify(delegate, times(3)).findById("p1");
+    }
+
+    @Test
+    void replace_Evicts_WhenTheCachedProcessWasMigratedElsewhere() {
+        when(partitions.owns("p1")).thenReturn(true);
+        when(delegate.findById("p1")).thenReturn(Optional.of(instance("p1", ProcessState.STARTED)));
+        ProcessInstance cached = store.findById("p1").orElseThrow();
+        when(delegate.replace(cached, null, null)).thenReturn(false); // moved to another flow version meanwhile
+
+        cached.setState(ProcessState.KYC_IN_PROGRESS);
+        assertFalse(store.replace(cached, null, null));
+
+        store.findById("p1");
+        verify(delegate, times(2)).findById("p1");
+        verify(delegate, never()).save(any());
+    }
+
+    @Test
+    void replace_KeepsTheMigration_WhenTheCacheWasEvictedBetweenReadAndSave() throws IOException {
+        InMemoryProcessStore backend = new InMemoryProcessStore(new ObjectMapper().findAndRegisterModules(), "",
+                DataSize.ofMegabytes(1), Duration.ofMinutes(5));
+        store = new PartitionCachingProcessStore(backend, partitions, 100, 4);
+        when(partitions.owns("p1")).thenReturn(true);
+        backend.save(instance("p1", ProcessState.STARTED).toBuilder().type(ProcessType.SINGLE_OWNER).flowVersion(1).build());
+
+        ProcessInstance read = store.findById("p1").orElseThrow();
+        store.migrateFlowVersion(ProcessType.SINGLE_OWNER, 1, 2, Set.of(ProcessState.STARTED), 10);
+        store.onPartitionInvalidated(new PartitionInvalidated(1)); // nothing cached any more to fence against
+        read.setState(ProcessState.KYC_IN_PROGRESS);
+
+        assertFalse(store.replace(read, read.getFlowVersion(), read.getUpdatedAt()));
+        ProcessInstance stored = backend.findById("p1").orElseThrow();
+        assertEquals(2, stored.getFlowVersion());
+        assertEquals(ProcessState.STARTED, stored.getState());
+    }
+
+    @Test
+    void migrateFlowVersion_InvalidatesEveryPartitionAndDropsItsEntriesWhenTold() {
+        when(partitions.owns("p1")).thenReturn(true);
+        when(delegate.findById("p1")).thenReturn(Optional.of(instance("p1", ProcessState.STARTED)));
+        when(delegate.migrateFlowVersion(any(), anyInt(), anyInt(), any(), anyInt())).thenReturn(3L);
+        when(delegate.archive(any(), anyInt())).thenReturn(List.of("p1"));
+        store.findById("p1");
+
+        store.migrateFlowVersion(ProcessType.SINGLE_OWNER, 1, 2, Set.of(ProcessState.STARTED), 10);
+        store.archive(mock(ArchivePolicy.class), 10);
+        verify(partitions).invalidateAll();
+        verify(partitions).invalidate(List.of("p1"));
+
+        store.findById("p1"); // the listener has not run: still cached
+        store.onPartitionInvalidated(new PartitionInvalidated(1));
+        store.findById("p1");
+        verify(delegate, times(2)).findById("p1");
+    }
+
+    private static ProcessInstance instance(String id, ProcessState state) {
+        return ProcessInstance.builder().id(id).state(state).variables(new HashMap<>()).build();
+    }
+}
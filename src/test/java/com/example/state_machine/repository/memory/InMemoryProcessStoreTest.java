@@ -0,0 +1,266 @@
+package com.example.state_machine.repository.memory;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.InsertError;
+import com.example.state_machine.repository.VariablesPatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryProcessStoreTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @TempDir
+    Path dir;
+
+    private InMemoryProcessStore open(Path directory) throws IOException {
+        return new InMemoryProcessStore(objectMapper, directory == null ? "" : directory.toString(),
+                DataSize.ofKilobytes(1), Duration.ofHours(1));
+    }
+
+    private static ProcessInstance process(String clientId) {
+        return ProcessInstance.builder()
+                .clientId(clientId)
+                .type(ProcessType.SINGLE_OWNER)
+                .state(ProcessState.STARTED)
+                .variables(new HashMap<>(Map.of("firstName", "John")))
+                .build();
+    }
+
+    @Test
+    void save_AssignsIdAndKeepsACopy() throws IOException {
+        InMemoryProcessStore store = open(null);
+        ProcessInstance saved = store.save(process("c1"));
+        saved.getVariables().put("lastName", "Doe"); // not saved
+
+        ProcessInstance loaded = store.findById(saved.getId()).orElseThrow();
+
+        assertEquals(24, saved.getId().length());
+        assertEquals(Map.of("firstName", "John"), loaded.getVariables());
+        assertNotSame(loaded, store.findById(saved.getId()).orElseThrow());
+    }
+
+    @Test
+    void findProjectedById_ReturnsOnlyRequestedFieldsAndVariables() throws IOException {
+        InMemoryProcessStore store = open(null);
+        ProcessInstance p = process("c1");
+        p.getVariables().put("lastName", "Doe");
+        String id = store.save(p).getId();
+
+        ProcessInstance view = store.findProjectedById(id, List.of("state", "variables.lastName")).orElseThrow();
+
+        assertEquals(ProcessState.STARTED, view.getState());
+        assertNull(view.getClientId());
+        assertNull(view.getCreatedAt());
+        assertEquals(Map.of("lastName", "Doe"), view.getVariables());
+    }
+
+    @Test
+    void insertAll_ReportsDuplicateIds() throws IOException {
+        InMemoryProcessStore store = open(null);
+        ProcessInstance first = process("c1");
+        first.setId("a");
+        ProcessInstance duplicate = process("c2");
+        duplicate.setId("a");
+
+        Map<Integer, InsertError> errors = store.insertAll(List.of(first, process("c3"), duplicate));
+
+        assertEquals(Set.of(2), errors.keySet());
+        assertEquals(InsertError.Reason.DUPLICATE_ID, errors.get(2).reason());
+        assertEquals("c1", store.findById("a").orElseThrow().getClientId());
+    }
+
+    @Test
+    void replace_KeepsTheProcessWhenItMovedToAnotherFlowVersion() throws IOException {
+        InMemoryProcessStore store = open(null);
+        ProcessInstance p = store.save(process("c1").toBuilder().flowVersion(1).build());
+        store.migrateFlowVersion(ProcessType.SINGLE_OWNER, 1, 2, Set.of(ProcessState.STARTED), 10);
+
+        p.setState(ProcessState.KYC_IN_PROGRESS);
+        assertFalse(store.replace(p, 1, p.getUpdatedAt()));
+        ProcessInstance migrated = store.findById(p.getId()).orElseThrow();
+        assertEquals(1L, migrated.getRevision());
+        migrated.setState(ProcessState.KYC_IN_PROGRESS);
+        assertTrue(store.replace(migrated, 2, migrated.getUpdatedAt()));
+        assertEquals(2L, migrated.getRevision());
+        assertFalse(store.replace(p.toBuilder().id("gone").build(), 1, p.getUpdatedAt()));
+
+        assertEquals(ProcessState.KYC_IN_PROGRESS, store.findById(p.getId()).orElseThrow().getState());
+    }
+
+    @Test
+    void replace_KeepsAPatchThatLandedAfterTheProcessWasRead() throws IOException {
+        InMemoryProcessStore store = open(null);
+        ProcessInstance read = store.save(process("c1").toBuilder().flowVersion(1)
+                .updatedAt(Instant.parse("2025-06-01T00:00:00Z")).build());
+        store.patchVariables(read.getId(), new VariablesPatch(Map.of("lastName", "Doe"), Set.of(),
+                Map.of(ProcessType.SINGLE_OWNER, Set.of(1)), null, Instant.parse("2025-06-01T00:00:01Z")));
+
+        read.setState(ProcessState.KYC_IN_PROGRESS);
+        assertFalse(store.replace(read, 1, read.getUpdatedAt()), "the event's copy misses the patch");
+
+        ProcessInstance stored = store.findById(read.getId()).orElseThrow();
+        assertEquals("Doe", stored.getVariables().get("lastName"));
+        assertEquals(ProcessState.STARTED, stored.getState());
+        assertEquals(1L, stored.getRevision());
+    }
+
+    @Test
+    void migrateFlowVersion_MovesOnlyCompatibleProcesses_TreatingMissingVersionAsOne() throws IOException {
+        InMemoryProcessStore store = open(null);
+        Instant before = Instant.now().minusSeconds(60);
+        String legacy = store.save(process("legacy").toBuilder().updatedAt(before).build()).getId();
+        ProcessInstance elsewhere = process("other-state");
+        elsewhere.setState(ProcessState.FILL_PERSONAL_DETAILS);
+        store.save(elsewhere);
+
+        long migrated = store.migrateFlowVersion(ProcessType.SINGLE_OWNER, 1, 2, Set.of(ProcessState.STARTED), 10);
+
+        assertEquals(1, migrated);
+        assertEquals(1, store.countOnFlowVersion(ProcessType.SINGLE_OWNER, 1));
+        assertEquals(1, store.countOnFlowVersion(ProcessType.SINGLE_OWNER, 2));
+        assertTrue(store.findById(legacy).orElseThrow().getUpdatedAt().isAfter(before), "a migration is a change");
+    }
+
+    @Test
+    void patchVariables_MergesNestedValuesOnlyInTheExpectedState() throws IOException {
+        InMemoryProcessStore store = open(null);
+        ProcessInstance saved = process("c1");
+        saved.getVariables().put("address", Map.of("city", "Oslo", "zip", "0150"));
+        String id = store.save(saved).getId();
+        Instant now = Instant.parse("2025-06-01T00:00:00Z");
+        VariablesPatch patch = new VariablesPatch(Map.of("address.city", "Bergen", "lastName", "Doe"), Set.of("address.zip"),
+                Map.of(ProcessType.SINGLE_OWNER, Set.of(1)), ProcessState.STARTED, now);
+
+        ProcessInstance before = store.patchVariables(id, patch).orElseThrow();
+        Optional<ProcessInstance> otherState = store.patchVariables(id, new VariablesPatch(Map.of("firstName", "X"), Set.of(),
+                Map.of(ProcessType.SINGLE_OWNER, Set.of(1)), ProcessState.KYC_IN_PROGRESS, now));
+
+        assertEquals(Map.of("address", Map.of("city", "Oslo", "zip", "0150")), before.getVariables());
+        assertTrue(otherState.isEmpty());
+        ProcessInstance loaded = store.findById(id).orElseThrow();
+        assertEquals(Map.of("firstName", "John", "lastName", "Doe", "address", Map.of("city", "Bergen")), loaded.getVariables());
+        assertEquals(now, loaded.getUpdatedAt());
+    }
+
+    @Test
+    void addPendingChildren_CountsAtomicallyOnlyInTheRequiredState() throws IOException {
+        InMemoryProcessStore store = open(null);
+        String id = store.save(process("c1")).getId();
+
+        ProcessInstance counted = store.addPendingChildren(id, ProcessState.STARTED, 2).orElseThrow();
+        Optional<ProcessInstance> otherState = store.addPendingChildren(id, ProcessState.WAITING_FOR_ALL_OWNERS, 1);
+        ProcessInstance down = store.addPendingChildren(id, null, -1).orElseThrow();
+
+        assertEquals(2, counted.getPendingChildren());
+        assertEquals(ProcessState.STARTED, counted.getState());
+        assertNull(counted.getVariables(), "only type, state and pendingChildren");
+        assertTrue(otherState.isEmpty());
+        assertEquals(1, down.getPendingChildren());
+        assertEquals(1, store.findById(id).orElseThrow().getPendingChildren());
+        assertTrue(store.addPendingChildren("missing", null, 1).isEmpty());
+    }
+
+    @Test
+    void findByDateVariable_PagesThroughTheMatchesById() throws IOException {
+        InMemoryProcessStore store = open(null);
+        LocalDate day = LocalDate.parse("2007-06-10");
+        for (int i = 0; i < 3; i++) {
+            ProcessInstance minor = process("minor-" + i);
+            minor.setType(ProcessType.MINOR);
+            minor.getVariables().put("dateOfBirth", i < 2 ? day : day.plusDays(1));
+            store.save(minor);
+        }
+
+        List<ProcessInstance> first = store.findByDateVariable(ProcessType.MINOR, ProcessState.STARTED, "dateOfBirth", day, false, null, 1);
+        List<ProcessInstance> second = store.findByDateVariable(ProcessType.MINOR, ProcessState.STARTED, "dateOfBirth", day, false,
+                first.get(0).getId(), 1);
+        List<ProcessInstance> end = store.findByDateVariable(ProcessType.MINOR, ProcessState.STARTED, "dateOfBirth", day, false,
+                second.get(0).getId(), 1);
+
+        assertEquals(Map.of("dateOfBirth", day), first.get(0).getVariables());
+        assertTrue(first.get(0).getId().compareTo(second.get(0).getId()) < 0);
+        assertTrue(end.isEmpty());
+    }
+
+    @Test
+    void insertOrGetActive_ReturnsTheActiveProcessUntilItFinishes() throws IOException {
+        InMemoryProcessStore store = open(dir);
+        ProcessInstance first = process("c1").toBuilder().id("a1").active(true).build();
+        assertSame(first, store.insertOrGetActive(first));
+
+        ProcessInstance again = store.insertOrGetActive(process("c1").toBuilder().id("a2").active(true).build());
+        assertEquals("a1", again.getId());
+        assertTrue(store.findById("a2").isEmpty());
+        assertEquals("a3", store.insertOrGetActive(process("c2").toBuilder().id("a3").active(true).build()).getId());
+        assertEquals(InsertError.Reason.ACTIVE_EXISTS,
+                store.insertAll(List.of(process("c1").toBuilder().id("a4").active(true).build())).get(0).reason());
+
+        first.setState(ProcessState.ACCOUNT_CREATED);
+        first.setActive(null);
+        store.save(first);
+        assertEquals("a5", store.insertOrGetActive(process("c1").toBuilder().id("a5").active(true).build()).getId());
+
+        InMemoryProcessStore recovered = open(dir); // the journal rebuilds who is active
+        assertEquals("a5", recovered.insertOrGetActive(process("c1").toBuilder().id("a6").active(true).build()).getId());
+    }
+
+    @Test
+    void insertOrGetActive_KeepsOneActiveProcessPerScope() throws IOException {
+        InMemoryProcessStore store = open(null);
+        ProcessInstance minor1 = process("c1").toBuilder().id("a1").active(true).activeScope("minor-1").build();
+        ProcessInstance minor2 = process("c1").toBuilder().id("a2").active(true).activeScope("minor-2").build();
+
+        assertEquals("a1", store.insertOrGetActive(minor1).getId());
+        assertEquals("a2", store.insertOrGetActive(minor2).getId());
+        assertEquals("a1", store.insertOrGetActive(minor1.toBuilder().id("a3").build()).getId());
+    }
+
+    @Test
+    void reopen_RecoversFromJournalAndSnapshots() throws IOException {
+        InMemoryProcessStore store = open(dir);
+        ProcessInstance p = store.save(process("c1"));
+        store.snapshot();
+        p.setState(ProcessState.FILL_PERSONAL_DETAILS);
+        store.save(p);
+        for (int i = 0; i < 50; i++) {
+            store.save(process("bulk-" + i)); // outgrows the 1 KB mapping
+        }
+        // no destroy(): simulates a crash after the writes reached the mapping
+
+        InMemoryProcessStore recovered = open(dir);
+
+        assertEquals(ProcessState.FILL_PERSONAL_DETAILS, recovered.findById(p.getId()).orElseThrow().getState());
+        assertEquals(51, recovered.countOnFlowVersion(ProcessType.SINGLE_OWNER, 1));
+        assertEquals("John", recovered.findById(p.getId()).orElseThrow().getVariables().get("firstName"));
+
+        recovered.destroy(); // final snapshot supersedes every older file
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.filter(f -> f.getFileName().toString().startsWith("snapshot-")).count());
+        }
+        assertEquals(51, open(dir).countOnFlowVersion(ProcessType.SINGLE_OWNER, 1));
+    }
+}
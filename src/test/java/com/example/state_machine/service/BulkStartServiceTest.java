@@ -0,0 +1,134 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.InsertError;
+import com.example.state_machine.repository.ProcessStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkStartServiceTest {
+
+    @Mock
+    private FlowService flowService;
+
+    @Mock
+    private ProcessStore store;
+
+    @Mock
+    private ProcessStats stats;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void startAll_ReportsItemsTheStoreRejected() throws Exception {
+        when(flowService.newProcess(eq("c1"), eq(ProcessType.SINGLE_OWNER), any()))
+                .thenAnswer(inv -> ProcessInstance.builder().clientId("c1").type(ProcessType.SINGLE_OWNER).build());
+        when(store.insertAll(anyList())).thenReturn(Map.of(1, new InsertError(InsertError.Reason.DUPLICATE_ID, "E11000 duplicate key error")));
+
+        String ndjson = """
+                {"clientId":"c1","type":"SINGLE_OWNER"}
+                {"clientId":"c1","type":"SINGLE_OWNER"}
+                """;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BulkStartService(flowService, store, stats, objectMapper, 10)
+                .startAll(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonNode> results = out.toString(StandardCharsets.UTF_8).lines().map(this::parse).toList();
+        assertTrue(results.get(0).has("id"));
+        assertEquals("E11000 duplicate key error", results.get(1).get("error").asText());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ProcessInstance>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(store).insertAll(inserted.capture());
+        verify(flowService).releaseBlobs(inserted.getValue().get(1));
+        verify(flowService, never()).releaseBlobs(inserted.getValue().get(0));
+    }
+
+    @Test
+    void startAll_ReturnsTheClientsActiveProcess_LikeASingleStart() throws Exception {
+        when(flowService.newProcess(eq("c1"), eq(ProcessType.SINGLE_OWNER), any()))
+                .thenAnswer(inv -> ProcessInstance.builder().clientId("c1").type(ProcessType.SINGLE_OWNER).active(true).build());
+        when(store.insertAll(anyList())).thenReturn(Map.of(0, new InsertError(InsertError.Reason.ACTIVE_EXISTS, "E11000")));
+        when(store.insertOrGetActive(any())).thenReturn(ProcessInstance.builder().id("active-1").build());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BulkStartService(flowService, store, stats, objectMapper, 10).startAll(new ByteArrayInputStream(
+                "{\"clientId\":\"c1\",\"type\":\"SINGLE_OWNER\"}\n".getBytes(StandardCharsets.UTF_8)), out);
+
+        JsonNode result = parse(out.toString(StandardCharsets.UTF_8).strip());
+        assertEquals("active-1", result.get("id").asText());
+        assertFalse(result.has("error"));
+        verify(flowService).releaseBlobs(any());
+        verifyNoInteractions(stats);
+    }
+
+    @Test
+    void startAll_RejectsCoOwnerItems() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BulkStartService(flowService, store, stats, objectMapper, 10).startAll(new ByteArrayInputStream(
+                "{\"clientId\":\"c1\",\"type\":\"CO_OWNER\"}\n".getBytes(StandardCharsets.UTF_8)), out);
+
+        JsonNode result = parse(out.toString(StandardCharsets.UTF_8).strip());
+        assertTrue(result.get("error").asText().contains("/owners"));
+        verify(flowService, never()).newProcess(any(), any(), any());
+        verify(store).insertAll(List.of());
+    }
+
+    @Test
+    void startAll_InsertsValidItemsInChunks_AndReportsEveryLineInOrder() throws Exception {
+        when(flowService.newProcess(eq("c1"), eq(ProcessType.SINGLE_OWNER), any()))
+                .thenReturn(ProcessInstance.builder().clientId("c1").type(ProcessType.SINGLE_OWNER).state(ProcessState.STARTED).build());
+        when(flowService.newConversion("c2", "minor-1", null))
+                .thenReturn(ProcessInstance.builder().clientId("c2").type(ProcessType.MINOR_TO_REGULAR)
+                        .state(ProcessState.MINOR_ACCOUNT_IDENTIFIED).build());
+        when(flowService.newProcess(eq(""), eq(ProcessType.MINOR), any()))
+                .thenThrow(new IllegalArgumentException("clientId must not be blank"));
+        when(store.insertAll(anyList())).thenReturn(Map.of());
+
+        String ndjson = """
+                {"clientId":"c1","type":"SINGLE_OWNER","initialData":{"accountType":"CHECKING"}}
+                {"clientId":"c2","type":"NO_SUCH_TYPE"}
+
+                {"clientId":"c2","type":"MINOR_TO_REGULAR","minorAccountId":"minor-1"}
+                {"clientId":"","type":"MINOR"}
+                """;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BulkStartService(flowService, store, stats, objectMapper, 2)
+                .startAll(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonNode> results = out.toString(StandardCharsets.UTF_8).lines().map(this::parse).toList();
+        assertEquals(4, results.size());
+        assertEquals(1, results.get(0).get("line").asInt());
+        assertEquals(24, results.get(0).get("id").asText().length());
+        assertTrue(results.get(1).get("error").asText().startsWith("Invalid JSON"));
+        assertEquals(4, results.get(2).get("line").asInt());
+        assertTrue(results.get(2).has("id"));
+        assertEquals("clientId must not be blank", results.get(3).get("error").asText());
+        verify(store, times(2)).insertAll(argThat(l -> l.size() == 1));
+    }
+
+    private JsonNode parse(String line) {
+        try {
+            return objectMapper.readTree(line);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
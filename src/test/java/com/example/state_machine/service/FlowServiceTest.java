@@ -1,23 +1,41 @@
 package com.example.state_machine.service;
 
+import com.example.state_machine.flow.CompiledFlow;
+import com.example.state_machine.flow.FlowCatalog;
+import com.example.state_machine.flow.FlowDefinition;
+import com.example.state_machine.flow.FlowRegistry;
+import com.example.state_machine.flow.VariableSchema;
+import com.example.state_machine.flow.VariableType;
 import com.example.state_machine.model.*;
-import com.example.state_machine.repository.ProcessInstanceRepository;
+import com.example.state_machine.repository.ProcessStore;
+import com.example.state_machine.repository.VariablesPatch;
+import com.example.state_machine.service.advance.PreconditionError;
+import com.example.state_machine.service.advance.PreconditionRegistry;
+import com.example.state_machine.service.advance.PreconditionsNotMetException;
+import com.example.state_machine.service.advance.StepPlan;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.statemachine.ExtendedState;
 import org.springframework.statemachine.StateMachine;
 import org.springframework.statemachine.access.StateMachineAccess;
 import org.springframework.statemachine.access.StateMachineAccessor;
-import org.springframework.statemachine.config.StateMachineFactory;
 import org.springframework.statemachine.state.State;
 import org.springframework.statemachine.support.DefaultExtendedState;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,14 +46,38 @@ import static org.mockito.Mockito.*;
 class FlowServiceTest {
 
     @Mock
-    private ProcessInstanceRepository repository;
+    private ProcessStore store;
 
     @Mock
-    private StateMachineFactory<ProcessState, ProcessEvent> stateMachineFactory;
+    private FlowRegistry flows;
+
+    @Mock
+    private CompiledFlow flow;
 
     @Mock
     private org.springframework.statemachine.StateMachinePersist<ProcessState, ProcessEvent, String> stateMachinePersist;
 
+    @Mock
+    private VariableBlobStore blobs;
+
+    @Mock
+    private ApplicationEventPublisher events;
+
+    @Mock
+    private ProcessStats stats;
+
+    @Mock
+    private StepPlan stepPlan;
+
+    @Mock
+    private PreconditionRegistry preconditions;
+
+    @Spy
+    private ObservationRegistry observations = ObservationRegistry.create();
+
+    @Spy
+    private ProcessHistory history = new ProcessHistory(10);
+
     @InjectMocks
     private FlowService flowService;
 
@@ -48,6 +90,11 @@ class FlowServiceTest {
     @Captor
     private ArgumentCaptor<ProcessInstance> processInstanceCaptor;
 
+    @BeforeEach
+    void stubVariableSchema() {
+        lenient().when(flow.getVariables()).thenReturn(VariableSchema.EMPTY);
+    }
+
     // --- helpers to fully mock the SM internals used by FlowService ---
     private void wireStateMachineMock() {
         // Extended state is a real mutable impl so FlowService can put vars/guards
@@ -73,23 +120,19 @@ class FlowServiceTest {
         // getState will be set per-test via when(stateMachine.getState()).thenReturn(state)
     }
 
+    private void stubInitialState(ProcessType type, ProcessState initial) {
+        when(flows.flow(type)).thenReturn(flow);
+        when(flow.getInitial()).thenReturn(initial);
+    }
+
     @Test
     void startProcess_CreatesNewInstance_WithSingleOwnerType() {
         Map<String, Object> initialData = Map.of("accountType", "CHECKING");
         String clientId = "client123";
         ProcessType type = ProcessType.SINGLE_OWNER;
 
-        ProcessInstance expectedInstance = ProcessInstance.builder()
-                .id("1")
-                .clientId(clientId)
-                .type(type)
-                .state(ProcessState.STARTED)
-                .variables(initialData)
-                .createdAt(Instant.now())
-                .updatedAt(Instant.now())
-                .build();
-
-        when(repository.save(any(ProcessInstance.class))).thenReturn(expectedInstance);
+        stubInitialState(type, ProcessState.STARTED);
+        when(store.insertOrGetActive(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
 
         ProcessInstance result = flowService.startProcess(clientId, type, initialData);
 
@@ -97,31 +140,52 @@ class FlowServiceTest {
         assertEquals(type, result.getType());
         assertEquals(clientId, result.getClientId());
         assertEquals(initialData, result.getVariables());
+        assertNotNull(result.getId());
+        assertEquals(Boolean.TRUE, result.getActive());
+        verify(stats).started(type, ProcessState.STARTED);
+    }
+
+    @Test
+    void startProcess_ReturnsTheActiveProcess_WhenTheClientAlreadyHasOne() {
+        stubInitialState(ProcessType.SINGLE_OWNER, ProcessState.STARTED);
+        ProcessInstance active = ProcessInstance.builder().id("existing").clientId("client123").type(ProcessType.SINGLE_OWNER)
+                .state(ProcessState.KYC_IN_PROGRESS).active(true).build();
+        when(store.insertOrGetActive(any(ProcessInstance.class))).thenReturn(active);
+
+        ProcessInstance result = flowService.startProcess("client123", ProcessType.SINGLE_OWNER, Map.of());
+
+        assertSame(active, result);
+        verify(stats, never()).started(any(), any());
+        verify(store, never()).replace(any(), any(), any());
     }
 
     @Test
     void startProcess_CreatesNewInstance_WithMinorType() {
         Map<String, Object> initialData = Map.of("parentId", "parent123");
 
-        when(repository.save(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
+        stubInitialState(ProcessType.MINOR, ProcessState.STARTED);
+        when(flow.getVersion()).thenReturn(2);
+        when(store.insertOrGetActive(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
 
         flowService.startProcess("minor123", ProcessType.MINOR, initialData);
 
-        verify(repository).save(processInstanceCaptor.capture());
+        verify(store).insertOrGetActive(processInstanceCaptor.capture());
         ProcessInstance savedInstance = processInstanceCaptor.getValue();
 
         assertEquals(ProcessState.STARTED, savedInstance.getState());
         assertEquals(ProcessType.MINOR, savedInstance.getType());
+        assertEquals(2, savedInstance.getFlowVersion());
         assertEquals(initialData, savedInstance.getVariables());
     }
 
     @Test
     void startProcess_CreatesNewInstance_WithEmptyInitialData() {
-        when(repository.save(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
+        stubInitialState(ProcessType.SINGLE_OWNER, ProcessState.STARTED);
+        when(store.insertOrGetActive(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
 
         flowService.startProcess("client123", ProcessType.SINGLE_OWNER, null);
 
-        verify(repository).save(processInstanceCaptor.capture());
+        verify(store).insertOrGetActive(processInstanceCaptor.capture());
         ProcessInstance savedInstance = processInstanceCaptor.getValue();
 
         assertEquals(Map.of(), savedInstance.getVariables());
@@ -141,6 +205,14 @@ class FlowServiceTest {
         );
     }
 
+    @Test
+    void startProcess_IsRejectedForCoOwners() {
+        assertThrows(IllegalArgumentException.class, () ->
+                flowService.startProcess("client123", ProcessType.CO_OWNER, Map.of())
+        );
+        verifyNoInteractions(store);
+    }
+
     @Test
     void handleEvent_UpdatesState_WhenEventAccepted() {
         wireStateMachineMock();
@@ -155,9 +227,10 @@ class FlowServiceTest {
                 .updatedAt(Instant.now())
                 .build();
 
-        when(repository.findById("123")).thenReturn(Optional.of(existingInstance));
-        when(repository.save(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(stateMachineFactory.getStateMachine("123")).thenReturn(stateMachine);
+        when(store.findById("123")).thenReturn(Optional.of(existingInstance));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(true);
+        when(flows.flow(ProcessType.SINGLE_OWNER, null)).thenReturn(flow);
+        when(flow.getStateMachine("123")).thenReturn(stateMachine);
 
         when(stateMachine.sendEvent(ProcessEvent.SUBMIT_PERSONAL)).thenReturn(true);
         when(stateMachine.getState()).thenReturn(state);
@@ -171,6 +244,34 @@ class FlowServiceTest {
         assertEquals("John", updatedInstance.getVariables().get("firstName"));
         assertEquals("Doe", updatedInstance.getVariables().get("lastName"));
         assertTrue(updatedInstance.getUpdatedAt().isAfter(updatedInstance.getCreatedAt()));
+        verify(events).publishEvent(ProcessStateChanged.local(updatedInstance));
+        verify(stats).transitioned(ProcessType.SINGLE_OWNER, ProcessState.STARTED, ProcessState.FILL_PERSONAL_DETAILS);
+    }
+
+    @Test
+    void handleEvent_Returns409_WhenTheProcessWasMigratedBetweenReadAndSave() {
+        wireStateMachineMock();
+
+        ProcessInstance existingInstance = ProcessInstance.builder()
+                .id("123")
+                .type(ProcessType.SINGLE_OWNER)
+                .state(ProcessState.STARTED)
+                .variables(Map.of())
+                .build();
+
+        when(store.findById("123")).thenReturn(Optional.of(existingInstance));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(false);
+        when(flows.flow(ProcessType.SINGLE_OWNER, null)).thenReturn(flow);
+        when(flow.getStateMachine("123")).thenReturn(stateMachine);
+        when(stateMachine.sendEvent(ProcessEvent.SUBMIT_PERSONAL)).thenReturn(true);
+        when(stateMachine.getState()).thenReturn(state);
+        when(state.getId()).thenReturn(ProcessState.FILL_PERSONAL_DETAILS);
+
+        assertThrows(OptimisticLockingFailureException.class, () ->
+                flowService.handleEvent("123", ProcessEvent.SUBMIT_PERSONAL, Map.of("firstName", "John")));
+
+        verify(store, never()).save(any());
+        verify(events, never()).publishEvent(any(Object.class));
     }
 
     @Test
@@ -184,8 +285,9 @@ class FlowServiceTest {
                 .variables(Map.of())
                 .build();
 
-        when(repository.findById("123")).thenReturn(Optional.of(existingInstance));
-        when(stateMachineFactory.getStateMachine("123")).thenReturn(stateMachine);
+        when(store.findById("123")).thenReturn(Optional.of(existingInstance));
+        when(flows.flow(ProcessType.SINGLE_OWNER, null)).thenReturn(flow);
+        when(flow.getStateMachine("123")).thenReturn(stateMachine);
         when(stateMachine.sendEvent(ProcessEvent.CREATE_ACCOUNT)).thenReturn(false);
 
         assertThrows(IllegalStateException.class, () ->
@@ -207,9 +309,10 @@ class FlowServiceTest {
                 .updatedAt(Instant.now().minusSeconds(60))
                 .build();
 
-        when(repository.findById("123")).thenReturn(Optional.of(existingInstance));
-        when(repository.save(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(stateMachineFactory.getStateMachine("123")).thenReturn(stateMachine);
+        when(store.findById("123")).thenReturn(Optional.of(existingInstance));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(true);
+        when(flows.flow(ProcessType.SINGLE_OWNER, null)).thenReturn(flow);
+        when(flow.getStateMachine("123")).thenReturn(stateMachine);
 
         when(stateMachine.sendEvent(ProcessEvent.SUBMIT_PERSONAL)).thenReturn(true);
         when(stateMachine.getState()).thenReturn(state);
@@ -242,9 +345,10 @@ class FlowServiceTest {
                 "riskLevel", "LOW"
         );
 
-        when(repository.findById(processId)).thenReturn(Optional.of(existingInstance));
-        when(repository.save(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(stateMachineFactory.getStateMachine(processId)).thenReturn(stateMachine);
+        when(store.findById(processId)).thenReturn(Optional.of(existingInstance));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(true);
+        when(flows.flow(ProcessType.SINGLE_OWNER, null)).thenReturn(flow);
+        when(flow.getStateMachine(processId)).thenReturn(stateMachine);
 
         when(stateMachine.sendEvent(ProcessEvent.KYC_VERIFIED)).thenReturn(true);
         when(stateMachine.getState()).thenReturn(state);
@@ -276,9 +380,10 @@ class FlowServiceTest {
                 "livenessScore", "0.98"
         );
 
-        when(repository.findById(processId)).thenReturn(Optional.of(existingInstance));
-        when(repository.save(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(stateMachineFactory.getStateMachine(processId)).thenReturn(stateMachine);
+        when(store.findById(processId)).thenReturn(Optional.of(existingInstance));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(true);
+        when(flows.flow(ProcessType.SINGLE_OWNER, null)).thenReturn(flow);
+        when(flow.getStateMachine(processId)).thenReturn(stateMachine);
 
         when(stateMachine.sendEvent(ProcessEvent.BIOMETRY_SUCCESS)).thenReturn(true);
         when(stateMachine.getState()).thenReturn(state);
@@ -310,9 +415,10 @@ class FlowServiceTest {
                 "consentDate", "2025-08-09"
         );
 
-        when(repository.findById(processId)).thenReturn(Optional.of(existingInstance));
-        when(repository.save(any(ProcessInstance.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(stateMachineFactory.getStateMachine(processId)).thenReturn(stateMachine);
+        when(store.findById(processId)).thenReturn(Optional.of(existingInstance));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(true);
+        when(flows.flow(ProcessType.MINOR, null)).thenReturn(flow);
+        when(flow.getStateMachine(processId)).thenReturn(stateMachine);
 
         when(stateMachine.sendEvent(ProcessEvent.PARENT_APPROVED)).thenReturn(true);
         when(stateMachine.getState()).thenReturn(state);
@@ -327,10 +433,240 @@ class FlowServiceTest {
 
     @Test
     void handleEvent_ThrowsException_WhenProcessNotFound() {
-        when(repository.findById("nonexistent")).thenReturn(Optional.empty());
+        when(store.findById("nonexistent")).thenReturn(Optional.empty());
 
         assertThrows(NoSuchElementException.class, () ->
                 flowService.handleEvent("nonexistent", ProcessEvent.SUBMIT_PERSONAL, Map.of())
         );
     }
+
+    @Test
+    void getProcess_FallsBackToTheArchive() {
+        ProcessInstance archived = ProcessInstance.builder().id("old").state(ProcessState.ACCOUNT_CREATED).build();
+        when(store.findProjectedById("old", List.of("state"))).thenReturn(Optional.empty());
+        when(store.findArchivedById("old", List.of("state"))).thenReturn(Optional.of(archived));
+        when(store.findArchivedById("missing", null)).thenReturn(Optional.empty());
+
+        assertSame(archived, flowService.getProcess("old", List.of("state")));
+        assertThrows(NoSuchElementException.class, () -> flowService.getProcess("missing"));
+    }
+
+    @Test
+    void handleEvent_Back_RestoresThePreviousStateAndVariables() {
+        wireStateMachineMock();
+        Map<String, Object> variables = new HashMap<>(Map.of("firstName", "Jon", "answers", "yes"));
+        ProcessInstance instance = ProcessInstance.builder()
+                .id("123")
+                .type(ProcessType.MULTI_OWNER)
+                .state(ProcessState.ANSWER_ACCOUNT_QUESTIONS)
+                .variables(variables)
+                .history(List.of(new HistoryFrame(ProcessState.FILL_PERSONAL_DETAILS, Map.of("firstName", "John"), List.of("answers"))))
+                .build();
+        when(store.findById("123")).thenReturn(Optional.of(instance));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(true);
+        when(flows.flow(ProcessType.MULTI_OWNER, null)).thenReturn(flow);
+        when(flow.backTarget(ProcessState.ANSWER_ACCOUNT_QUESTIONS)).thenReturn(Optional.of(ProcessState.FILL_PERSONAL_DETAILS));
+        when(flow.getStateMachine("123")).thenReturn(stateMachine);
+        when(stateMachine.sendEvent(ProcessEvent.BACK)).thenReturn(true);
+        when(stateMachine.getState()).thenReturn(state);
+        when(state.getId()).thenReturn(ProcessState.FILL_PERSONAL_DETAILS);
+
+        ProcessInstance result = flowService.handleEvent("123", ProcessEvent.BACK, Map.of());
+
+        assertEquals(ProcessState.FILL_PERSONAL_DETAILS, result.getState());
+        assertEquals(Map.of("firstName", "John"), result.getVariables());
+        assertTrue(result.getHistory().isEmpty());
+        verify(stats).transitioned(ProcessType.MULTI_OWNER, ProcessState.ANSWER_ACCOUNT_QUESTIONS, ProcessState.FILL_PERSONAL_DETAILS);
+    }
+
+    @Test
+    void handleEvent_Back_IsRejectedWithoutHistory() {
+        ProcessInstance instance = ProcessInstance.builder()
+                .id("123")
+                .type(ProcessType.MULTI_OWNER)
+                .state(ProcessState.ANSWER_ACCOUNT_QUESTIONS)
+                .build();
+        when(store.findById("123")).thenReturn(Optional.of(instance));
+        when(flows.flow(ProcessType.MULTI_OWNER, null)).thenReturn(flow);
+        when(flow.backTarget(ProcessState.ANSWER_ACCOUNT_QUESTIONS)).thenReturn(Optional.of(ProcessState.FILL_PERSONAL_DETAILS));
+
+        assertThrows(IllegalStateException.class, () -> flowService.handleEvent("123", ProcessEvent.BACK, Map.of()));
+        verify(store, never()).replace(any(), any(), any());
+        verify(flow, never()).getStateMachine(any());
+    }
+
+    @Test
+    void newConversion_IsActivePerMinorAccount() {
+        when(flows.flow(ProcessType.MINOR_TO_REGULAR)).thenReturn(flow);
+
+        ProcessInstance conversion = flowService.newConversion("guardian", "minor-1", Map.of());
+
+        assertEquals(Boolean.TRUE, conversion.getActive());
+        assertEquals("minor-1", conversion.getActiveScope());
+        assertEquals("minor-1", conversion.getVariables().get("linkedMinorAccountId"));
+    }
+
+    @Test
+    void patchVariables_WritesOneConditionalUpdateWithoutReading() {
+        FlowCatalog catalog = mock(FlowCatalog.class);
+        when(flows.current()).thenReturn(catalog);
+        when(catalog.versions(any())).thenReturn(List.of());
+        when(catalog.versions(ProcessType.SINGLE_OWNER)).thenReturn(List.of(flow));
+        when(flow.getVersion()).thenReturn(1);
+        when(store.patchVariables(eq("123"), any())).thenReturn(Optional.of(
+                ProcessInstance.builder().state(ProcessState.FILL_PERSONAL_DETAILS).variables(Map.of("firstName", "Jon")).build()));
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("firstName", "Jane");
+        patch.put("riskLevel", null);
+
+        ProcessInstance result = flowService.patchVariables("123", patch, ProcessState.FILL_PERSONAL_DETAILS);
+
+        ArgumentCaptor<VariablesPatch> update = ArgumentCaptor.forClass(VariablesPatch.class);
+        verify(store).patchVariables(eq("123"), update.capture());
+        verify(store, never()).findById(any());
+        assertEquals(Map.of("firstName", "Jane"), update.getValue().set());
+        assertEquals(Set.of("riskLevel"), update.getValue().unset());
+        assertEquals(Map.of(ProcessType.SINGLE_OWNER, Set.of(1)), update.getValue().flows());
+        assertEquals(ProcessState.FILL_PERSONAL_DETAILS, update.getValue().expectedState());
+        assertEquals("123", result.getId());
+        assertEquals(update.getValue().updatedAt(), result.getUpdatedAt());
+    }
+
+    @Test
+    void patchVariables_ReadsTheFlowVersionOnly_WhenTheVersionsStoreTheValuesDifferently() {
+        CompiledFlow typed = mock(CompiledFlow.class);
+        when(typed.getVariables()).thenReturn(new VariableSchema(
+                Map.of("dateOfBirth", new FlowDefinition.VariableDefinition(VariableType.DATE, null))));
+        when(typed.getVersion()).thenReturn(2);
+        when(flow.getVersion()).thenReturn(1);
+        FlowCatalog catalog = mock(FlowCatalog.class);
+        when(flows.current()).thenReturn(catalog);
+        when(catalog.versions(any())).thenReturn(List.of());
+        when(catalog.versions(ProcessType.SINGLE_OWNER)).thenReturn(List.of(flow, typed));
+        when(store.findProjectedById("123", List.of("type", "flowVersion")))
+                .thenReturn(Optional.of(ProcessInstance.builder().type(ProcessType.SINGLE_OWNER).flowVersion(2).build()));
+        when(store.patchVariables(eq("123"), any())).thenReturn(Optional.of(ProcessInstance.builder().variables(Map.of()).build()));
+
+        flowService.patchVariables("123", Map.of("dateOfBirth", "1990-01-01"), null);
+
+        ArgumentCaptor<VariablesPatch> update = ArgumentCaptor.forClass(VariablesPatch.class);
+        verify(store, times(1)).patchVariables(eq("123"), update.capture());
+        assertEquals(Map.of("dateOfBirth", LocalDate.of(1990, 1, 1)), update.getValue().set());
+        assertEquals(Map.of(ProcessType.SINGLE_OWNER, Set.of(2)), update.getValue().flows());
+    }
+
+    @Test
+    void patchVariables_Returns409_WhenTheProcessIsInAnotherState() {
+        FlowCatalog catalog = mock(FlowCatalog.class);
+        when(flows.current()).thenReturn(catalog);
+        when(catalog.versions(any())).thenReturn(List.of(flow));
+        when(store.patchVariables(eq("123"), any())).thenReturn(Optional.empty());
+        when(store.findProjectedById("123", List.of("type", "flowVersion", "state")))
+                .thenReturn(Optional.of(ProcessInstance.builder().type(ProcessType.SINGLE_OWNER).state(ProcessState.KYC_IN_PROGRESS).build()));
+
+        PreconditionsNotMetException e = assertThrows(PreconditionsNotMetException.class,
+                () -> flowService.patchVariables("123", Map.of("firstName", "Jane"), ProcessState.FILL_PERSONAL_DETAILS));
+
+        assertEquals(ProcessState.KYC_IN_PROGRESS, e.getState());
+    }
+
+    @Test
+    void addOwners_CountsTheParentUpBeforeStartingTheChildren() {
+        stubInitialState(ProcessType.CO_OWNER, ProcessState.STARTED);
+        when(store.addPendingChildren("p1", ProcessState.WAITING_FOR_ALL_OWNERS, 2))
+                .thenReturn(Optional.of(ProcessInstance.builder().state(ProcessState.WAITING_FOR_ALL_OWNERS).pendingChildren(2).build()));
+        when(store.insertAll(anyList())).thenReturn(Map.of());
+
+        List<ProcessInstance> children = flowService.addOwners("p1", Map.of("owner-a", Map.of(), "owner-b", Map.of()));
+
+        assertEquals(2, children.size());
+        for (ProcessInstance child : children) {
+            assertEquals("p1", child.getParentId());
+            assertTrue(child.getId().startsWith("p1" + ProcessInstance.CHILD_ID_SEPARATOR));
+            assertEquals(ProcessType.CO_OWNER, child.getType());
+        }
+        InOrder order = inOrder(store);
+        order.verify(store).addPendingChildren("p1", ProcessState.WAITING_FOR_ALL_OWNERS, 2);
+        order.verify(store).insertAll(children);
+        verify(stats, times(2)).started(ProcessType.CO_OWNER, ProcessState.STARTED);
+    }
+
+    @Test
+    void addOwners_IsRejected_WhenTheParentIsNotWaitingForOwners() {
+        stubInitialState(ProcessType.CO_OWNER, ProcessState.STARTED);
+        when(store.addPendingChildren("p1", ProcessState.WAITING_FOR_ALL_OWNERS, 1)).thenReturn(Optional.empty());
+        when(store.findProjectedById("p1", List.of("state")))
+                .thenReturn(Optional.of(ProcessInstance.builder().state(ProcessState.BIOMETRY_VERIFIED).build()));
+
+        assertThrows(IllegalStateException.class, () -> flowService.addOwners("p1", Map.of("owner-a", Map.of())));
+
+        verify(store, never()).insertAll(any());
+    }
+
+    @Test
+    void handleEvent_LastOwnerFinishing_JoinsTheParent() {
+        wireStateMachineMock();
+        ProcessInstance child = ProcessInstance.builder().id("p1-c").clientId("owner-a").type(ProcessType.CO_OWNER)
+                .state(ProcessState.WAITING_FOR_BIOMETRY).parentId("p1").build();
+        ProcessInstance parent = ProcessInstance.builder().id("p1").clientId("client").type(ProcessType.MULTI_OWNER)
+                .state(ProcessState.WAITING_FOR_ALL_OWNERS).pendingChildren(0).build();
+        when(store.findById("p1-c")).thenReturn(Optional.of(child));
+        when(store.findById("p1")).thenReturn(Optional.of(parent));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(true);
+        when(store.addPendingChildren("p1", null, -1)).thenReturn(Optional.of(parent));
+        when(flows.flow(any(), isNull())).thenReturn(flow);
+        when(flow.isTerminal(any())).thenAnswer(inv -> inv.getArgument(0) == ProcessState.BIOMETRY_VERIFIED);
+        when(flow.getStateMachine(anyString())).thenReturn(stateMachine);
+        when(stepPlan.next(ProcessType.MULTI_OWNER, null, ProcessState.WAITING_FOR_ALL_OWNERS))
+                .thenReturn(Optional.of(ProcessEvent.CONFIRM_ALL_OWNERS));
+        when(preconditions.validateAll(eq(parent), eq(ProcessEvent.CONFIRM_ALL_OWNERS), any())).thenReturn(List.of());
+        when(stateMachine.sendEvent(any(ProcessEvent.class))).thenReturn(true);
+        when(stateMachine.getState()).thenReturn(state);
+        when(state.getId()).thenReturn(ProcessState.BIOMETRY_VERIFIED, ProcessState.ACCOUNT_CREATED);
+
+        ProcessInstance finished = flowService.handleEvent("p1-c", ProcessEvent.BIOMETRY_SUCCESS, Map.of());
+
+        assertEquals(ProcessState.BIOMETRY_VERIFIED, finished.getState());
+        assertEquals(ProcessState.ACCOUNT_CREATED, parent.getState());
+        verify(stateMachine).sendEvent(ProcessEvent.CONFIRM_ALL_OWNERS);
+    }
+
+    @Test
+    void handleEvent_OwnerFinishing_LeavesTheParentWaiting_WhileOthersRunOrPreconditionsFail() {
+        wireStateMachineMock();
+        ProcessInstance child = ProcessInstance.builder().id("p1-c").clientId("owner-a").type(ProcessType.CO_OWNER)
+                .state(ProcessState.WAITING_FOR_BIOMETRY).parentId("p1").build();
+        ProcessInstance parent = ProcessInstance.builder().id("p1").clientId("client").type(ProcessType.MULTI_OWNER)
+                .state(ProcessState.WAITING_FOR_ALL_OWNERS).pendingChildren(0).build();
+        when(store.findById("p1-c")).thenReturn(Optional.of(child));
+        when(store.replace(any(ProcessInstance.class), any(), any())).thenReturn(true);
+        when(flows.flow(ProcessType.CO_OWNER, null)).thenReturn(flow);
+        when(flow.isTerminal(any())).thenAnswer(inv -> inv.getArgument(0) == ProcessState.BIOMETRY_VERIFIED);
+        when(flow.getStateMachine("p1-c")).thenReturn(stateMachine);
+        when(stateMachine.sendEvent(ProcessEvent.BIOMETRY_SUCCESS)).thenReturn(true);
+        when(stateMachine.getState()).thenReturn(state);
+        when(state.getId()).thenReturn(ProcessState.BIOMETRY_VERIFIED);
+
+        // another owner still running
+        when(store.addPendingChildren("p1", null, -1))
+                .thenReturn(Optional.of(parent.toBuilder().pendingChildren(1).build()));
+        flowService.handleEvent("p1-c", ProcessEvent.BIOMETRY_SUCCESS, Map.of());
+        verify(store, never()).findById("p1");
+
+        // the last one, but the parent's totals are missing
+        child.setState(ProcessState.WAITING_FOR_BIOMETRY);
+        when(store.addPendingChildren("p1", null, -1)).thenReturn(Optional.of(parent));
+        when(store.findById("p1")).thenReturn(Optional.of(parent));
+        when(flows.flow(ProcessType.MULTI_OWNER, null)).thenReturn(flow);
+        when(stepPlan.next(ProcessType.MULTI_OWNER, null, ProcessState.WAITING_FOR_ALL_OWNERS))
+                .thenReturn(Optional.of(ProcessEvent.CONFIRM_ALL_OWNERS));
+        when(preconditions.validateAll(eq(parent), eq(ProcessEvent.CONFIRM_ALL_OWNERS), any()))
+                .thenReturn(List.of(new PreconditionError("OWNERS_COUNT_REQUIRED", "Total owners is required")));
+
+        ProcessInstance finished = flowService.handleEvent("p1-c", ProcessEvent.BIOMETRY_SUCCESS, Map.of());
+
+        assertEquals(ProcessState.BIOMETRY_VERIFIED, finished.getState());
+        assertEquals(ProcessState.WAITING_FOR_ALL_OWNERS, parent.getState());
+        verify(stateMachine, never()).sendEvent(ProcessEvent.CONFIRM_ALL_OWNERS);
+    }
 }
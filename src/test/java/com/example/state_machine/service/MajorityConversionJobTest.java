@@ -0,0 +1,144 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.InsertError;
+import com.example.state_machine.repository.ProcessStore;
+import com.example.state_machine.repository.memory.InMemoryCheckpointStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MajorityConversionJobTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-10T03:00:00Z");
+    private static final LocalDate THROUGH = LocalDate.parse("2007-06-10");
+
+    @Mock
+    private FlowService flowService;
+
+    @Mock
+    private ProcessStore store;
+
+    @Mock
+    private ProcessStats stats;
+
+    private final InMemoryCheckpointStore checkpoints = new InMemoryCheckpointStore();
+    private MajorityConversionJob job;
+
+    @BeforeEach
+    void createJob() {
+        job = new MajorityConversionJob(flowService, store, checkpoints, stats, 18, Duration.ofDays(30), 2, 2, 0,
+                Clock.fixed(NOW, ZoneOffset.UTC), Duration.ZERO, () -> true);
+        checkpoints.put(MajorityConversionJob.JOB, THROUGH.minusDays(3).toString());
+        lenient().when(flowService.newConversion(anyString(), anyString(), anyMap())).thenAnswer(inv -> ProcessInstance.builder()
+                .clientId(inv.getArgument(0)).type(ProcessType.MINOR_TO_REGULAR).state(ProcessState.MINOR_ACCOUNT_IDENTIFIED).build());
+    }
+
+    private void minorsBorn(LocalDate day, boolean archived, String... ids) {
+        List<ProcessInstance> minors = Arrays.stream(ids)
+                .map(id -> ProcessInstance.builder().id(id).clientId("client-" + id).build())
+                .toList();
+        // lenient: the workers also ask for the other days, which have no minors
+        lenient().when(store.findByDateVariable(ProcessType.MINOR, ProcessState.MINOR_ACCOUNT_IDENTIFIED, "dateOfBirth", day, archived, null, 2))
+                .thenReturn(minors);
+    }
+
+    @Test
+    void run_ConvertsTheDaysAfterTheCheckpointAndSkipsConvertedMinors() {
+        minorsBorn(THROUGH.minusDays(2), false, "m1", "m2");
+        minorsBorn(THROUGH, true, "m3");
+        // days run in parallel, so answer by batch rather than by call order
+        when(store.insertAll(anyList())).thenAnswer(inv -> inv.<List<?>>getArgument(0).size() == 2
+                ? Map.of(1, new InsertError(InsertError.Reason.DUPLICATE_ID, "Duplicate id: m2-regular")) : Map.of());
+
+        MajorityConversionJob.ConversionResult result = job.run(false);
+
+        assertEquals(new MajorityConversionJob.ConversionResult(THROUGH.minusDays(2), THROUGH, false, 3, 2, 1, true), result);
+        assertEquals(THROUGH, job.checkpoint().orElseThrow());
+        verify(store).insertAll(argThat(c -> c.size() == 2 && c.get(0).getId().equals("m1-regular")));
+        verify(flowService).newConversion("client-m3", "m3", Map.of());
+        verify(stats, times(2)).started(ProcessType.MINOR_TO_REGULAR, ProcessState.MINOR_ACCOUNT_IDENTIFIED);
+    }
+
+    @Test
+    void run_DryRunOnlyCounts() {
+        minorsBorn(THROUGH.minusDays(1), false, "m1", "m2");
+        lenient().when(store.findByDateVariable(ProcessType.MINOR, ProcessState.MINOR_ACCOUNT_IDENTIFIED, "dateOfBirth",
+                THROUGH.minusDays(1), false, "m2", 2)).thenReturn(List.of(ProcessInstance.builder().id("m4").build()));
+
+        MajorityConversionJob.ConversionResult result = job.run(true);
+
+        assertEquals(3, result.candidates());
+        assertEquals(0, result.started());
+        verify(store, never()).insertAll(any());
+        assertEquals(THROUGH.minusDays(3), job.checkpoint().orElseThrow());
+    }
+
+    @Test
+    void run_KeepsTheCheckpointBeforeAFailedDay() {
+        minorsBorn(THROUGH.minusDays(1), false, "m1");
+        when(store.insertAll(anyList())).thenReturn(Map.of(0, new InsertError(InsertError.Reason.OTHER, "connection reset")));
+
+        MajorityConversionJob.ConversionResult result = job.run(false);
+
+        assertFalse(result.complete());
+        assertEquals(THROUGH.minusDays(2), job.checkpoint().orElseThrow());
+    }
+
+    @Test
+    void run_SkipsTheMinor_WhenAConversionOfItIsAlreadyActive() {
+        minorsBorn(THROUGH.minusDays(1), false, "m1");
+        when(store.insertAll(anyList())).thenReturn(Map.of(0, new InsertError(InsertError.Reason.ACTIVE_EXISTS,
+                "E11000 duplicate key error collection: bankworkflow.process_instances index: active_client_type_scope")));
+
+        MajorityConversionJob.ConversionResult result = job.run(false);
+
+        assertTrue(result.complete());
+        assertEquals(1, result.skipped());
+        assertEquals(0, result.started());
+        assertEquals(THROUGH, job.checkpoint().orElseThrow());
+    }
+
+    @Test
+    void run_SkipsTheMinor_WhenItsConversionWasArchived() {
+        minorsBorn(THROUGH.minusDays(1), false, "m1", "m2");
+        when(store.findArchivedIds(anyList())).thenAnswer(inv -> inv.<List<?>>getArgument(0).contains("m1-regular")
+                ? Set.of("m1-regular") : Set.of());
+        when(store.insertAll(anyList())).thenReturn(Map.of());
+
+        MajorityConversionJob.ConversionResult result = job.run(false);
+
+        assertEquals(1, result.started());
+        assertEquals(1, result.skipped());
+        verify(store).insertAll(argThat(c -> c.size() == 1 && c.get(0).getId().equals("m2-regular")));
+        verify(flowService, never()).newConversion("client-m1", "m1", Map.of());
+    }
+
+    @Test
+    void scheduledRun_SkippedOffTheClusterLeader() {
+        new MajorityConversionJob(flowService, store, checkpoints, stats, 18, Duration.ofDays(30), 2, 2, 0,
+                Clock.fixed(NOW, ZoneOffset.UTC), Duration.ZERO, () -> false).runQuietly();
+
+        verifyNoInteractions(store);
+        assertEquals(THROUGH.minusDays(3), job.checkpoint().orElseThrow());
+    }
+}
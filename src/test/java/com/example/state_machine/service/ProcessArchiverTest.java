@@ -0,0 +1,105 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.flow.CompiledFlow;
+import com.example.state_machine.flow.FlowCatalog;
+import com.example.state_machine.flow.FlowDefinition;
+import com.example.state_machine.flow.FlowRegistry;
+import com.example.state_machine.model.ProcessState;
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.ArchivePolicy;
+import com.example.state_machine.repository.ProcessStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessArchiverTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-01T00:00:00Z");
+
+    @Mock
+    private ProcessStore store;
+
+    @Mock
+    private FlowRegistry flows;
+
+    @Mock
+    private FlowCatalog catalog;
+
+    @Test
+    void run_ArchivesBatchesUntilNothingIsLeft() {
+        stubFlows();
+        when(store.archive(any(), eq(2)))
+                .thenReturn(List.of("a", "b"))
+                .thenReturn(List.of("c"))
+                .thenReturn(List.of());
+
+        ProcessArchiver.ArchiveResult result = archiver(100).run();
+
+        assertEquals(new ProcessArchiver.ArchiveResult(3, true), result);
+        verify(store, times(3)).archive(any(), eq(2));
+    }
+
+    @Test
+    void run_StopsAtTheRunLimit() {
+        stubFlows();
+        when(store.archive(any(), anyInt()))
+                .thenReturn(List.of("a", "b"))
+                .thenReturn(List.of("c"));
+
+        ProcessArchiver.ArchiveResult result = archiver(3).run();
+
+        assertEquals(new ProcessArchiver.ArchiveResult(3, false), result);
+        verify(store).archive(any(), eq(1)); // the last batch only asks for what is left
+    }
+
+    @Test
+    void policy_UsesTerminalStatesOfEveryLoadedVersion() {
+        stubFlows();
+
+        ArchivePolicy policy = archiver(100).policy();
+
+        assertEquals(Map.of(ProcessType.SINGLE_OWNER, Set.of(ProcessState.ACCOUNT_CREATED)), policy.terminal());
+        assertEquals(NOW.minus(Duration.ofDays(30)), policy.terminalBefore());
+        assertEquals(NOW.minus(Duration.ofDays(180)), policy.abandonedBefore());
+    }
+
+    @Test
+    void scheduledRun_SkippedOffTheClusterLeader() {
+        archiver(100, false).runQuietly();
+
+        verifyNoInteractions(store, flows);
+    }
+
+    private ProcessArchiver archiver(long maxPerRun) {
+        return archiver(maxPerRun, true);
+    }
+
+    private ProcessArchiver archiver(long maxPerRun, boolean leader) {
+        return new ProcessArchiver(store, flows, 2, Duration.ZERO, maxPerRun, Duration.ofDays(30),
+                Duration.ofDays(180), Clock.fixed(NOW, ZoneOffset.UTC), Duration.ZERO, () -> leader);
+    }
+
+    private void stubFlows() {
+        CompiledFlow flow = mock(CompiledFlow.class);
+        FlowDefinition definition = mock(FlowDefinition.class);
+        when(definition.terminal()).thenReturn(Set.of(ProcessState.ACCOUNT_CREATED));
+        when(flow.getDefinition()).thenReturn(definition);
+        when(flows.current()).thenReturn(catalog);
+        when(catalog.versions(any())).thenReturn(List.of());
+        when(catalog.versions(ProcessType.SINGLE_OWNER)).thenReturn(List.of(flow));
+    }
+}
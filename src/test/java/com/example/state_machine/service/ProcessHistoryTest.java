@@ -0,0 +1,73 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.HistoryFrame;
+import com.example.state_machine.model.ProcessInstance;
+import com.example.state_machine.model.ProcessState;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessHistoryTest {
+
+    private static final Map<String, Object> OLD_SCAN = Map.of(VariableBlobStore.BLOB_ID, "aaaaaaaaaaaaaaaaaaaaaaaa");
+    private static final Map<String, Object> NEW_SCAN = Map.of(VariableBlobStore.BLOB_ID, "bbbbbbbbbbbbbbbbbbbbbbbb");
+
+    @Test
+    void push_KeepsOnlyTheKeysTheStepWrites() {
+        ProcessInstance instance = process(Map.of("firstName", "Jon", "lastName", "Doe"));
+
+        List<Object> released = new ProcessHistory(10).push(instance, ProcessState.FILL_PERSONAL_DETAILS, Set.of("firstName", "age"));
+
+        assertTrue(released.isEmpty());
+        HistoryFrame frame = instance.getHistory().get(0);
+        assertEquals(ProcessState.FILL_PERSONAL_DETAILS, frame.state());
+        assertEquals(Map.of("firstName", "Jon"), frame.previous());
+        assertEquals(List.of("age"), frame.added());
+    }
+
+    @Test
+    void back_UndoesTheStepAndReleasesTheBlobsItWrote() {
+        ProcessHistory history = new ProcessHistory(10);
+        ProcessInstance instance = process(Map.of("idScan", OLD_SCAN));
+        history.push(instance, ProcessState.FILL_PERSONAL_DETAILS, Set.of("idScan", "answers"));
+        instance.getVariables().putAll(Map.of("idScan", NEW_SCAN, "answers", "yes"));
+
+        List<Object> released = history.back(instance);
+
+        assertEquals(List.of(NEW_SCAN), released);
+        assertEquals(Map.of("idScan", OLD_SCAN), instance.getVariables());
+        assertTrue(history.peek(instance).isEmpty());
+    }
+
+    @Test
+    void push_DropsTheOldestFrameBeyondTheDepthAndReleasesItsBlobs() {
+        ProcessHistory history = new ProcessHistory(2);
+        ProcessInstance instance = process(Map.of("idScan", OLD_SCAN));
+        history.push(instance, ProcessState.STARTED, Set.of("idScan"));
+        instance.getVariables().put("idScan", NEW_SCAN);
+        history.push(instance, ProcessState.FILL_PERSONAL_DETAILS, Set.of("firstName"));
+
+        List<Object> released = history.push(instance, ProcessState.ANSWER_ACCOUNT_QUESTIONS, Set.of("answers"));
+
+        assertEquals(List.of(OLD_SCAN), released);
+        assertEquals(List.of(ProcessState.FILL_PERSONAL_DETAILS, ProcessState.ANSWER_ACCOUNT_QUESTIONS),
+                instance.getHistory().stream().map(HistoryFrame::state).toList());
+    }
+
+    @Test
+    void push_WithHistoryOff_ReleasesWhatTheStepOverwrites() {
+        ProcessInstance instance = process(Map.of("idScan", OLD_SCAN));
+
+        assertEquals(List.of(OLD_SCAN), new ProcessHistory(0).push(instance, ProcessState.STARTED, Set.of("idScan")));
+        assertNull(instance.getHistory());
+    }
+
+    private static ProcessInstance process(Map<String, Object> variables) {
+        return ProcessInstance.builder().id("1").variables(new HashMap<>(variables)).build();
+    }
+}
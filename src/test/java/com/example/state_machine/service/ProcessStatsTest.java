@@ -0,0 +1,105 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.model.ProcessType;
+import com.example.state_machine.repository.ProcessStore;
+import com.example.state_machine.repository.StatsStore;
+import com.example.state_machine.repository.StatsStore.StateKey;
+import com.example.state_machine.repository.StatsStore.TransitionKey;
+import com.example.state_machine.repository.memory.InMemoryStatsStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static com.example.state_machine.model.ProcessState.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessStatsTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-01T10:30:00Z");
+    private static final ProcessType TYPE = ProcessType.SINGLE_OWNER;
+
+    @Mock
+    private ProcessStore processes;
+
+    private final InMemoryStatsStore store = new InMemoryStatsStore();
+    private ProcessStats stats;
+
+    @BeforeEach
+    void createStats() {
+        stats = new ProcessStats(store, processes, Clock.fixed(NOW, ZoneOffset.UTC), Duration.ZERO);
+    }
+
+    @Test
+    void flush_WritesSummedOccupancyAndTransitions() {
+        for (int i = 0; i < 3; i++) {
+            stats.started(TYPE, STARTED);
+            stats.transitioned(TYPE, STARTED, KYC_IN_PROGRESS);
+        }
+        stats.transitioned(TYPE, KYC_IN_PROGRESS, WAITING_FOR_BIOMETRY);
+        assertTrue(store.occupancy(TYPE).isEmpty(), "nothing is written before the flush");
+
+        stats.flush();
+
+        assertEquals(Map.of(KYC_IN_PROGRESS, 2L, WAITING_FOR_BIOMETRY, 1L), store.occupancy(TYPE));
+        Instant hour = Instant.parse("2025-06-01T10:00:00Z");
+        assertEquals(Map.of(
+                new TransitionKey(TYPE, null, STARTED, hour), 3L,
+                new TransitionKey(TYPE, STARTED, KYC_IN_PROGRESS, hour), 3L,
+                new TransitionKey(TYPE, KYC_IN_PROGRESS, WAITING_FOR_BIOMETRY, hour), 1L), store.transitions(TYPE, hour, hour.plusSeconds(3600)));
+    }
+
+    @Test
+    void flush_KeepsTheChangesWhenTheWriteFails() {
+        StatsStore failing = mock(StatsStore.class);
+        doThrow(new IllegalStateException("down")).doNothing().when(failing).increment(any(), any());
+        ProcessStats stats = new ProcessStats(failing, processes, Clock.fixed(NOW, ZoneOffset.UTC), Duration.ZERO);
+        stats.started(TYPE, STARTED);
+
+        assertThrows(IllegalStateException.class, stats::flush);
+        stats.flush();
+
+        verify(failing, times(2)).increment(eq(Map.of(new StateKey(TYPE, STARTED), 1L)), argThat(t -> t.size() == 1));
+    }
+
+    @Test
+    void funnel_ReportsTheDropBetweenTwoSteps() {
+        for (int i = 0; i < 10; i++) {
+            stats.started(TYPE, STARTED);
+            stats.transitioned(TYPE, STARTED, KYC_IN_PROGRESS);
+        }
+        for (int i = 0; i < 7; i++) {
+            stats.transitioned(TYPE, KYC_IN_PROGRESS, WAITING_FOR_BIOMETRY);
+        }
+        stats.flush();
+
+        ProcessStats.Funnel funnel = stats.funnel(TYPE, NOW.minusSeconds(60), NOW, KYC_IN_PROGRESS, WAITING_FOR_BIOMETRY);
+
+        assertEquals(new ProcessStats.Step(KYC_IN_PROGRESS, WAITING_FOR_BIOMETRY, 10, 7, 3), funnel.step());
+        assertEquals(3L, funnel.occupancy().get(KYC_IN_PROGRESS));
+        assertEquals(10L, funnel.entered().get(STARTED));
+        assertEquals(Instant.parse("2025-06-01T10:00:00Z"), funnel.since());
+        assertEquals(Instant.parse("2025-06-01T11:00:00Z"), funnel.until());
+    }
+
+    @Test
+    void rebuild_ReplacesOccupancyWithTheCount() {
+        stats.started(TYPE, STARTED);
+        stats.flush();
+        when(processes.countByState()).thenReturn(Map.of(TYPE, Map.of(ACCOUNT_CREATED, 5L)));
+
+        stats.rebuild();
+
+        assertEquals(Map.of(ACCOUNT_CREATED, 5L), store.occupancy(TYPE));
+    }
+}
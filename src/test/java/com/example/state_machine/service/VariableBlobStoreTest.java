@@ -0,0 +1,69 @@
+package com.example.state_machine.service;
+
+import com.example.state_machine.flow.FlowDefinition.VariableDefinition;
+import com.example.state_machine.flow.VariableSchema;
+import com.example.state_machine.flow.VariableType;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VariableBlobStoreTest {
+
+    @Mock
+    private GridFsTemplate gridFs;
+
+    private final VariableSchema schema = new VariableSchema(Map.of(
+            "consentDocument", new VariableDefinition(VariableType.BLOB, null),
+            "note", new VariableDefinition(VariableType.STRING, null)
+    ));
+
+    @Test
+    void offload_MovesOnlyLargeBlobVariablesToGridFs() {
+        VariableBlobStore store = new VariableBlobStore(gridFs, 10);
+        ObjectId id = new ObjectId();
+        when(gridFs.store(any(InputStream.class), eq("consentDocument"), anyString(), any(Document.class))).thenReturn(id);
+
+        Map<String, Object> vars = new HashMap<>(Map.of(
+                "consentDocument", "%PDF-1.7 large document",
+                "note", "not a blob but long enough"
+        ));
+        store.offload(schema, vars);
+
+        assertEquals(Map.of(VariableBlobStore.BLOB_ID, id.toHexString(), VariableBlobStore.SIZE, 23L), vars.get("consentDocument"));
+        assertEquals("not a blob but long enough", vars.get("note"));
+        verify(gridFs, times(1)).store(any(InputStream.class), anyString(), anyString(), any(Document.class));
+    }
+
+    @Test
+    void offload_KeepsSmallBlobsInline() {
+        VariableBlobStore store = new VariableBlobStore(gridFs, 1024);
+        Map<String, Object> vars = new HashMap<>(Map.of("consentDocument", "consent123.pdf"));
+
+        store.offload(schema, vars);
+
+        assertEquals("consent123.pdf", vars.get("consentDocument"));
+        verifyNoInteractions(gridFs);
+    }
+
+    @Test
+    void replacedReferences_ReturnsOnlyOverwrittenReferences() {
+        Map<String, Object> ref = Map.of(VariableBlobStore.BLOB_ID, new ObjectId().toHexString(), VariableBlobStore.SIZE, 1L);
+        Map<String, Object> previous = Map.of("consentDocument", ref, "idScan", Map.of("other", "x"));
+
+        assertEquals(List.of(ref), VariableBlobStore.replacedReferences(previous, List.of("consentDocument", "idScan", "age")));
+    }
+}